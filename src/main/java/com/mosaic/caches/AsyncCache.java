@@ -0,0 +1,34 @@
+package com.mosaic.caches;
+
+/**
+ * A cache whose lookups never block the calling thread. Values that are still being fetched are held in the cache as
+ * futures, so callers that ask for the same key while its fetch is in flight share the one fetch.
+ */
+public interface AsyncCache<K,V> {
+
+    public String getCacheName();
+
+    /**
+     * Returns how many values are currently stored within the cache, including those still being fetched.
+     */
+    public int size();
+
+    /**
+     * Returns the future for the specified key, or an already completed future of null when the key is not cached.
+     */
+    public CacheFuture<V> getAsync( K key );
+
+    /**
+     * Returns the future for the specified key, starting a fetch when the key is not already cached or being fetched.
+     * A failed fetch, or one that completes with null, is removed from the cache so that the next call tries again.
+     */
+    public CacheFuture<V> getOrFetchAsync( K key, AsyncFetcher<K,V> fetcher );
+
+    /**
+     * Place the specified mapping into the cache, replacing any value or fetch already held for the key.
+     */
+    public void put( K key, V newValue );
+
+    public void remove( K key );
+
+}
@@ -0,0 +1,11 @@
+package com.mosaic.caches;
+
+/**
+ * Fetches a value without blocking the calling thread. The returned future is completed once the value arrives, or
+ * failed if it could not be fetched.
+ */
+public interface AsyncFetcher<K,V> {
+
+    public CacheFuture<V> fetchAsync( K key );
+
+}
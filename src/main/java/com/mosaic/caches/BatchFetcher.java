@@ -0,0 +1,14 @@
+package com.mosaic.caches;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Fetches many values in a single round trip, for backends where a batched lookup is much cheaper per key than
+ * fetching each key by itself. Keys that the backend does not know about are left out of the returned map.
+ */
+public interface BatchFetcher<K,V> {
+
+    public Map<K,V> fetchAll( Collection<K> keys );
+
+}
@@ -1,5 +1,8 @@
 package com.mosaic.caches;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  *
  */
@@ -34,6 +37,32 @@ public interface Cache<K,V> {
     public V remove( K key );
 //    public void clear();
 
+    /**
+     * Returns the values currently cached for the specified keys. Keys that are not cached are left out of the returned
+     * map. Implementations amortise locking and book keeping across the whole batch.
+     */
+    public Map<K,V> getAll( Collection<K> keys );
+
+    /**
+     * Places every one of the specified mappings into the cache, as if by put.
+     */
+    public void putAll( Map<K,V> newMappings );
+
+    public void removeAll( Collection<K> keys );
+
+    /**
+     * Returns the values for the specified keys, fetching every key that is not already cached with one call to the
+     * fetcher and then caching the fetched values. Keys that the fetcher could not supply are left out of the returned
+     * map.
+     */
+    public Map<K,V> getAllOrFetch( Collection<K> keys, BatchFetcher<K,V> fetcher );
+
+    /**
+     * Releases any memory held by the cache beyond that which is needed to hold its current contents. Useful after a
+     * large number of removals, for example after a purge.
+     */
+    public void trimToSize();
+
 
     public abstract V doGet( K key, int keyHashCode );
     public abstract V doPut( K key, V newValue, int keyHashCode );
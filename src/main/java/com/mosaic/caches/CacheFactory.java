@@ -1,10 +1,20 @@
 package com.mosaic.caches;
 
+import com.mosaic.caches.decorators.ConcurrentLRUEvictionCache;
+import com.mosaic.caches.decorators.SampledLRUEvictionCache;
+import com.mosaic.caches.impl.LongLongStoreCache;
+import com.mosaic.caches.impl.LongStoreCache;
 import com.mosaic.caches.impl.StoreCache;
+import com.mosaic.caches.impl.OptimisticReadWriteCache;
 import com.mosaic.caches.impl.ReadWriteCache;
+import com.mosaic.caches.stores.ConcurrentInlineMapStore;
+import com.mosaic.caches.stores.InlineArrayMapStore;
+import com.mosaic.caches.stores.InlineLongLongMapStore;
+import com.mosaic.caches.stores.InlineLongObjectMapStore;
 import com.mosaic.caches.stores.InlineMapStore;
 import com.mosaic.caches.stores.MapStore;
 import com.mosaic.caches.stores.Store;
+import com.mosaic.caches.stores.SwissMapStore;
 
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
@@ -40,6 +50,81 @@ public class CacheFactory {
         return new StoreCache<K,V>( cacheName, store );
     }
 
+    /**
+     * A variation of singleThreadedInlineHashMapCache that uses Robin Hood hashing. Elements that have probed further
+     * from their home bucket take priority over elements that are closer to home, which keeps probe lengths short when
+     * hash codes cluster. As a result this cache runs at a much higher load factor, and so uses less memory.
+     *
+     * This cache is not thread safe.
+     */
+    public static <K,V> Cache<K,V> singleThreadedRobinHoodInlineHashMapCache( String cacheName, Class<K> keyType, Class<V> valueType ) {
+        InlineMapStore<K, V> store = new InlineMapStore<K, V>( 10, 0.75, 0, true );
+
+        return new StoreCache<K,V>( cacheName, store );
+    }
+
+    /**
+     * Same collision handling as singleThreadedInlineHashMapCache, however the mappings are held in parallel arrays
+     * rather than one object per mapping. Use this variant when holding very large numbers of small entries, as it
+     * uses less memory and puts no pressure on the garbage collector when new values are added.
+     *
+     * This cache is not thread safe.
+     */
+    public static <K,V> Cache<K,V> singleThreadedInlineArrayMapCache( String cacheName, Class<K> keyType, Class<V> valueType ) {
+        InlineArrayMapStore<K, V> store = new InlineArrayMapStore<K, V>();
+
+        return new StoreCache<K,V>( cacheName, store );
+    }
+
+    /**
+     * Create a cache backed by a SwissTable style hash map. Each bucket has a one byte fingerprint of its key's hash,
+     * and eight fingerprints are compared at a time. The keys themselves are only compared when a fingerprint matches,
+     * which makes this the best choice when a large proportion of requests are for keys that are not in the cache.
+     *
+     * This cache is not thread safe.
+     */
+    public static <K,V> Cache<K,V> singleThreadedSwissHashMapCache( String cacheName, Class<K> keyType, Class<V> valueType ) {
+        SwissMapStore<K, V> store = new SwissMapStore<K, V>();
+
+        return new StoreCache<K,V>( cacheName, store );
+    }
+
+    /**
+     * Create a cache holding at most maxCacheSize values that evicts an approximately least recently used value, chosen
+     * by sampling a handful of values at random. Keeps no eviction list, so a hit only updates an access time.
+     *
+     * This cache is not thread safe.
+     */
+    public static <K,V> Cache<K,V> singleThreadedSampledLRUCache( String cacheName, Class<K> keyType, Class<V> valueType, int maxCacheSize ) {
+        InlineArrayMapStore store = new InlineArrayMapStore();
+
+        return new SampledLRUEvictionCache<K,V>( cacheName, store, maxCacheSize );
+    }
+
+    /**
+     * Create a cache keyed by primitive longs. The keys are held in a long array and are never boxed, so looking up a
+     * value does not allocate.
+     *
+     * This cache is not thread safe.
+     */
+    public static <V> LongCache<V> singleThreadedLongKeyedCache( String cacheName, Class<V> valueType ) {
+        InlineLongObjectMapStore<V> store = new InlineLongObjectMapStore<V>();
+
+        return new LongStoreCache<V>( cacheName, store );
+    }
+
+    /**
+     * Create a cache that maps primitive longs to primitive longs, such as an id to offset index. Absent keys are
+     * reported by returning noEntryValue.
+     *
+     * This cache is not thread safe.
+     */
+    public static LongLongCache singleThreadedLongLongCache( String cacheName, long noEntryValue ) {
+        InlineLongLongMapStore store = new InlineLongLongMapStore( 16, 0.5, noEntryValue );
+
+        return new LongLongStoreCache( cacheName, store );
+    }
+
     /**
      * Create an in memory cache that wraps java.util.concurrent.ConcurrentHashMap. The cache is thread safe and robust.
      * It is however not always the fastest cache. Running between 50% and 200% slower than using an inline cache.
@@ -50,6 +135,27 @@ public class CacheFactory {
         return new StoreCache<K,V>( cacheName, store );
     }
 
+    /**
+     * A thread safe cache backed by a lock free inline hash map. Readers never block and writers only contend with
+     * each other when they write to the same key, which lets write throughput scale with the number of cores. The map
+     * resizes cooperatively; writers share the work of copying the map while reads and writes carry on.
+     */
+    public static <K,V> Cache<K,V> threadSafeInlineMapCache( String cacheName, Class<K> keyType, Class<V> valueType ) {
+        ConcurrentInlineMapStore<K, V> store = new ConcurrentInlineMapStore<K, V>();
+
+        return new StoreCache<K,V>( cacheName, store );
+    }
+
+    /**
+     * A thread safe LRU cache holding at most maxCacheSize values. Hits do not take a lock; they are recorded in
+     * striped buffers and applied to the LRU order in batches.
+     */
+    public static <K,V> Cache<K,V> threadSafeLRUCache( String cacheName, Class<K> keyType, Class<V> valueType, int maxCacheSize ) {
+        Cache<K,V> cache = threadSafeInlineMapCache( cacheName, keyType, valueType );
+
+        return new ConcurrentLRUEvictionCache<K,V>( cache, maxCacheSize );
+    }
+
     /**
      * A thread safe cache that supports multiple simultaneous readers and one writer at a time.
      */
@@ -59,4 +165,15 @@ public class CacheFactory {
         return new ReadWriteCache<K,V>( cacheName, store );
     }
 
+    /**
+     * A thread safe cache that supports multiple simultaneous readers and one writer at a time. Unlike
+     * readWriteInlineMapCache readers do not contend on a shared lock unless a write is in progress, so read throughput
+     * keeps scaling as cores are added. Writes are more expensive; best suited to read mostly workloads.
+     */
+    public static <K,V> Cache<K,V> optimisticReadWriteInlineMapCache( String cacheName, Class<K> keyType, Class<V> valueType ) {
+        Store<K, V> store = new InlineMapStore<K, V>();
+
+        return new OptimisticReadWriteCache<K,V>( cacheName, store );
+    }
+
 }
@@ -0,0 +1,139 @@
+package com.mosaic.caches;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The result of a value that may not have been fetched yet. Completed by whoever is fetching the value, via complete
+ * or fail. Callers that must not block register a listener, which is called on the completing thread (or immediately
+ * when the future has already completed); callers that may block can use get.
+ */
+public class CacheFuture<V> implements Future<V> {
+
+    /**
+     * Returns a future that has already completed with the specified value.
+     */
+    public static <V> CacheFuture<V> completed( V value ) {
+        CacheFuture<V> future = new CacheFuture<V>();
+
+        future.complete( value );
+
+        return future;
+    }
+
+
+    private boolean   isDone;
+    private V         value;
+    private Throwable failure;
+
+    private List<CacheFutureListener<V>> listeners = new ArrayList<CacheFutureListener<V>>( 1 );
+
+
+    /**
+     * Completes the future with the specified value. Returns false if the future had already completed, in which case
+     * the value is ignored.
+     */
+    public boolean complete( V value ) {
+        return finish( value, null );
+    }
+
+    /**
+     * Completes the future with the specified failure. Returns false if the future had already completed.
+     */
+    public boolean fail( Throwable failure ) {
+        return finish( null, failure );
+    }
+
+    public void addListener( CacheFutureListener<V> listener ) {
+        synchronized (this) {
+            if ( !isDone ) {
+                listeners.add( listener );
+
+                return;
+            }
+        }
+
+        listener.completed( value, failure );
+    }
+
+    @Override
+    public boolean cancel( boolean mayInterruptIfRunning ) {
+        return fail( new CancellationException() );
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return failure instanceof CancellationException;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return isDone;
+    }
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while ( !isDone ) {
+            wait();
+        }
+
+        return result();
+    }
+
+    @Override
+    public synchronized V get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadlineNanos = System.nanoTime() + unit.toNanos( timeout );
+
+        while ( !isDone ) {
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if ( remainingNanos <= 0 ) {
+                throw new TimeoutException();
+            }
+
+            TimeUnit.NANOSECONDS.timedWait( this, remainingNanos );
+        }
+
+        return result();
+    }
+
+
+    private boolean finish( V value, Throwable failure ) {
+        List<CacheFutureListener<V>> listenersToNotify;
+
+        synchronized (this) {
+            if ( isDone ) {
+                return false;
+            }
+
+            this.isDone  = true;
+            this.value   = value;
+            this.failure = failure;
+
+            listenersToNotify = listeners;
+            listeners         = null;
+
+            notifyAll();
+        }
+
+        for ( CacheFutureListener<V> listener : listenersToNotify ) {
+            listener.completed( value, failure );
+        }
+
+        return true;
+    }
+
+    private V result() throws ExecutionException {
+        if ( failure instanceof CancellationException ) {
+            throw (CancellationException) failure;
+        } else if ( failure != null ) {
+            throw new ExecutionException( failure );
+        }
+
+        return value;
+    }
+}
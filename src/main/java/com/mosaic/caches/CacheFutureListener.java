@@ -0,0 +1,11 @@
+package com.mosaic.caches;
+
+/**
+ * Notified once a CacheFuture completes. Exactly one of value and failure is meaningful; failure is null when the
+ * future completed successfully.
+ */
+public interface CacheFutureListener<V> {
+
+    public void completed( V value, Throwable failure );
+
+}
@@ -0,0 +1,28 @@
+package com.mosaic.caches;
+
+/**
+ * Decides how long each entry of a TTLEvictionCache lives, so that one cache can hold entries with different lifetimes.
+ * Each method returns how many milliseconds from now the entry should expire; return currentDurationMillis to leave the
+ * expiry time unchanged. Return Long.MAX_VALUE for an entry that should never expire. A negative duration is rejected
+ * with an IllegalArgumentException.<p/>
+ *
+ * Called while the cache holds its lock, so implementations should be quick.
+ */
+public interface Expiry<K,V> {
+
+    /**
+     * Called when a key that is not in the cache is given a value.
+     */
+    public long expireAfterCreate( K key, V value, long nowMillis );
+
+    /**
+     * Called when the value of a key that is already in the cache is replaced.
+     */
+    public long expireAfterUpdate( K key, V newValue, long nowMillis, long currentDurationMillis );
+
+    /**
+     * Called when a value is read from the cache.
+     */
+    public long expireAfterRead( K key, V value, long nowMillis, long currentDurationMillis );
+
+}
@@ -0,0 +1,32 @@
+package com.mosaic.caches;
+
+/**
+ * A cache whose keys are primitive longs. Keys are never boxed, so a lookup does not allocate.
+ */
+public interface LongCache<V> {
+
+    public String getCacheName();
+
+    /**
+     * Returns how many values are currently stored within the cache.
+     */
+    public int size();
+
+    public V get( long key );
+
+    /**
+     * Place the specified mapping into the cache. Returns the old mapping that was just replaced.
+     */
+    public V put( long key, V newValue );
+
+    /**
+     * Stores the specified mapping if the cache does not already hold a value for the key. Returns the value that was
+     * already in the cache, else null when the new value was written.
+     */
+    public V putIfAbsent( long key, V newValue );
+
+    public V getOrFetch( long key, LongFetcher<V> fetcher );
+
+    public V remove( long key );
+
+}
@@ -0,0 +1,10 @@
+package com.mosaic.caches;
+
+/**
+ *
+ */
+public interface LongFetcher<V> {
+
+    public V fetch( long key );
+
+}
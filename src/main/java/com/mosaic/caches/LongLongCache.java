@@ -0,0 +1,42 @@
+package com.mosaic.caches;
+
+/**
+ * A cache that maps primitive longs to primitive longs, suitable for id to offset or id to version lookups. Neither
+ * keys nor values are boxed.<p/>
+ *
+ * As a long cannot be null, methods that would otherwise return null return the cache's no entry value instead.
+ */
+public interface LongLongCache {
+
+    public String getCacheName();
+
+    /**
+     * Returns how many values are currently stored within the cache.
+     */
+    public int size();
+
+    /**
+     * The value returned by get, put, putIfAbsent and remove when the cache held no mapping for the key.
+     */
+    public long getNoEntryValue();
+
+    public boolean containsKey( long key );
+
+    public long get( long key );
+
+    /**
+     * Place the specified mapping into the cache. Returns the old mapping that was just replaced.
+     */
+    public long put( long key, long newValue );
+
+    /**
+     * Stores the specified mapping if the cache does not already hold a value for the key. Returns the value that was
+     * already in the cache, else the no entry value when the new value was written.
+     */
+    public long putIfAbsent( long key, long newValue );
+
+    public long getOrFetch( long key, LongLongFetcher fetcher );
+
+    public long remove( long key );
+
+}
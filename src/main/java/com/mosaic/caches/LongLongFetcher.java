@@ -0,0 +1,10 @@
+package com.mosaic.caches;
+
+/**
+ *
+ */
+public interface LongLongFetcher {
+
+    public long fetch( long key );
+
+}
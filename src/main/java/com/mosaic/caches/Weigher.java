@@ -0,0 +1,11 @@
+package com.mosaic.caches;
+
+/**
+ * Measures how much of a cache's capacity an entry uses, typically its approximate size in bytes. Lets a cache be
+ * bounded by the heap its values occupy rather than by how many entries it holds. Weights must not be negative.
+ */
+public interface Weigher<K,V> {
+
+    public int weigh( K key, V value );
+
+}
@@ -0,0 +1,15 @@
+package com.mosaic.caches;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Persists the changes made through a write behind cache, one batch at a time. A batch holds the latest value of every
+ * key updated since it was last written and every key removed since then; a key appears in at most one of the two.
+ * Throwing an exception leaves the batch queued, to be retried by the next flush.
+ */
+public interface Writer<K,V> {
+
+    public void writeAll( Map<K,V> updatedValues, Collection<K> removedKeys );
+
+}
@@ -0,0 +1,277 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.stores.InlineLongObjectMapStore;
+import com.mosaic.caches.util.DoubleLinkList;
+import com.mosaic.caches.util.Validate;
+
+/**
+ * Bounds the size of a cache using the Adaptive Replacement Cache policy, which balances recency against frequency
+ * and tunes that balance online to suit the current workload.<p/>
+ *
+ * Resident entries are split between T1, holding entries that have been used once recently, and T2, holding entries
+ * used at least twice. Entries evicted from T1 and T2 are remembered on the ghost lists B1 and B2. A new key that hits
+ * a ghost list is evidence that the matching resident list was too small, so the target size of T1 moves towards
+ * recency after a B1 hit and towards frequency after a B2 hit. Eviction then takes from whichever of T1 and T2 exceeds
+ * its share of the target.<p/>
+ *
+ * Ghosts hold only the key's hash code, so they cost a small node each rather than a reference to the key. Two keys
+ * with the same hash code therefore share a ghost, which at worst nudges the target size the wrong way.<p/>
+ *
+ * Like the other eviction caches, this decorator is not thread safe.
+ *
+ * @see "Megiddo and Modha, ARC: A Self-Tuning, Low Overhead Replacement Cache"
+ */
+@SuppressWarnings("unchecked")
+public class ARCEvictionCache<K,V> extends BaseCache<K,V> {
+
+    private final Cache<K,ARCNode<K,V>> underlyingCache;
+    private final int                   maxCacheSize;
+
+    private final DoubleLinkList<ARCNode<K,V>> t1 = new DoubleLinkList<ARCNode<K,V>>();
+    private final DoubleLinkList<ARCNode<K,V>> t2 = new DoubleLinkList<ARCNode<K,V>>();
+    private final DoubleLinkList<GhostNode>    b1 = new DoubleLinkList<GhostNode>();
+    private final DoubleLinkList<GhostNode>    b2 = new DoubleLinkList<GhostNode>();
+
+    private final InlineLongObjectMapStore<GhostNode> ghostsByHash = new InlineLongObjectMapStore<GhostNode>();
+
+    private int targetT1Size;
+
+
+    public ARCEvictionCache( Cache<K,V> wrappedCache, int maxCacheSize ) {
+        super( wrappedCache.getCacheName() );
+
+        Validate.gtZero( maxCacheSize, "maxCacheSize" );
+
+        this.underlyingCache = (Cache) wrappedCache;
+        this.maxCacheSize    = maxCacheSize;
+    }
+
+    @Override
+    public int size() {
+        return underlyingCache.size();
+    }
+
+    @Override
+    public void trimToSize() {
+        underlyingCache.trimToSize();
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        ARCNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            return null;
+        }
+
+        moveToT2( node );
+
+        return node.value;
+    }
+
+    @Override
+    public V doPut( K key, V newValue, int keyHashCode ) {
+        ARCNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            insertNewNode( key, newValue, keyHashCode );
+
+            return null;
+        }
+
+        moveToT2( node );
+
+        V oldValue = node.value;
+        node.value = newValue;
+
+        return oldValue;
+    }
+
+    @Override
+    public V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        ARCNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            insertNewNode( key, newValue, keyHashCode );
+
+            return null;
+        }
+
+        moveToT2( node );
+
+        return node.value;
+    }
+
+    @Override
+    public V doRemove( K key, int keyHashCode ) {
+        ARCNode<K,V> node = underlyingCache.doRemove( key, keyHashCode );
+        if ( node == null ) {
+            return null;
+        }
+
+        node.detachNode();
+
+        return node.value;
+    }
+
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        ARCNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            V newValue = kvFetcher.fetch( key );
+
+            insertNewNode( key, newValue, keyHashCode );
+
+            return newValue;
+        }
+
+        moveToT2( node );
+
+        return node.value;
+    }
+
+    /**
+     * The number of entries that ARC is currently aiming to hold in T1, between zero and the max size of the cache.
+     */
+    int getTargetT1Size() {
+        return targetT1Size;
+    }
+
+
+    private void moveToT2( ARCNode<K,V> node ) {
+        node.detachNode();
+
+        t2.insertHead( node );
+    }
+
+    private void insertNewNode( K key, V newValue, int keyHashCode ) {
+        GhostNode ghost = ghostsByHash.get( keyHashCode );
+
+        if ( ghost == null ) {
+            makeRoomForUnseenKey( keyHashCode );
+        } else {
+            boolean wasInB1 = ghost.isOwnedBy( b1 );
+
+            if ( wasInB1 ) {
+                targetT1Size = Math.min( maxCacheSize, targetT1Size + Math.max(1, b2.size()/b1.size()) );
+            } else {
+                targetT1Size = Math.max( 0, targetT1Size - Math.max(1, b1.size()/b2.size()) );
+            }
+
+            forgetGhost( ghost );
+            replace( !wasInB1 );
+        }
+
+        ARCNode<K,V> node = new ARCNode<K,V>( key, newValue, keyHashCode );
+
+        underlyingCache.doPut( key, node, keyHashCode );
+
+        // a key that was recently evicted has now been used twice, so it goes straight to the frequency list
+        if ( ghost == null ) {
+            t1.insertHead( node );
+        } else {
+            t2.insertHead( node );
+        }
+    }
+
+    /**
+     * Keeps T1+B1 within the max cache size and the total of all four lists within twice the max cache size.
+     */
+    private void makeRoomForUnseenKey( int keyHashCode ) {
+        int l1Size = t1.size() + b1.size();
+
+        if ( l1Size >= maxCacheSize ) {
+            if ( t1.size() < maxCacheSize ) {
+                forgetGhost( b1.tail() );
+                replace( false );
+            } else {
+                evict( t1.tail() );
+            }
+        } else {
+            int totalSize = l1Size + t2.size() + b2.size();
+
+            if ( totalSize >= maxCacheSize ) {
+                if ( totalSize >= 2*maxCacheSize ) {
+                    forgetGhost( b2.tail() );
+                }
+
+                replace( false );
+            }
+        }
+    }
+
+    /**
+     * When the cache is full, evicts the least recently used entry of whichever resident list is over its target,
+     * leaving a ghost behind on the matching ghost list.
+     */
+    private void replace( boolean isGhostHitInB2 ) {
+        if ( t1.size() + t2.size() < maxCacheSize ) {
+            return;
+        }
+
+        boolean evictFromT1 = t1.hasContents() && (t1.size() > targetT1Size || (isGhostHitInB2 && t1.size() == targetT1Size));
+
+        if ( evictFromT1 || t2.isEmpty() ) {
+            rememberGhost( evict(t1.tail()), b1 );
+        } else {
+            rememberGhost( evict(t2.tail()), b2 );
+        }
+    }
+
+    private int evict( ARCNode<K,V> node ) {
+        node.detachNode();
+
+        underlyingCache.doRemove( node.getValue(), node.keyHashCode );
+
+        return node.keyHashCode;
+    }
+
+    private void rememberGhost( int keyHashCode, DoubleLinkList<GhostNode> ghostList ) {
+        GhostNode ghost = new GhostNode( keyHashCode, ghostList );
+
+        GhostNode collidingGhost = ghostsByHash.put( keyHashCode, ghost );
+        if ( collidingGhost != null ) {
+            collidingGhost.detachNode();
+        }
+
+        ghostList.insertHead( ghost );
+    }
+
+    private void forgetGhost( GhostNode ghost ) {
+        ghost.detachNode();
+
+        ghostsByHash.remove( ghost.keyHashCode );
+    }
+
+
+    /**
+     * The list node's own value holds the entry's key.
+     */
+    private static class ARCNode<K,V> extends DoubleLinkList.Node<K,ARCNode<K,V>> {
+        private final int keyHashCode;
+        private       V   value;
+
+        public ARCNode( K key, V value, int keyHashCode ) {
+            super( key );
+
+            this.value       = value;
+            this.keyHashCode = keyHashCode;
+        }
+    }
+
+    private static class GhostNode extends DoubleLinkList.Node<Object,GhostNode> {
+        private final int                       keyHashCode;
+        private final DoubleLinkList<GhostNode> ghostList;
+
+        public GhostNode( int keyHashCode, DoubleLinkList<GhostNode> ghostList ) {
+            super( null );
+
+            this.keyHashCode = keyHashCode;
+            this.ghostList   = ghostList;
+        }
+
+        public boolean isOwnedBy( DoubleLinkList<GhostNode> list ) {
+            return ghostList == list;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.mosaic.caches.decorators;
 
 import com.mosaic.caches.Cache;
+import com.mosaic.caches.Weigher;
 import com.mosaic.caches.impl.BaseCache;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  *
  */
@@ -10,17 +15,32 @@ import com.mosaic.caches.impl.BaseCache;
 abstract class BaseEvicitionCache<K,V> extends BaseCache<K,V> {
 
     protected final Cache<K,EvictionNode<K,V>> underlyingCache;
-    protected final int                        maxCacheSize;
+    protected final long                       maxWeight;
+    protected final Weigher<K,V>               weigher;
 
     private EvictionNode<K,V> head;
     private EvictionNode<K,V> tail;
 
+    private long totalWeight;
+
 
+    /**
+     * Bounds the cache by number of entries.
+     */
     protected BaseEvicitionCache( String cacheName, Cache underlyingCache, int maxCacheSize ) {
+        this( cacheName, underlyingCache, maxCacheSize, new SingletonWeigher<K,V>() );
+    }
+
+    /**
+     * Bounds the cache by the sum of its entries' weights, as measured by the weigher. An entry that weighs more than
+     * maxWeight could never fit, so it is not cached at all rather than emptying the cache to make room for it.
+     */
+    protected BaseEvicitionCache( String cacheName, Cache underlyingCache, long maxWeight, Weigher<K,V> weigher ) {
         super( cacheName );
 
         this.underlyingCache = underlyingCache;
-        this.maxCacheSize    = maxCacheSize;
+        this.maxWeight       = maxWeight;
+        this.weigher         = weigher;
     }
 
 
@@ -29,6 +49,19 @@ abstract class BaseEvicitionCache<K,V> extends BaseCache<K,V> {
         return underlyingCache.size();
     }
 
+    /**
+     * Returns the summed weight of every entry in the cache. When the cache is bounded by number of entries, this is
+     * the same as size().
+     */
+    public long weightedSize() {
+        return totalWeight;
+    }
+
+    @Override
+    public void trimToSize() {
+        underlyingCache.trimToSize();
+    }
+
     @Override
     public V doRemove( K key, int keyHashCode ) {
         EvictionNode<K,V> currentEvictionRecord = underlyingCache.doGet( key, keyHashCode );
@@ -36,55 +69,102 @@ abstract class BaseEvicitionCache<K,V> extends BaseCache<K,V> {
         return removeNode( currentEvictionRecord );
     }
 
+    /**
+     * Fetches the whole batch from the underlying cache in one call, and then updates the eviction order of each entry
+     * found in the order that the keys were requested.
+     */
+    @Override
+    public Map<K,V> getAll( Collection<K> keys ) {
+        Map<K,EvictionNode<K,V>> evictionRecords = underlyingCache.getAll( keys );
+        Map<K,V>                 found           = new HashMap<K,V>( evictionRecords.size()*2 );
+
+        for ( K key : keys ) {
+            EvictionNode<K,V> evictionRecord = evictionRecords.get( key );
+
+            if ( evictionRecord != null ) {
+                evictionRecordRead( evictionRecord );
+
+                found.put( key, evictionRecord.value );
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Called when a read hits the specified record. Policies that care about reads, such as LRU, override this.
+     */
+    protected void evictionRecordRead( EvictionNode<K,V> evictionRecord ) {}
+
 
 
     protected V writeToHead( K key, V newValue, int keyHashCode ) {
+        int weight = weigh( key, newValue );
+        if ( weight > maxWeight ) {
+            return null;
+        }
+
         EvictionNode<K,V> newEvictionRecord = new EvictionNode<K,V>( key, newValue );
+        newEvictionRecord.weight = weight;
+
+        trimCacheToWeight( maxWeight - newEvictionRecord.weight );
 
         if ( head == null ) {
             head = newEvictionRecord;
             tail = newEvictionRecord;
         } else {
-            trimCacheToSize( maxCacheSize-1 );
-
             newEvictionRecord.next = head;
 
             head.prev = newEvictionRecord;
             head = newEvictionRecord;
         }
 
+        totalWeight += newEvictionRecord.weight;
+
         underlyingCache.doPut( key, newEvictionRecord, keyHashCode );
 
         return null;
     }
 
-    protected abstract void trimCacheToSize( int targetSize );
+    /**
+     * Replaces the value held by an existing record, re-weighing it and evicting as needed should the new value weigh
+     * more than the old one. A new value that weighs more than maxWeight removes the entry instead. Returns the old
+     * value.
+     */
+    protected V replaceValue( EvictionNode<K,V> evictionRecord, V newValue ) {
+        V   oldValue  = evictionRecord.value;
+        int newWeight = weigh( evictionRecord.key, newValue );
 
-    protected void trimFromHead( int targetSize ) {
-        int numIterations = underlyingCache.size() - targetSize;
+        if ( newWeight > maxWeight ) {
+            removeNode( evictionRecord );
 
-        while ( numIterations > 0 ) {
-            EvictionNode<K,V> n = underlyingCache.remove( head.key );
-            assert n == head;
+            return oldValue;
+        }
 
-            head = head.next;
-            head.prev = null;
+        totalWeight += newWeight - evictionRecord.weight;
 
-            numIterations--;
-        }
-    }
+        evictionRecord.value  = newValue;
+        evictionRecord.weight = newWeight;
 
-    protected void trimFromTail( int targetSize ) {
-        int numIterations = underlyingCache.size() - targetSize;
+        trimCacheToWeight( maxWeight );
 
-        while ( numIterations > 0 ) {
-            EvictionNode<K,V> n = underlyingCache.remove( tail.key );
-            assert n == tail;
+        return oldValue;
+    }
 
-            tail = tail.prev;
-            tail.next = null;
+    /**
+     * Evicts entries until the summed weight of those that remain is no more than the target.
+     */
+    protected abstract void trimCacheToWeight( long targetWeight );
 
-            numIterations--;
+    protected void trimFromHead( long targetWeight ) {
+        while ( totalWeight > targetWeight && head != null ) {
+            removeNode( head );
+        }
+    }
+
+    protected void trimFromTail( long targetWeight ) {
+        while ( totalWeight > targetWeight && tail != null ) {
+            removeNode( tail );
         }
     }
 
@@ -123,18 +203,35 @@ abstract class BaseEvicitionCache<K,V> extends BaseCache<K,V> {
         node.detach();
 
         underlyingCache.remove( node.key );
+        totalWeight -= node.weight;
 
         return node.value;
     }
 
 
 
+    private int weigh( K key, V value ) {
+        int weight = weigher.weigh( key, value );
+        if ( weight < 0 ) {
+            throw new IllegalArgumentException( "weigher returned a negative weight (" + weight + ") for key " + key );
+        }
+
+        return weight;
+    }
+
+    private static class SingletonWeigher<K,V> implements Weigher<K,V> {
+        public int weigh( K key, V value ) {
+            return 1;
+        }
+    }
+
     protected static class EvictionNode<K,V> {
         private EvictionNode<K,V> next;
         private EvictionNode<K,V> prev;
 
-        protected final K key;
-        protected       V value;
+        protected final K   key;
+        protected       V   value;
+        protected       int weight;
 
         public EvictionNode( K key, V value) {
             this.key   = key;
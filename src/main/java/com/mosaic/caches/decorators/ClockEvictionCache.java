@@ -0,0 +1,193 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.util.Validate;
+
+/**
+ * Bounds the size of a cache using the CLOCK (second chance) approximation of LRU. Each entry occupies a slot on a
+ * circular array and carries a reference bit. A read only sets the bit; it never reorders anything. When a new entry
+ * needs room, a hand sweeps around the array clearing set bits until it reaches an entry whose bit is already clear,
+ * and evicts that entry. Entries that are read between sweeps therefore survive.<p/>
+ *
+ * Because reads leave the eviction order untouched they are not synchronized, only writes are. When the wrapped cache
+ * is itself thread safe, for example one created by CacheFactory.threadSafeInlineMapCache, this decorator may be read
+ * concurrently with writes; otherwise it must be wrapped in a SynchronizedCache like the other eviction caches.
+ */
+@SuppressWarnings("unchecked")
+public class ClockEvictionCache<K,V> extends BaseCache<K,V> {
+
+    private final Cache<K,ClockNode<K,V>> underlyingCache;
+
+    private final ClockNode<K,V>[] slots;
+    private final int[]            freeSlots;
+    private       int              freeSlotCount;
+    private       int              hand;
+
+
+    public ClockEvictionCache( Cache<K,V> wrappedCache, int maxCacheSize ) {
+        super( wrappedCache.getCacheName() );
+
+        Validate.gtZero( maxCacheSize, "maxCacheSize" );
+
+        this.underlyingCache = (Cache) wrappedCache;
+        this.slots           = new ClockNode[maxCacheSize];
+        this.freeSlots       = new int[maxCacheSize];
+
+        for ( int i=0; i<maxCacheSize; i++ ) {
+            freeSlots[freeSlotCount++] = maxCacheSize - 1 - i;
+        }
+    }
+
+    @Override
+    public int size() {
+        return underlyingCache.size();
+    }
+
+    @Override
+    public synchronized void trimToSize() {
+        underlyingCache.trimToSize();
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        ClockNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            return null;
+        }
+
+        node.markReferenced();
+
+        return node.value;
+    }
+
+    @Override
+    public synchronized V doPut( K key, V newValue, int keyHashCode ) {
+        ClockNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            insertNewNode( key, newValue, keyHashCode );
+
+            return null;
+        }
+
+        node.markReferenced();
+
+        V oldValue = node.value;
+        node.value = newValue;
+
+        return oldValue;
+    }
+
+    @Override
+    public synchronized V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        ClockNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            insertNewNode( key, newValue, keyHashCode );
+
+            return null;
+        }
+
+        node.markReferenced();
+
+        return node.value;
+    }
+
+    @Override
+    public synchronized V doRemove( K key, int keyHashCode ) {
+        ClockNode<K,V> node = underlyingCache.doRemove( key, keyHashCode );
+        if ( node == null ) {
+            return null;
+        }
+
+        releaseSlot( node.slot );
+
+        return node.value;
+    }
+
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        V currentValue = doGet( key, keyHashCode );   // try without the lock first; majority of time this should be it
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        synchronized (this) {
+            ClockNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+            if ( node != null ) {
+                return node.value;
+            }
+
+            V newValue = kvFetcher.fetch( key );
+
+            insertNewNode( key, newValue, keyHashCode );
+
+            return newValue;
+        }
+    }
+
+
+    private void insertNewNode( K key, V newValue, int keyHashCode ) {
+        int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : evictNextVictim();
+
+        ClockNode<K,V> node = new ClockNode<K,V>( key, newValue, keyHashCode, slot );
+
+        slots[slot] = node;
+        underlyingCache.doPut( key, node, keyHashCode );
+    }
+
+    /**
+     * Sweeps the hand forward giving every recently referenced entry a second chance, and evicts the first entry that
+     * has not been referenced since the hand last passed it. Returns the slot that the victim occupied.
+     */
+    private int evictNextVictim() {
+        while ( true ) {
+            ClockNode<K,V> candidate = slots[hand];
+            int            slot      = hand;
+
+            hand = hand+1 == slots.length ? 0 : hand+1;
+
+            if ( candidate.isReferenced ) {
+                candidate.isReferenced = false;
+            } else {
+                underlyingCache.doRemove( candidate.key, candidate.keyHashCode );
+
+                return slot;
+            }
+        }
+    }
+
+    private void releaseSlot( int slot ) {
+        slots[slot] = null;
+
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+
+    private static class ClockNode<K,V> {
+        private final K   key;
+        private final int keyHashCode;
+        private final int slot;
+
+        private volatile V value;
+
+        // deliberately not volatile; a reference that the hand misses only costs the entry its second chance
+        private boolean isReferenced;
+
+        public ClockNode( K key, V value, int keyHashCode, int slot ) {
+            this.key         = key;
+            this.value       = value;
+            this.keyHashCode = keyHashCode;
+            this.slot        = slot;
+        }
+
+        /**
+         * Only writes the bit when it is clear, so that repeated reads of a hot entry do not keep dirtying its cache line.
+         */
+        public void markReferenced() {
+            if ( !isReferenced ) {
+                isReferenced = true;
+            }
+        }
+    }
+}
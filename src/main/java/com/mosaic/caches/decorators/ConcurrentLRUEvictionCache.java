@@ -0,0 +1,320 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.util.Validate;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread safe LRU cache whose reads do not take a lock.<p/>
+ *
+ * Moving an entry to the head of the LRU list on every hit is what forces LRUEvictionCache to be wrapped in a
+ * SynchronizedCache. Instead a hit here looks the entry up in the wrapped cache and records the access in one of a set
+ * of striped ring buffers, one stripe per group of threads. Whichever thread holds the policy lock drains the buffers
+ * and replays the recorded accesses onto the LRU list in a batch. A reader only tries to take the lock once its buffer
+ * is half full, and never waits for it; when a buffer is full further accesses are dropped, which costs a little LRU
+ * precision but never correctness.<p/>
+ *
+ * Writes take the policy lock, drain the read buffers and then update the list directly, so eviction always sees the
+ * latest recency order.<p/>
+ *
+ * The wrapped cache must support reads that run concurrently with a writer, for example one created by
+ * CacheFactory.threadSafeInlineMapCache.
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentLRUEvictionCache<K,V> extends BaseCache<K,V> {
+
+    private static final int NUM_READ_BUFFERS      = 16;
+    private static final int READ_BUFFER_SIZE      = 32;
+    private static final int READ_BUFFER_MASK      = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD       = READ_BUFFER_SIZE / 2;
+    private static final int COUNTER_PADDING_SHIFT = 3;   // one counter per 64 byte cache line
+
+
+    private final Cache<K,LRUNode<K,V>> underlyingCache;
+    private final int                   maxCacheSize;
+
+    private final ReentrantLock policyLock = new ReentrantLock();
+
+    private final AtomicReferenceArray<LRUNode<K,V>> readBuffers = new AtomicReferenceArray<LRUNode<K,V>>( NUM_READ_BUFFERS * READ_BUFFER_SIZE );
+    private final AtomicLongArray                    writeCounts = new AtomicLongArray( NUM_READ_BUFFERS << COUNTER_PADDING_SHIFT );
+    private final AtomicLongArray                    readCounts  = new AtomicLongArray( NUM_READ_BUFFERS << COUNTER_PADDING_SHIFT );
+
+    // guarded by policyLock
+    private LRUNode<K,V> head;
+    private LRUNode<K,V> tail;
+    private int          listSize;
+
+
+    public ConcurrentLRUEvictionCache( Cache<K,V> wrappedCache, int maxCacheSize ) {
+        super( wrappedCache.getCacheName() );
+
+        Validate.gtZero( maxCacheSize, "maxCacheSize" );
+
+        this.underlyingCache = (Cache) wrappedCache;
+        this.maxCacheSize    = maxCacheSize;
+    }
+
+    @Override
+    public int size() {
+        return underlyingCache.size();
+    }
+
+    @Override
+    public void trimToSize() {
+        policyLock.lock();
+
+        try {
+            underlyingCache.trimToSize();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        LRUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            return null;
+        }
+
+        recordRead( node );
+
+        return node.value;
+    }
+
+    @Override
+    public V doPut( K key, V newValue, int keyHashCode ) {
+        policyLock.lock();
+
+        try {
+            drainReadBuffers();
+
+            LRUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+            if ( node == null ) {
+                insertNewNode( key, newValue, keyHashCode );
+
+                return null;
+            }
+
+            moveToHead( node );
+
+            V oldValue = node.value;
+            node.value = newValue;
+
+            return oldValue;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    @Override
+    public V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        V currentValue = doGet( key, keyHashCode );   // try without the lock first; majority of time this should be it
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        policyLock.lock();
+
+        try {
+            drainReadBuffers();
+
+            LRUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+            if ( node != null ) {
+                moveToHead( node );
+
+                return node.value;
+            }
+
+            insertNewNode( key, newValue, keyHashCode );
+
+            return null;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    @Override
+    public V doRemove( K key, int keyHashCode ) {
+        policyLock.lock();
+
+        try {
+            drainReadBuffers();
+
+            LRUNode<K,V> node = underlyingCache.doRemove( key, keyHashCode );
+            if ( node == null ) {
+                return null;
+            }
+
+            unlink( node );
+
+            return node.value;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        V currentValue = doGet( key, keyHashCode );   // try without the lock first; majority of time this should be it
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        policyLock.lock();
+
+        try {
+            drainReadBuffers();
+
+            LRUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );   // retry once the lock is established
+            if ( node != null ) {
+                moveToHead( node );
+
+                return node.value;
+            }
+
+            V newValue = kvFetcher.fetch( key );
+
+            insertNewNode( key, newValue, keyHashCode );
+
+            return newValue;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+
+    /**
+     * Appends the node to this thread's read buffer. Claims a slot by incrementing the buffer's write count; if the
+     * buffer is full the access is simply dropped.
+     */
+    private void recordRead( LRUNode<K,V> node ) {
+        int  buffer       = (int) Thread.currentThread().getId() & (NUM_READ_BUFFERS-1);
+        int  counterIndex = buffer << COUNTER_PADDING_SHIFT;
+        long writeCount   = writeCounts.get( counterIndex );
+        long pending      = writeCount - readCounts.get( counterIndex );
+
+        if ( pending < READ_BUFFER_SIZE && writeCounts.compareAndSet(counterIndex, writeCount, writeCount+1) ) {
+            readBuffers.lazySet( buffer*READ_BUFFER_SIZE + (int) (writeCount & READ_BUFFER_MASK), node );
+        }
+
+        if ( pending >= DRAIN_THRESHOLD && policyLock.tryLock() ) {
+            try {
+                drainReadBuffers();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays the recorded reads onto the LRU list. Must be called while holding the policy lock.
+     */
+    private void drainReadBuffers() {
+        for ( int buffer=0; buffer<NUM_READ_BUFFERS; buffer++ ) {
+            int  counterIndex = buffer << COUNTER_PADDING_SHIFT;
+            long readCount    = readCounts.get( counterIndex );
+            long writeCount   = writeCounts.get( counterIndex );
+
+            while ( readCount < writeCount ) {
+                int          slot = buffer*READ_BUFFER_SIZE + (int) (readCount & READ_BUFFER_MASK);
+                LRUNode<K,V> node = readBuffers.get( slot );
+
+                if ( node == null ) {
+                    break;   // the slot has been claimed but the reader has not stored the node yet; pick it up next time
+                }
+
+                readBuffers.lazySet( slot, null );
+                readCount++;
+
+                if ( node.isLinked ) {
+                    moveToHead( node );
+                }
+            }
+
+            readCounts.lazySet( counterIndex, readCount );
+        }
+    }
+
+    private void insertNewNode( K key, V newValue, int keyHashCode ) {
+        LRUNode<K,V> node = new LRUNode<K,V>( key, newValue, keyHashCode );
+
+        while ( listSize >= maxCacheSize ) {
+            LRUNode<K,V> victim = tail;
+
+            unlink( victim );
+            underlyingCache.doRemove( victim.key, victim.keyHashCode );
+        }
+
+        linkAtHead( node );
+        underlyingCache.doPut( key, node, keyHashCode );
+    }
+
+    private void moveToHead( LRUNode<K,V> node ) {
+        if ( node == head ) {
+            return;
+        }
+
+        unlink( node );
+        linkAtHead( node );
+    }
+
+    private void linkAtHead( LRUNode<K,V> node ) {
+        node.next = head;
+
+        if ( head == null ) {
+            tail = node;
+        } else {
+            head.prev = node;
+        }
+
+        head          = node;
+        node.isLinked = true;
+
+        listSize++;
+    }
+
+    private void unlink( LRUNode<K,V> node ) {
+        if ( node.prev == null ) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+
+        if ( node.next == null ) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+
+        node.prev     = null;
+        node.next     = null;
+        node.isLinked = false;
+
+        listSize--;
+    }
+
+
+    private static class LRUNode<K,V> {
+        private final K   key;
+        private final int keyHashCode;
+
+        private volatile V value;
+
+        // guarded by policyLock
+        private LRUNode<K,V> prev;
+        private LRUNode<K,V> next;
+        private boolean      isLinked;
+
+        public LRUNode( K key, V value, int keyHashCode ) {
+            this.key         = key;
+            this.value       = value;
+            this.keyHashCode = keyHashCode;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.mosaic.caches.decorators;
 
 import com.mosaic.caches.Cache;
 import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.Weigher;
 
 /**
  * Last In First Out cache. Keeps hold of all values until a max size is reached, at which time it evicts entries
@@ -13,6 +14,13 @@ public class FIFOEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         super( wrappedCache.getCacheName(), wrappedCache, maxCacheSize );
     }
 
+    /**
+     * Bounds the cache by the summed weight of its values rather than by the number of entries.
+     */
+    public FIFOEvictionCache( Cache<K, V> wrappedCache, long maxWeight, Weigher<K,V> weigher ) {
+        super( wrappedCache.getCacheName(), wrappedCache, maxWeight, weigher );
+    }
+
 
     @Override
     public V doGet( K key, int keyHashCode ) {
@@ -28,11 +36,7 @@ public class FIFOEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         if ( currentEvictionRecord == null ) {
             return writeToHead( key, newValue, keyHashCode );
         } else {
-            V oldValue = currentEvictionRecord.value;
-
-            currentEvictionRecord.value = newValue;
-
-            return oldValue;
+            return replaceValue( currentEvictionRecord, newValue );
         }
     }
 
@@ -62,7 +66,7 @@ public class FIFOEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         return currentEvictionRecord.value;
     }
 
-    protected void trimCacheToSize( int targetSize ) {
-        trimFromTail( targetSize );
+    protected void trimCacheToWeight( long targetWeight ) {
+        trimFromTail( targetWeight );
     }
 }
@@ -2,6 +2,7 @@ package com.mosaic.caches.decorators;
 
 import com.mosaic.caches.Cache;
 import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.Weigher;
 
 /**
  *
@@ -12,6 +13,13 @@ public class LIFOEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         super( wrappedCache.getCacheName(), wrappedCache, maxCacheSize );
     }
 
+    /**
+     * Bounds the cache by the summed weight of its values rather than by the number of entries.
+     */
+    public LIFOEvictionCache( Cache<K, V> wrappedCache, long maxWeight, Weigher<K,V> weigher ) {
+        super( wrappedCache.getCacheName(), wrappedCache, maxWeight, weigher );
+    }
+
 
     @Override
     public V doGet( K key, int keyHashCode ) {
@@ -27,11 +35,7 @@ public class LIFOEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         if ( currentEvictionRecord == null ) {
             return writeToHead( key, newValue, keyHashCode );
         } else {
-            V oldValue = currentEvictionRecord.value;
-
-            currentEvictionRecord.value = newValue;
-
-            return oldValue;
+            return replaceValue( currentEvictionRecord, newValue );
         }
     }
 
@@ -63,7 +67,7 @@ public class LIFOEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
 
 
 
-    protected void trimCacheToSize( int targetSize ) {
-        trimFromHead( targetSize );
+    protected void trimCacheToWeight( long targetWeight ) {
+        trimFromHead( targetWeight );
     }
 }
@@ -2,6 +2,7 @@ package com.mosaic.caches.decorators;
 
 import com.mosaic.caches.Cache;
 import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.Weigher;
 
 /**
  *
@@ -16,6 +17,13 @@ public class LRUEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         super( wrappedCache.getCacheName(), wrappedCache, maxCacheSize );
     }
 
+    /**
+     * Bounds the cache by the summed weight of its values rather than by the number of entries.
+     */
+    public LRUEvictionCache( Cache<K, V> wrappedCache, long maxWeight, Weigher<K,V> weigher ) {
+        super( wrappedCache.getCacheName(), wrappedCache, maxWeight, weigher );
+    }
+
     @Override
     public V doGet( K key, int keyHashCode ) {
         EvictionNode<K,V> evictionRecord = underlyingCache.doGet( key, keyHashCode );
@@ -24,7 +32,7 @@ public class LRUEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
             return null;
         }
 
-        moveEvictionRecordToHead( evictionRecord );
+        evictionRecordRead( evictionRecord );
 
         return evictionRecord.value;
     }
@@ -38,10 +46,7 @@ public class LRUEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         } else {
             moveEvictionRecordToHead( currentEvictionRecord );
 
-            V oldValue = currentEvictionRecord.value;
-            currentEvictionRecord.value = newValue;
-
-            return oldValue;
+            return replaceValue( currentEvictionRecord, newValue );
         }
     }
 
@@ -71,7 +76,12 @@ public class LRUEvictionCache<K,V> extends BaseEvicitionCache<K,V> {
         return currentEvictionRecord.value;
     }
 
-    protected void trimCacheToSize( int targetSize ) {
-        trimFromTail( targetSize );
+    @Override
+    protected void evictionRecordRead( EvictionNode<K,V> evictionRecord ) {
+        moveEvictionRecordToHead( evictionRecord );
+    }
+
+    protected void trimCacheToWeight( long targetWeight ) {
+        trimFromTail( targetWeight );
     }
 }
@@ -3,28 +3,112 @@ package com.mosaic.caches.decorators;
 import com.mosaic.caches.Cache;
 import com.mosaic.caches.Fetcher;
 import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.util.Clock;
 import com.mosaic.caches.util.HashWheel;
+import com.mosaic.caches.util.SystemClock;
+import com.mosaic.caches.util.TimerWheel;
+import com.mosaic.caches.util.Validate;
+import com.mosaic.caches.util.WheelTimer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Evict entries that have not been accessed for a specified amount of time.
+ * Evict entries that have not been accessed for a specified amount of time.<p/>
+ *
+ * By default every request first advances the hash wheel, so a request that lands on a tick boundary pays for all of
+ * the expiries due in that tick. Supplying a ScheduledExecutorService moves that work onto the scheduler's thread,
+ * which advances the wheel periodically, releasing the cache's lock after each slice of MAX_EXPIRIES_PER_SLICE expiries
+ * so that a large bucket never holds up requests for long. Requests then only compare an entry's expiry time with the
+ * clock.<p/>
+ *
+ * Optionally entries can be refreshed ahead of their expiry. Once an entry is older than refreshAfterMillis, the next
+ * getOrFetch of it still returns the current value but also hands a reload through its Fetcher to the refresh executor.
+ * Only one reload per entry is in flight at a time. When the reload completes its value replaces the entry's value and
+ * restarts its age in one step, unless the entry has been removed or replaced in the meantime. A hot key is therefore
+ * reloaded without any caller having to wait for it. Plain gets have no Fetcher and so never trigger a refresh.
  */
 @SuppressWarnings("unchecked")
 public class MaxAgeEvictionCache<K,V> extends BaseCache<K,V> {
 
-    private Cache<K, Node<V>> underlyingCache;
-    private int               ttlMillis;
-    private HashWheel         hashWheel;
+    static final int MAX_EXPIRIES_PER_SLICE = 1024;
+
+
+    private Cache<K, Node> underlyingCache;
+    private int            ttlMillis;
+    private TimerWheel     hashWheel;
+    private Clock          clock;
+
+    private boolean            isBackgroundExpiry;
+    private ScheduledFuture<?> bookKeepingTask;
+
+    private int      refreshAfterMillis = -1;
+    private Executor refreshExecutor;
 
     public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis ) {
         this( underlyingCache, ttlMillis, new HashWheel() );
     }
 
-    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, HashWheel hashWheel ) {
+    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel ) {
+        this( underlyingCache, ttlMillis, hashWheel, SystemClock.INSTANCE );
+    }
+
+    /**
+     * The clock is read once per request and must be the clock that the hash wheel was started from.
+     */
+    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel, Clock clock ) {
         super( underlyingCache.getCacheName() );
 
         this.underlyingCache = underlyingCache;
         this.ttlMillis       = ttlMillis;
         this.hashWheel       = hashWheel;
+        this.clock           = clock;
+    }
+
+    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, int refreshAfterMillis, Executor refreshExecutor ) {
+        this( underlyingCache, ttlMillis, new HashWheel(), SystemClock.INSTANCE, refreshAfterMillis, refreshExecutor );
+    }
+
+    /**
+     * Refreshes entries ahead of expiry. The reloads run on refreshExecutor, which should not run them on the calling
+     * thread. A refreshAfterMillis that is not less than ttlMillis never triggers a refresh.
+     */
+    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel, Clock clock, int refreshAfterMillis, Executor refreshExecutor ) {
+        this( underlyingCache, ttlMillis, hashWheel, clock );
+
+        Validate.gtZero( refreshAfterMillis, "refreshAfterMillis" );
+
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.refreshExecutor    = refreshExecutor;
+    }
+
+    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, ScheduledExecutorService expiryScheduler ) {
+        this( underlyingCache, ttlMillis, new HashWheel(), expiryScheduler, 128 );
+    }
+
+    /**
+     * Expires entries in the background. The scheduler advances the hash wheel every bookKeepingPeriodMillis until
+     * stopBackgroundExpiry is called.
+     */
+    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel, ScheduledExecutorService expiryScheduler, long bookKeepingPeriodMillis ) {
+        this( underlyingCache, ttlMillis, hashWheel, SystemClock.INSTANCE, expiryScheduler, bookKeepingPeriodMillis );
+    }
+
+    public MaxAgeEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel, Clock clock, ScheduledExecutorService expiryScheduler, long bookKeepingPeriodMillis ) {
+        this( underlyingCache, ttlMillis, hashWheel, clock );
+
+        this.isBackgroundExpiry = true;
+        this.bookKeepingTask    = expiryScheduler.scheduleWithFixedDelay( new Runnable() {
+            public void run() {
+                applyBackgroundBookKeeping();
+            }
+        }, bookKeepingPeriodMillis, bookKeepingPeriodMillis, TimeUnit.MILLISECONDS );
     }
 
     @Override
@@ -32,89 +116,294 @@ public class MaxAgeEvictionCache<K,V> extends BaseCache<K,V> {
         return underlyingCache.size();
     }
 
+    @Override
+    public synchronized void trimToSize() {
+        underlyingCache.trimToSize();
+    }
+
     @Override
     public synchronized V doGet( K key, int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
 
-        return nodeToValue( underlyingCache.doGet( key, keyHashCode ) );
+        return nodeToValue( key, keyHashCode, underlyingCache.doGet(key, keyHashCode), nowMillis );
     }
 
     @Override
     public synchronized V doPut( final K key, V newValue, final int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
 
-        Node<V> node = createInternalNode( key, keyHashCode, newValue );
+        applyInlineBookKeeping( nowMillis );
 
-        return nodeToValue( underlyingCache.doPut( key, node, keyHashCode ) );
+        Node node    = createInternalNode( key, keyHashCode, newValue, nowMillis );
+        Node oldNode = underlyingCache.doPut( key, node, keyHashCode );
+        if ( oldNode == null ) {
+            return null;
+        }
+
+        oldNode.cancel();
+
+        return isExpired(oldNode, nowMillis) ? null : oldNode.value;
     }
 
     @Override
     public synchronized V doPutIfAbsent( final K key, V newValue, final int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
 
-        Node<V> node = createInternalNode( key, keyHashCode, newValue );
+        applyInlineBookKeeping( nowMillis );
 
-        Node<V> activeNode = underlyingCache.doPutIfAbsent( key, node, keyHashCode );
-        if ( activeNode != node ) {
-            node.hashWheelTicket.cancel();
+        V currentValue = nodeToValue( key, keyHashCode, underlyingCache.doGet(key, keyHashCode), nowMillis );
+        if ( currentValue != null ) {
+            return currentValue;
         }
 
-        return nodeToValue( activeNode );
+        underlyingCache.doPut( key, createInternalNode(key, keyHashCode, newValue, nowMillis), keyHashCode );
+
+        return null;
     }
 
     @Override
     public synchronized V doRemove( K key, int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
 
-        Node<V> node = underlyingCache.doRemove( key, keyHashCode );
+        Node node = underlyingCache.doRemove( key, keyHashCode );
         if ( node == null ) {
             return null;
         }
 
-        node.hashWheelTicket.cancel();
+        node.cancel();
 
         return node.value;
     }
 
     @Override
     public synchronized V doGetOrFetch( final K key, Fetcher<K, V> kvFetcher, final int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
+
+        Node node = underlyingCache.doGet( key, keyHashCode );
+        if ( node != null && isExpired(node, nowMillis) ) {
+            expireNow( key, keyHashCode, node );
+
+            node = null;
+        }
 
-        Node<V> node = underlyingCache.doGet( key, keyHashCode );
         if ( node == null ) {
             V newValue = kvFetcher.fetch( key );
 
-            node = createInternalNode( key, keyHashCode, newValue );
+            node = createInternalNode( key, keyHashCode, newValue, clock.currentTimeMillis() );   // the fetch may have been slow
 
             underlyingCache.doPut( key, node, keyHashCode );
+        } else if ( isRefreshDue(node, nowMillis) ) {
+            scheduleRefresh( node, kvFetcher );
         }
 
         return node.value;
     }
 
-    private Node createInternalNode( final K key, final int keyHashCode, V newValue ) {
-        return new Node( newValue, hashWheel.register( System.currentTimeMillis()+ttlMillis, new Runnable() {
-            public void run() {
-                underlyingCache.doRemove( key, keyHashCode );
+    @Override
+    public synchronized Map<K,V> getAll( Collection<K> keys ) {
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
+
+        Map<K,Node> nodes = underlyingCache.getAll( keys );
+        Map<K,V>       found = new HashMap<K,V>( nodes.size()*2 );
+
+        for ( Map.Entry<K,Node> e : nodes.entrySet() ) {
+            K key   = e.getKey();
+            V value = nodeToValue( key, key.hashCode(), e.getValue(), nowMillis );
+
+            if ( value != null ) {
+                found.put( key, value );
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public synchronized void putAll( Map<K,V> newMappings ) {
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
+
+        for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+            K   key         = e.getKey();
+            int keyHashCode = key.hashCode();
+
+            Node oldNode = underlyingCache.doPut( key, createInternalNode(key, keyHashCode, e.getValue(), nowMillis), keyHashCode );
+            if ( oldNode != null ) {
+                oldNode.cancel();
             }
-        }));
+        }
+    }
+
+    @Override
+    public synchronized void removeAll( Collection<K> keys ) {
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
+
+        for ( K key : keys ) {
+            Node node = underlyingCache.doRemove( key, key.hashCode() );
+
+            if ( node != null ) {
+                node.cancel();
+            }
+        }
+    }
+
+    /**
+     * Stops the scheduler from advancing the hash wheel. Entries continue to expire when read, but are no longer
+     * removed unless they are read.
+     */
+    public void stopBackgroundExpiry() {
+        if ( bookKeepingTask != null ) {
+            bookKeepingTask.cancel( false );
+        }
+    }
+
+    private void applyInlineBookKeeping( long nowMillis ) {
+        if ( !isBackgroundExpiry ) {
+            hashWheel.applyBookKeeping( nowMillis );
+        }
     }
 
-    private V nodeToValue( Node<V> node ) {
+    /**
+     * Advances the hash wheel in slices of at most MAX_EXPIRIES_PER_SLICE expiries, releasing the lock between slices,
+     * so that a request arriving while a large bucket expires waits for one slice rather than the whole bucket.
+     */
+    private void applyBackgroundBookKeeping() {
+        long nowMillis = clock.currentTimeMillis();
+
+        while ( !applyBackgroundBookKeepingSlice(nowMillis) ) {
+            Thread.yield();   // monitors are not fair; give any waiting request a chance at the lock
+        }
+    }
+
+    /**
+     * Returns true once the hash wheel has caught up with the specified time.
+     */
+    synchronized boolean applyBackgroundBookKeepingSlice( long nowMillis ) {
+        return hashWheel.applyBookKeeping( nowMillis, MAX_EXPIRIES_PER_SLICE );
+    }
+
+    private boolean isRefreshDue( Node node, long nowMillis ) {
+        return refreshExecutor != null && !node.isRefreshing && nowMillis - (node.expiresAtMillis - ttlMillis) >= refreshAfterMillis;
+    }
+
+    /**
+     * An executor that rejects the reload, being saturated or shut down, costs only the refresh; the caller still gets
+     * the current value and the next getOrFetch tries again.
+     */
+    private void scheduleRefresh( final Node node, final Fetcher<K,V> kvFetcher ) {
+        node.isRefreshing = true;
+
+        try {
+            refreshExecutor.execute( new Runnable() {
+                public void run() {
+                    V newValue = null;
+
+                    try {
+                        newValue = kvFetcher.fetch( node.key );
+                    } finally {
+                        refreshCompleted( node, newValue );
+                    }
+                }
+            } );
+        } catch ( RejectedExecutionException e ) {
+            node.isRefreshing = false;
+        }
+    }
+
+    /**
+     * Swaps in the reloaded value and restarts the entry's age, provided the entry is still the one held by the
+     * underlying cache and has not reached its max age while the reload ran; such an entry is left for the hash wheel
+     * to remove rather than revived. A null value means that the reload failed, in which case the entry is left to age
+     * as before.
+     */
+    private synchronized void refreshCompleted( Node node, V newValue ) {
+        node.isRefreshing = false;
+
+        long nowMillis = clock.currentTimeMillis();
+        if ( newValue == null || nowMillis >= node.expiresAtMillis || underlyingCache.doGet(node.key, node.keyHashCode) != node ) {
+            return;
+        }
+
+        node.value           = newValue;
+        node.expiresAtMillis = nowMillis + ttlMillis;
+
+        node.rescheduleTo( node.expiresAtMillis );
+    }
+
+    private Node createInternalNode( K key, int keyHashCode, V newValue, long nowMillis ) {
+        Node node = new Node( key, keyHashCode, newValue, nowMillis+ttlMillis );
+
+        hashWheel.register( node.expiresAtMillis, node );
+
+        return node;
+    }
+
+    /**
+     * Called by the hash wheel once an entry's timer has run out.
+     */
+    private void nodeTimedOut( Node node ) {
+        underlyingCache.doRemove( node.key, node.keyHashCode );
+    }
+
+    private V nodeToValue( K key, int keyHashCode, Node node, long nowMillis ) {
         if ( node == null ) {
             return null;
         }
 
+        if ( isExpired(node, nowMillis) ) {
+            expireNow( key, keyHashCode, node );
+
+            return null;
+        }
+
         return node.value;
     }
 
-    private static class Node<V> {
-        private V value;
-        private HashWheel.Ticket hashWheelTicket;
+    /**
+     * Only background expiry lets an entry outlive its expiry time; inline book keeping will already have removed it.
+     */
+    private boolean isExpired( Node node, long nowMillis ) {
+        return isBackgroundExpiry && nowMillis >= node.expiresAtMillis;
+    }
+
+    private void expireNow( K key, int keyHashCode, Node node ) {
+        underlyingCache.doRemove( key, keyHashCode );
+
+        node.cancel();
+    }
+
+    /**
+     * Both the value held by the underlying cache and the entry's timer on the hash wheel, so that adding an entry
+     * allocates a single object.
+     */
+    private class Node extends WheelTimer {
+        private final K       key;
+        private final int     keyHashCode;
+        private       V       value;
+        private       long    expiresAtMillis;
+        private       boolean isRefreshing;   // guarded by the cache's lock
 
-        public Node( V value, HashWheel.Ticket hashWheelTicket ) {
+        public Node( K key, int keyHashCode, V value, long expiresAtMillis ) {
+            this.key             = key;
+            this.keyHashCode     = keyHashCode;
             this.value           = value;
-            this.hashWheelTicket = hashWheelTicket;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        @Override
+        protected void timeout() {
+            nodeTimedOut( this );
         }
     }
 
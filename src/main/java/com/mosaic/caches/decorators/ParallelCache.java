@@ -6,6 +6,12 @@ import com.mosaic.caches.Fetcher;
 import com.mosaic.caches.impl.BaseCache;
 import com.mosaic.caches.util.BitUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  *
  */
@@ -39,6 +45,13 @@ public class ParallelCache<K,V> extends BaseCache<K,V> {
         return count;
     }
 
+    @Override
+    public void trimToSize() {
+        for ( Cache c : stripes ) {
+            c.trimToSize();
+        }
+    }
+
     @Override
     public V doGet( K key, int keyHashCode ) {
         Cache<K,V> c = selectCache(keyHashCode);
@@ -74,6 +87,71 @@ public class ParallelCache<K,V> extends BaseCache<K,V> {
         return c.doGetOrFetch( key, kvFetcher, keyHashCode );
     }
 
+    @Override
+    public Map<K,V> getAll( Collection<K> keys ) {
+        List<K>[] keysByStripe = groupByStripe( keys );
+        Map<K,V>  found        = new HashMap<K,V>( keys.size()*2 );
+
+        for ( int i=0; i<stripes.length; i++ ) {
+            if ( keysByStripe[i] != null ) {
+                found.putAll( stripes[i].getAll(keysByStripe[i]) );
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public void putAll( Map<K,V> newMappings ) {
+        Map<K,V>[] mappingsByStripe = new Map[stripes.length];
+
+        for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+            int i = e.getKey().hashCode() & bitmask;
+
+            if ( mappingsByStripe[i] == null ) {
+                mappingsByStripe[i] = new HashMap<K,V>();
+            }
+
+            mappingsByStripe[i].put( e.getKey(), e.getValue() );
+        }
+
+        for ( int i=0; i<stripes.length; i++ ) {
+            if ( mappingsByStripe[i] != null ) {
+                stripes[i].putAll( mappingsByStripe[i] );
+            }
+        }
+    }
+
+    @Override
+    public void removeAll( Collection<K> keys ) {
+        List<K>[] keysByStripe = groupByStripe( keys );
+
+        for ( int i=0; i<stripes.length; i++ ) {
+            if ( keysByStripe[i] != null ) {
+                stripes[i].removeAll( keysByStripe[i] );
+            }
+        }
+    }
+
+    /**
+     * Splits a batch of keys up by the stripe that owns them, so that each stripe is visited once per batch.
+     */
+    private List<K>[] groupByStripe( Collection<K> keys ) {
+        List<K>[] keysByStripe = new List[stripes.length];
+
+        for ( K key : keys ) {
+            int i = key.hashCode() & bitmask;
+
+            if ( keysByStripe[i] == null ) {
+                keysByStripe[i] = new ArrayList<K>();
+            }
+
+            keysByStripe[i].add( key );
+        }
+
+        return keysByStripe;
+    }
+
     private Cache<K, V> selectCache( int keyHashCode ) {
         return stripes[ keyHashCode & bitmask ];
     }
@@ -0,0 +1,140 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.stores.AccessTimedStore;
+import com.mosaic.caches.util.Validate;
+
+import java.util.Random;
+
+/**
+ * Bounds the size of a cache with an approximation of LRU that keeps no eviction list, in the style of Redis. Each
+ * entry records when it was last accessed; when the cache is full a handful of entries are sampled at random from the
+ * store and the least recently accessed of them is evicted. Sampling five entries gets close to the hit ratio of true
+ * LRU.<p/>
+ *
+ * The access times are held by the store itself, in an int array parallel to its values (see AccessTimedStore), so
+ * there is no per-entry node at all: no next/prev pointers, no object header and no extra dereference on a read, which
+ * writes a single int beside the value. Because eviction samples the store directly this cache wraps a store rather
+ * than another Cache, and the store should be created for this cache alone.<p/>
+ *
+ * Access times come from a logical clock that ticks once per access, and are compared in a way that tolerates the
+ * clock wrapping around.<p/>
+ *
+ * Like the other eviction caches, this cache is not thread safe.
+ */
+@SuppressWarnings("unchecked")
+public class SampledLRUEvictionCache<K,V> extends BaseCache<K,V> {
+
+    private final AccessTimedStore<K,V> store;
+    private final int                   maxCacheSize;
+    private final int                   numSamples;
+    private final Random                rnd = new Random();
+
+    private int clock;
+
+
+    public SampledLRUEvictionCache( String cacheName, AccessTimedStore store, int maxCacheSize ) {
+        this( cacheName, store, maxCacheSize, 5 );
+    }
+
+    /**
+     * @param numSamples how many entries to compare when choosing a victim; more samples get closer to true LRU at the
+     *                   cost of slower inserts into a full cache
+     */
+    public SampledLRUEvictionCache( String cacheName, AccessTimedStore store, int maxCacheSize, int numSamples ) {
+        super( cacheName );
+
+        Validate.gtZero( maxCacheSize, "maxCacheSize" );
+        Validate.gtZero( numSamples, "numSamples" );
+
+        this.store        = store;
+        this.maxCacheSize = maxCacheSize;
+        this.numSamples   = numSamples;
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public void trimToSize() {
+        store.trimToSize();
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        return store.getAndTouch( key, keyHashCode, ++clock );
+    }
+
+    @Override
+    public V doPut( K key, V newValue, int keyHashCode ) {
+        V oldValue = store.getAndTouch( key, keyHashCode, ++clock );
+        if ( oldValue == null ) {
+            insertNewEntry( key, newValue, keyHashCode );
+        } else {
+            store.put( key, newValue, keyHashCode );
+        }
+
+        return oldValue;
+    }
+
+    @Override
+    public V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        V currentValue = store.getAndTouch( key, keyHashCode, ++clock );
+        if ( currentValue == null ) {
+            insertNewEntry( key, newValue, keyHashCode );
+        }
+
+        return currentValue;
+    }
+
+    @Override
+    public V doRemove( K key, int keyHashCode ) {
+        return store.remove( key, keyHashCode );
+    }
+
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        V currentValue = store.getAndTouch( key, keyHashCode, ++clock );
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        V newValue = kvFetcher.fetch( key );
+
+        insertNewEntry( key, newValue, keyHashCode );
+
+        return newValue;
+    }
+
+
+    private void insertNewEntry( K key, V newValue, int keyHashCode ) {
+        while ( store.size() >= maxCacheSize ) {
+            evictSampledVictim();
+        }
+
+        store.putAndTouch( key, newValue, keyHashCode, ++clock );
+    }
+
+    /**
+     * Evicts the least recently accessed of numSamples randomly chosen entries.
+     */
+    private void evictSampledVictim() {
+        K   victimKey  = null;
+        int victimIdle = -1;
+
+        for ( int i=0; i<numSamples; i++ ) {
+            K   key  = store.sampleKey( rnd );
+            int idle = clock - store.accessTimeOf( key, key.hashCode() );   // wrap safe, unlike comparing the access times directly
+
+            if ( idle > victimIdle ) {
+                victimKey  = key;
+                victimIdle = idle;
+            }
+        }
+
+        store.remove( victimKey, victimKey.hashCode() );
+    }
+}
@@ -0,0 +1,158 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BaseCache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Coalesces concurrent getOrFetch misses for the same key into a single call to the fetcher. The first thread to miss
+ * becomes responsible for the fetch, any other thread that misses on the same key while the fetch is in flight waits
+ * for and shares its result. Misses on different keys proceed independently and no cache wide lock is held while
+ * fetching, which protects the backend from a thundering herd when the cache is cold.<p/>
+ *
+ * If the fetch fails then every waiting thread receives the same exception, and the next miss tries again.<p/>
+ *
+ * The wrapped cache must be thread safe.
+ */
+public class SingleFlightCache<K,V> extends BaseCache<K,V> {
+
+    private Cache<K, V>                 wrappedCache;
+    private ConcurrentMap<K, Flight<V>> inFlightFetches = new ConcurrentHashMap<K, Flight<V>>();
+
+    public SingleFlightCache( Cache<K, V> wrappedCache ) {
+        super( wrappedCache.getCacheName() );
+
+        this.wrappedCache = wrappedCache;
+    }
+
+    @Override
+    public int size() {
+        return wrappedCache.size();
+    }
+
+    @Override
+    public void trimToSize() {
+        wrappedCache.trimToSize();
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        return wrappedCache.doGet( key, keyHashCode );
+    }
+
+    @Override
+    public V doPut( K key, V newValue, int keyHashCode ) {
+        return wrappedCache.doPut( key, newValue, keyHashCode );
+    }
+
+    @Override
+    public V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        return wrappedCache.doPutIfAbsent( key, newValue, keyHashCode );
+    }
+
+    @Override
+    public V doRemove( K key, int keyHashCode ) {
+        return wrappedCache.doRemove( key, keyHashCode );
+    }
+
+    @Override
+    public Map<K,V> getAll( Collection<K> keys ) {
+        return wrappedCache.getAll( keys );
+    }
+
+    @Override
+    public void putAll( Map<K,V> newMappings ) {
+        wrappedCache.putAll( newMappings );
+    }
+
+    @Override
+    public void removeAll( Collection<K> keys ) {
+        wrappedCache.removeAll( keys );
+    }
+
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        V currentValue = wrappedCache.doGet( key, keyHashCode );
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        Flight<V> newFlight      = new Flight<V>();
+        Flight<V> existingFlight = inFlightFetches.putIfAbsent( key, newFlight );
+        if ( existingFlight != null ) {
+            return existingFlight.awaitResult();
+        }
+
+        try {
+            // another flight may have completed between the miss above and registering this one
+            currentValue = wrappedCache.doGet( key, keyHashCode );
+
+            if ( currentValue == null ) {
+                currentValue = kvFetcher.fetch( key );
+
+                wrappedCache.doPut( key, currentValue, keyHashCode );
+            }
+
+            newFlight.complete( currentValue, null );
+
+            return currentValue;
+        } catch ( RuntimeException e ) {
+            newFlight.complete( null, e );
+
+            throw e;
+        } catch ( Error e ) {
+            newFlight.complete( null, e );
+
+            throw e;
+        } finally {
+            inFlightFetches.remove( key, newFlight );
+        }
+    }
+
+
+    private static class Flight<V> {
+        private final CountDownLatch latch = new CountDownLatch( 1 );
+
+        private V         result;
+        private Throwable failure;
+
+        public void complete( V result, Throwable failure ) {
+            this.result  = result;
+            this.failure = failure;
+
+            latch.countDown();
+        }
+
+        public V awaitResult() {
+            boolean wasInterrupted = false;
+
+            while ( true ) {
+                try {
+                    latch.await();
+
+                    break;
+                } catch ( InterruptedException e ) {
+                    wasInterrupted = true;
+                }
+            }
+
+            if ( wasInterrupted ) {
+                Thread.currentThread().interrupt();
+            }
+
+            if ( failure instanceof RuntimeException ) {
+                throw (RuntimeException) failure;
+            } else if ( failure instanceof Error ) {
+                throw (Error) failure;
+            }
+
+            return result;
+        }
+    }
+}
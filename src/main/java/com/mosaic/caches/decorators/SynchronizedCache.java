@@ -4,6 +4,9 @@ import com.mosaic.caches.Cache;
 import com.mosaic.caches.Fetcher;
 import com.mosaic.caches.impl.BaseCache;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  *
  */
@@ -22,6 +25,11 @@ public class SynchronizedCache<K,V> extends BaseCache<K,V> {
         return wrappedCache.size();
     }
 
+    @Override
+    public synchronized void trimToSize() {
+        wrappedCache.trimToSize();
+    }
+
     @Override
     public synchronized V doGet( K key, int keyHashCode ) {
         return wrappedCache.doGet( key, keyHashCode );
@@ -42,6 +50,21 @@ public class SynchronizedCache<K,V> extends BaseCache<K,V> {
         return wrappedCache.doRemove( key, keyHashCode );
     }
 
+    @Override
+    public synchronized Map<K,V> getAll( Collection<K> keys ) {
+        return wrappedCache.getAll( keys );
+    }
+
+    @Override
+    public synchronized void putAll( Map<K,V> newMappings ) {
+        wrappedCache.putAll( newMappings );
+    }
+
+    @Override
+    public synchronized void removeAll( Collection<K> keys ) {
+        wrappedCache.removeAll( keys );
+    }
+
     @Override
     public synchronized V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
         return wrappedCache.doGetOrFetch( key, kvFetcher, keyHashCode );
@@ -1,30 +1,103 @@
 package com.mosaic.caches.decorators;
 
 import com.mosaic.caches.Cache;
+import com.mosaic.caches.Expiry;
 import com.mosaic.caches.Fetcher;
 import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.util.Clock;
 import com.mosaic.caches.util.HashWheel;
+import com.mosaic.caches.util.SystemClock;
+import com.mosaic.caches.util.TimerWheel;
+import com.mosaic.caches.util.WheelTimer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Evict entries that have not been accessed for a specified amount of time.
+ * Evict entries that have not been accessed for a specified amount of time.<p/>
+ *
+ * Alternatively an Expiry decides the lifetime of each entry as it is created, updated and read, so that entries with
+ * very different lifetimes can share one cache and one hash wheel. An Expiry whose expireAfterRead returns the current
+ * duration gives each entry a maximum age, as MaxAgeEvictionCache does for a single fixed age.<p/>
+ *
+ * By default every request first advances the hash wheel, so a request that lands on a tick boundary pays for all of
+ * the expiries due in that tick. Supplying a ScheduledExecutorService moves that work onto the scheduler's thread,
+ * which advances the wheel periodically, releasing the cache's lock after each slice of MAX_EXPIRIES_PER_SLICE expiries
+ * so that a large bucket never holds up requests for long. Requests then only compare an entry's expiry time with the
+ * clock, and a read pushes that time back without touching the wheel; the wheel reschedules an entry that turns out to
+ * have been read since it was registered, rather than evicting it.
  */
 @SuppressWarnings("unchecked")
 public class TTLEvictionCache<K,V> extends BaseCache<K,V> {
 
-    private Cache<K, Node<V>> underlyingCache;
-    private int               ttlMillis;
-    private HashWheel         hashWheel;
+    static final int MAX_EXPIRIES_PER_SLICE = 1024;
+
+
+    private Cache<K, Node> underlyingCache;
+    private Expiry<K,V>    expiry;
+    private TimerWheel     hashWheel;
+    private Clock          clock;
+
+    private boolean            isBackgroundExpiry;
+    private ScheduledFuture<?> bookKeepingTask;
 
     public TTLEvictionCache( Cache underlyingCache, int ttlMillis ) {
         this( underlyingCache, ttlMillis, new HashWheel() );
     }
 
-    public TTLEvictionCache( Cache underlyingCache, int ttlMillis, HashWheel hashWheel ) {
+    public TTLEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel ) {
+        this( underlyingCache, ttlMillis, hashWheel, SystemClock.INSTANCE );
+    }
+
+    public TTLEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel, Clock clock ) {
+        this( underlyingCache, new ExpireAfterAccess<K,V>(ttlMillis), hashWheel, clock );
+    }
+
+    public TTLEvictionCache( Cache underlyingCache, Expiry<K,V> expiry ) {
+        this( underlyingCache, expiry, new HashWheel(), SystemClock.INSTANCE );
+    }
+
+    /**
+     * The clock is read once per request and must be the clock that the hash wheel was started from.
+     */
+    public TTLEvictionCache( Cache underlyingCache, Expiry<K,V> expiry, TimerWheel hashWheel, Clock clock ) {
         super( underlyingCache.getCacheName() );
 
         this.underlyingCache = underlyingCache;
-        this.ttlMillis       = ttlMillis;
+        this.expiry          = expiry;
         this.hashWheel       = hashWheel;
+        this.clock           = clock;
+    }
+
+    public TTLEvictionCache( Cache underlyingCache, int ttlMillis, ScheduledExecutorService expiryScheduler ) {
+        this( underlyingCache, ttlMillis, new HashWheel(), expiryScheduler, 128 );
+    }
+
+    /**
+     * Expires entries in the background. The scheduler advances the hash wheel every bookKeepingPeriodMillis until
+     * stopBackgroundExpiry is called.
+     */
+    public TTLEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel, ScheduledExecutorService expiryScheduler, long bookKeepingPeriodMillis ) {
+        this( underlyingCache, ttlMillis, hashWheel, SystemClock.INSTANCE, expiryScheduler, bookKeepingPeriodMillis );
+    }
+
+    public TTLEvictionCache( Cache underlyingCache, int ttlMillis, TimerWheel hashWheel, Clock clock, ScheduledExecutorService expiryScheduler, long bookKeepingPeriodMillis ) {
+        this( underlyingCache, new ExpireAfterAccess<K,V>(ttlMillis), hashWheel, clock, expiryScheduler, bookKeepingPeriodMillis );
+    }
+
+    public TTLEvictionCache( Cache underlyingCache, Expiry<K,V> expiry, TimerWheel hashWheel, Clock clock, ScheduledExecutorService expiryScheduler, long bookKeepingPeriodMillis ) {
+        this( underlyingCache, expiry, hashWheel, clock );
+
+        this.isBackgroundExpiry = true;
+        this.bookKeepingTask    = expiryScheduler.scheduleWithFixedDelay( new Runnable() {
+            public void run() {
+                applyBackgroundBookKeeping();
+            }
+        }, bookKeepingPeriodMillis, bookKeepingPeriodMillis, TimeUnit.MILLISECONDS );
     }
 
     @Override
@@ -32,91 +105,308 @@ public class TTLEvictionCache<K,V> extends BaseCache<K,V> {
         return underlyingCache.size();
     }
 
+    @Override
+    public synchronized void trimToSize() {
+        underlyingCache.trimToSize();
+    }
+
     @Override
     public synchronized V doGet( K key, int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
 
-        return nodeToValue( underlyingCache.doGet( key, keyHashCode ) );
+        applyInlineBookKeeping( nowMillis );
+
+        return nodeToValue( key, keyHashCode, underlyingCache.doGet(key, keyHashCode), nowMillis );
     }
 
     @Override
     public synchronized V doPut( final K key, V newValue, final int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
 
-        Node<V> node = createInternalNode( key, keyHashCode, newValue );
+        applyInlineBookKeeping( nowMillis );
 
-        return nodeToValue( underlyingCache.doPut( key, node, keyHashCode ) );
+        return putNode( key, keyHashCode, newValue, nowMillis );
     }
 
     @Override
     public synchronized V doPutIfAbsent( final K key, V newValue, final int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
 
-        Node<V> node = createInternalNode( key, keyHashCode, newValue );
+        applyInlineBookKeeping( nowMillis );
 
-        Node<V> activeNode = underlyingCache.doPutIfAbsent( key, node, keyHashCode );
-        if ( activeNode != node ) {
-            node.hashWheelTicket.cancel();
+        V currentValue = nodeToValue( key, keyHashCode, underlyingCache.doGet(key, keyHashCode), nowMillis );
+        if ( currentValue != null ) {
+            return currentValue;
         }
 
-        return nodeToValue( activeNode );
+        underlyingCache.doPut( key, createInternalNode(key, keyHashCode, newValue, nowMillis), keyHashCode );
+
+        return null;
     }
 
     @Override
     public synchronized V doRemove( K key, int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
 
-        Node<V> node = underlyingCache.doRemove( key, keyHashCode );
+        applyInlineBookKeeping( nowMillis );
+
+        Node node = underlyingCache.doRemove( key, keyHashCode );
         if ( node == null ) {
             return null;
         }
 
-        node.hashWheelTicket.cancel();
+        node.cancel();
 
         return node.value;
     }
 
     @Override
     public synchronized V doGetOrFetch( final K key, Fetcher<K, V> kvFetcher, final int keyHashCode ) {
-        hashWheel.applyBookKeeping( System.currentTimeMillis() );
+        long nowMillis = clock.currentTimeMillis();
 
-        Node<V> node = underlyingCache.doGet( key, keyHashCode );
-        if ( node == null ) {
-            V newValue = kvFetcher.fetch( key );
+        applyInlineBookKeeping( nowMillis );
+
+        V currentValue = nodeToValue( key, keyHashCode, underlyingCache.doGet(key, keyHashCode), nowMillis );
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        V newValue = kvFetcher.fetch( key );
+
+        underlyingCache.doPut( key, createInternalNode(key, keyHashCode, newValue, clock.currentTimeMillis()), keyHashCode );   // the fetch may have been slow
+
+        return newValue;
+    }
+
+    @Override
+    public synchronized Map<K,V> getAll( Collection<K> keys ) {
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
 
-            node = createInternalNode( key, keyHashCode, newValue );
+        Map<K,Node> nodes = underlyingCache.getAll( keys );
+        Map<K,V>    found = new HashMap<K,V>( nodes.size()*2 );
 
-            underlyingCache.doPut( key, node, keyHashCode );
+        for ( Map.Entry<K,Node> e : nodes.entrySet() ) {
+            K key   = e.getKey();
+            V value = nodeToValue( key, key.hashCode(), e.getValue(), nowMillis );
+
+            if ( value != null ) {
+                found.put( key, value );
+            }
         }
 
-        return node.value;
+        return found;
     }
 
-    private Node createInternalNode( final K key, final int keyHashCode, V newValue ) {
-        return new Node( newValue, hashWheel.register( System.currentTimeMillis()+ttlMillis, new Runnable() {
-            public void run() {
-                underlyingCache.doRemove( key, keyHashCode );
+    @Override
+    public synchronized void putAll( Map<K,V> newMappings ) {
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
+
+        for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+            K   key         = e.getKey();
+            int keyHashCode = key.hashCode();
+
+            putNode( key, keyHashCode, e.getValue(), nowMillis );
+        }
+    }
+
+    @Override
+    public synchronized void removeAll( Collection<K> keys ) {
+        long nowMillis = clock.currentTimeMillis();
+
+        applyInlineBookKeeping( nowMillis );
+
+        for ( K key : keys ) {
+            Node node = underlyingCache.doRemove( key, key.hashCode() );
+
+            if ( node != null ) {
+                node.cancel();
             }
-        }));
+        }
+    }
+
+    /**
+     * Stops the scheduler from advancing the hash wheel. Entries continue to expire when read, but are no longer
+     * removed unless they are read.
+     */
+    public void stopBackgroundExpiry() {
+        if ( bookKeepingTask != null ) {
+            bookKeepingTask.cancel( false );
+        }
+    }
+
+    private void applyInlineBookKeeping( long nowMillis ) {
+        if ( !isBackgroundExpiry ) {
+            hashWheel.applyBookKeeping( nowMillis );
+        }
+    }
+
+    /**
+     * Advances the hash wheel in slices of at most MAX_EXPIRIES_PER_SLICE expiries, releasing the lock between slices,
+     * so that a request arriving while a large bucket expires waits for one slice rather than the whole bucket.
+     */
+    private void applyBackgroundBookKeeping() {
+        long nowMillis = clock.currentTimeMillis();
+
+        while ( !applyBackgroundBookKeepingSlice(nowMillis) ) {
+            Thread.yield();   // monitors are not fair; give any waiting request a chance at the lock
+        }
+    }
+
+    /**
+     * Returns true once the hash wheel has caught up with the specified time.
+     */
+    synchronized boolean applyBackgroundBookKeepingSlice( long nowMillis ) {
+        return hashWheel.applyBookKeeping( nowMillis, MAX_EXPIRIES_PER_SLICE );
     }
 
-    private V nodeToValue( Node<V> node ) {
+    private Node createInternalNode( K key, int keyHashCode, V newValue, long nowMillis ) {
+        Node node = new Node( key, keyHashCode, newValue, toExpiresAtMillis(key, nowMillis, expiry.expireAfterCreate(key, newValue, nowMillis)) );
+
+        hashWheel.register( node.expiresAtMillis, node );
+
+        return node;
+    }
+
+    /**
+     * Replaces the value of a live entry in place, so an update allocates nothing. Returns the previous value.
+     */
+    private V putNode( K key, int keyHashCode, V newValue, long nowMillis ) {
+        Node node = underlyingCache.doGet( key, keyHashCode );
+        if ( node != null && isExpired(node, nowMillis) ) {
+            expireNow( key, keyHashCode, node );
+
+            node = null;
+        }
+
         if ( node == null ) {
+            underlyingCache.doPut( key, createInternalNode(key, keyHashCode, newValue, nowMillis), keyHashCode );
+
+            return null;
+        }
+
+        long newExpiresAtMillis = toExpiresAtMillis( key, nowMillis, expiry.expireAfterUpdate(key, newValue, nowMillis, node.expiresAtMillis - nowMillis) );
+
+        V oldValue = node.value;
+        node.value = newValue;
+
+        updateExpiry( node, newExpiresAtMillis );
+
+        return oldValue;
+    }
+
+    /**
+     * Called by the hash wheel once an entry's timer has run out.
+     */
+    private void nodeTimedOut( Node node ) {
+        if ( isBackgroundExpiry && !isExpired(node, clock.currentTimeMillis()) ) {
+            hashWheel.register( node.expiresAtMillis, node );   // read since it was registered
+        } else {
+            underlyingCache.doRemove( node.key, node.keyHashCode );
+        }
+    }
+
+    private V nodeToValue( K key, int keyHashCode, Node node, long nowMillis ) {
+        if ( node == null ) {
+            return null;
+        }
+
+        if ( isExpired(node, nowMillis) ) {
+            expireNow( key, keyHashCode, node );
+
             return null;
         }
 
-        node.hashWheelTicket.rescheduleTo( System.currentTimeMillis() + ttlMillis );
+        updateExpiry( node, toExpiresAtMillis(key, nowMillis, expiry.expireAfterRead(key, node.value, nowMillis, node.expiresAtMillis - nowMillis)) );
 
         return node.value;
     }
 
-    private static class Node<V> {
-        private V value;
-        private HashWheel.Ticket hashWheelTicket;
+    /**
+     * Saturates rather than overflows, so that an Expiry may return Long.MAX_VALUE for an entry that never expires.
+     */
+    private long toExpiresAtMillis( K key, long nowMillis, long durationMillis ) {
+        if ( durationMillis < 0 ) {
+            throw new IllegalArgumentException( "expiry returned a negative duration (" + durationMillis + ") for key " + key );
+        }
+
+        return durationMillis > Long.MAX_VALUE - nowMillis ? Long.MAX_VALUE : nowMillis + durationMillis;
+    }
+
+    /**
+     * With background expiry an entry whose expiry moves later is left where it is on the hash wheel, which will
+     * reschedule it when it times out. Only an entry whose expiry moves earlier has to be moved.
+     */
+    private void updateExpiry( Node node, long newExpiresAtMillis ) {
+        if ( newExpiresAtMillis == node.expiresAtMillis ) {
+            return;
+        }
+
+        boolean isRescheduleRequired = !isBackgroundExpiry || newExpiresAtMillis < node.expiresAtMillis;
+
+        node.expiresAtMillis = newExpiresAtMillis;
+
+        if ( isRescheduleRequired ) {
+            node.rescheduleTo( newExpiresAtMillis );
+        }
+    }
+
+    /**
+     * Only background expiry lets an entry outlive its expiry time; inline book keeping will already have removed it.
+     */
+    private boolean isExpired( Node node, long nowMillis ) {
+        return isBackgroundExpiry && nowMillis >= node.expiresAtMillis;
+    }
+
+    private void expireNow( K key, int keyHashCode, Node node ) {
+        underlyingCache.doRemove( key, keyHashCode );
 
-        public Node( V value, HashWheel.Ticket hashWheelTicket ) {
+        node.cancel();
+    }
+
+    private static class ExpireAfterAccess<K,V> implements Expiry<K,V> {
+        private final long ttlMillis;
+
+        public ExpireAfterAccess( long ttlMillis ) {
+            this.ttlMillis = ttlMillis;
+        }
+
+        public long expireAfterCreate( K key, V value, long nowMillis ) {
+            return ttlMillis;
+        }
+
+        public long expireAfterUpdate( K key, V newValue, long nowMillis, long currentDurationMillis ) {
+            return ttlMillis;
+        }
+
+        public long expireAfterRead( K key, V value, long nowMillis, long currentDurationMillis ) {
+            return ttlMillis;
+        }
+    }
+
+    /**
+     * Both the value held by the underlying cache and the entry's timer on the hash wheel, so that adding an entry
+     * allocates a single object.
+     */
+    private class Node extends WheelTimer {
+        private final K    key;
+        private final int  keyHashCode;
+        private       V    value;
+        private       long expiresAtMillis;
+
+        public Node( K key, int keyHashCode, V value, long expiresAtMillis ) {
+            this.key             = key;
+            this.keyHashCode     = keyHashCode;
             this.value           = value;
-            this.hashWheelTicket = hashWheelTicket;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        @Override
+        protected void timeout() {
+            nodeTimedOut( this );
         }
     }
 
@@ -0,0 +1,234 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.util.DoubleLinkList;
+import com.mosaic.caches.util.FrequencySketch;
+import com.mosaic.caches.util.Validate;
+
+/**
+ * Bounds the size of a cache using the Window TinyLFU policy, which unlike LRU does not let a scan of cold keys flush
+ * out the hot working set.<p/>
+ *
+ * New entries enter a small LRU admission window (1% of the cache). Entries that fall out of the window become
+ * candidates for the main region, which is a segmented LRU split into probation (20%) and protected (80%) segments; an
+ * entry in probation that is read again is promoted to protected. When the cache is full the candidate is only
+ * admitted if a count-min sketch of recent access frequencies rates it above the probation segment's least recently
+ * used entry, otherwise the candidate itself is evicted. The sketch ages its counters periodically, so the cache
+ * follows shifts in popularity.<p/>
+ *
+ * Like the other eviction caches, this decorator is not thread safe.
+ *
+ * @see "Einziger, Friedman and Manes, TinyLFU: A Highly Efficient Cache Admission Policy"
+ */
+@SuppressWarnings("unchecked")
+public class WindowTinyLFUEvictionCache<K,V> extends BaseCache<K,V> {
+
+    private static final int WINDOW    = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final Cache<K,LFUNode<K,V>> underlyingCache;
+    private final int                   maxCacheSize;
+    private final int                   maxWindowSize;
+    private final int                   maxProtectedSize;
+
+    private final DoubleLinkList<LFUNode<K,V>> window        = new DoubleLinkList<LFUNode<K,V>>();
+    private final DoubleLinkList<LFUNode<K,V>> probation     = new DoubleLinkList<LFUNode<K,V>>();
+    private final DoubleLinkList<LFUNode<K,V>> protectedList = new DoubleLinkList<LFUNode<K,V>>();
+
+    private final FrequencySketch sketch;
+
+
+    public WindowTinyLFUEvictionCache( Cache<K,V> wrappedCache, int maxCacheSize ) {
+        super( wrappedCache.getCacheName() );
+
+        Validate.gtZero( maxCacheSize, "maxCacheSize" );
+
+        this.underlyingCache  = (Cache) wrappedCache;
+        this.maxCacheSize     = maxCacheSize;
+        this.maxWindowSize    = Math.max( 1, maxCacheSize/100 );
+        this.maxProtectedSize = (maxCacheSize - maxWindowSize) * 8 / 10;
+        this.sketch           = new FrequencySketch( maxCacheSize );
+    }
+
+    @Override
+    public int size() {
+        return underlyingCache.size();
+    }
+
+    @Override
+    public void trimToSize() {
+        underlyingCache.trimToSize();
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        sketch.increment( keyHashCode );
+
+        LFUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            return null;
+        }
+
+        nodeRead( node );
+
+        return node.value;
+    }
+
+    @Override
+    public V doPut( K key, V newValue, int keyHashCode ) {
+        sketch.increment( keyHashCode );
+
+        LFUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            insertNewNode( key, newValue, keyHashCode );
+
+            return null;
+        }
+
+        nodeRead( node );
+
+        V oldValue = node.value;
+        node.value = newValue;
+
+        return oldValue;
+    }
+
+    @Override
+    public V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        sketch.increment( keyHashCode );
+
+        LFUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            insertNewNode( key, newValue, keyHashCode );
+
+            return null;
+        }
+
+        nodeRead( node );
+
+        return node.value;
+    }
+
+    @Override
+    public V doRemove( K key, int keyHashCode ) {
+        LFUNode<K,V> node = underlyingCache.doRemove( key, keyHashCode );
+        if ( node == null ) {
+            return null;
+        }
+
+        node.detachNode();
+
+        return node.value;
+    }
+
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        sketch.increment( keyHashCode );
+
+        LFUNode<K,V> node = underlyingCache.doGet( key, keyHashCode );
+        if ( node == null ) {
+            V newValue = kvFetcher.fetch( key );
+
+            insertNewNode( key, newValue, keyHashCode );
+
+            return newValue;
+        }
+
+        nodeRead( node );
+
+        return node.value;
+    }
+
+
+    private void nodeRead( LFUNode<K,V> node ) {
+        switch ( node.region ) {
+            case WINDOW:
+                node.detachNode();
+                window.insertHead( node );
+                break;
+            case PROBATION:
+                node.detachNode();
+                node.region = PROTECTED;
+                protectedList.insertHead( node );
+
+                demoteExcessProtectedNodes();
+                break;
+            case PROTECTED:
+                node.detachNode();
+                protectedList.insertHead( node );
+                break;
+        }
+    }
+
+    private void insertNewNode( K key, V newValue, int keyHashCode ) {
+        LFUNode<K,V> node = new LFUNode<K,V>( key, newValue, keyHashCode );
+
+        underlyingCache.doPut( key, node, keyHashCode );
+        window.insertHead( node );
+
+        if ( window.size() > maxWindowSize ) {
+            LFUNode<K,V> candidate = window.popTail();
+
+            candidate.region = PROBATION;
+            probation.insertHead( candidate );
+
+            if ( underlyingCache.size() > maxCacheSize ) {
+                evictFromMainRegion( candidate );
+            }
+        }
+    }
+
+    /**
+     * The candidate has just left the admission window. Either it or the main region's least recently used entry must
+     * go, keep whichever the sketch says has been used the most.
+     */
+    private void evictFromMainRegion( LFUNode<K,V> candidate ) {
+        LFUNode<K,V> victim = probation.tail();
+        if ( victim == candidate ) {
+            victim = protectedList.tail();
+        }
+
+        if ( victim == null ) {
+            evict( candidate );
+        } else if ( sketch.frequency(candidate.keyHashCode) > sketch.frequency(victim.keyHashCode) ) {
+            evict( victim );
+        } else {
+            evict( candidate );
+        }
+    }
+
+    private void demoteExcessProtectedNodes() {
+        while ( protectedList.size() > maxProtectedSize ) {
+            LFUNode<K,V> demoted = protectedList.popTail();
+
+            demoted.region = PROBATION;
+            probation.insertHead( demoted );
+        }
+    }
+
+    private void evict( LFUNode<K,V> node ) {
+        node.detachNode();
+
+        underlyingCache.doRemove( node.getValue(), node.keyHashCode );
+    }
+
+
+    /**
+     * The list node's own value holds the entry's key.
+     */
+    private static class LFUNode<K,V> extends DoubleLinkList.Node<K,LFUNode<K,V>> {
+        private final int keyHashCode;
+        private       V   value;
+        private       int region = WINDOW;
+
+        public LFUNode( K key, V value, int keyHashCode ) {
+            super( key );
+
+            this.value       = value;
+            this.keyHashCode = keyHashCode;
+        }
+    }
+}
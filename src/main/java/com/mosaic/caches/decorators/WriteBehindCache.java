@@ -0,0 +1,289 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.Writer;
+import com.mosaic.caches.impl.BaseCache;
+import com.mosaic.caches.util.Validate;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies puts and removes to the wrapped cache immediately and writes them to a backing store later, in batches.<p/>
+ *
+ * Each write marks its key as dirty. Writing the same key again before it has been flushed only replaces the pending
+ * value, so a hot key that is updated many times between flushes costs the backing store a single write. Dirty keys
+ * are handed to the Writer by the flush scheduler's thread, every flushPeriodMillis and as soon as maxBatchSize keys
+ * are waiting, in batches of at most maxBatchSize. Flushes never overlap, so the writes for a key reach the Writer in
+ * order. A batch that the Writer rejects is queued again behind any newer writes to the same keys.<p/>
+ *
+ * While the Writer is failing, reaching maxBatchSize no longer triggers a flush; the backing store is only retried by
+ * the periodic flush (or an explicit call to flush) until a batch is written successfully, rather than at the rate that
+ * the application writes. Failures are counted and the most recent is kept, see getFlushFailureCount.<p/>
+ *
+ * Reads are not synchronized, so the wrapped cache should support reads that run concurrently with a writer. Writes,
+ * and a getOrFetch that misses, are synchronized; the wrapped cache fills a miss while the lock is held, so writes to
+ * this cache wait for the fetch to finish. A dirty entry that the wrapped cache evicts is still written, but a
+ * getOrFetch that misses on it before the flush will fetch the value held by the backing store.
+ */
+@SuppressWarnings("unchecked")
+public class WriteBehindCache<K,V> extends BaseCache<K,V> {
+
+    private static final Object REMOVED = new Object();
+
+
+    private final Cache<K,V>               wrappedCache;
+    private final Writer<K,V>              writer;
+    private final int                      maxBatchSize;
+    private final ScheduledExecutorService flushScheduler;
+    private final ScheduledFuture<?>       flushTask;
+    private final Object                   flushLock = new Object();
+
+    private final Runnable backgroundFlush = new Runnable() {
+        public void run() {
+            try {
+                flush();
+            } catch ( Throwable e ) {
+                // already recorded and the batch queued again; letting it escape would cancel the periodic flush
+            }
+        }
+    };
+
+    // guarded by this
+    private LinkedHashMap<K,Object> dirtyEntries = new LinkedHashMap<K,Object>();
+    private boolean                 isFlushRequested;
+    private boolean                 isBackingOff;
+    private long                    flushFailureCount;
+    private Throwable               lastFlushFailure;
+
+
+    /**
+     * @param maxBatchSize      the most keys handed to the writer at once; reaching it triggers a flush
+     * @param flushPeriodMillis the longest that a write waits before it is flushed
+     */
+    public WriteBehindCache( Cache wrappedCache, Writer<K,V> writer, ScheduledExecutorService flushScheduler, int maxBatchSize, long flushPeriodMillis ) {
+        super( wrappedCache.getCacheName() );
+
+        Validate.gtZero( maxBatchSize, "maxBatchSize" );
+
+        this.wrappedCache   = wrappedCache;
+        this.writer         = writer;
+        this.maxBatchSize   = maxBatchSize;
+        this.flushScheduler = flushScheduler;
+        this.flushTask      = flushScheduler.scheduleWithFixedDelay( backgroundFlush, flushPeriodMillis, flushPeriodMillis, TimeUnit.MILLISECONDS );
+    }
+
+    @Override
+    public int size() {
+        return wrappedCache.size();
+    }
+
+    @Override
+    public synchronized void trimToSize() {
+        wrappedCache.trimToSize();
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        return wrappedCache.doGet( key, keyHashCode );
+    }
+
+    @Override
+    public synchronized V doPut( K key, V newValue, int keyHashCode ) {
+        V oldValue = wrappedCache.doPut( key, newValue, keyHashCode );
+
+        markDirty( key, newValue );
+
+        return oldValue;
+    }
+
+    @Override
+    public synchronized V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        V currentValue = wrappedCache.doPutIfAbsent( key, newValue, keyHashCode );
+        if ( currentValue == null ) {
+            markDirty( key, newValue );
+        }
+
+        return currentValue;
+    }
+
+    @Override
+    public synchronized V doRemove( K key, int keyHashCode ) {
+        V oldValue = wrappedCache.doRemove( key, keyHashCode );
+
+        markDirty( key, REMOVED );
+
+        return oldValue;
+    }
+
+    /**
+     * Values fetched on a miss came from the backing store, so are not written back. A miss holds the same lock as the
+     * writes, so that a put made while the value is being fetched cannot be overwritten by the older fetched value.
+     */
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        V currentValue = wrappedCache.doGet( key, keyHashCode );
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        synchronized (this) {
+            return wrappedCache.doGetOrFetch( key, kvFetcher, keyHashCode );
+        }
+    }
+
+    @Override
+    public Map<K,V> getAll( Collection<K> keys ) {
+        return wrappedCache.getAll( keys );
+    }
+
+    @Override
+    public synchronized void putAll( Map<K,V> newMappings ) {
+        wrappedCache.putAll( newMappings );
+
+        for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+            markDirty( e.getKey(), e.getValue() );
+        }
+    }
+
+    @Override
+    public synchronized void removeAll( Collection<K> keys ) {
+        wrappedCache.removeAll( keys );
+
+        for ( K key : keys ) {
+            markDirty( key, REMOVED );
+        }
+    }
+
+    /**
+     * Hands every dirty key to the writer on the calling thread, waiting for any flush already in progress to finish
+     * first. If the writer throws, its batch is queued again and the exception is rethrown.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Map.Entry<K,Object>> batch;
+
+            do {
+                batch = takeBatch();
+
+                if ( !batch.isEmpty() ) {
+                    writeBatch( batch );
+                }
+            } while ( batch.size() == maxBatchSize );   // stops once caught up, even while writes keep arriving
+        }
+    }
+
+    /**
+     * Stops the periodic flush and flushes whatever is still dirty. Later writes are only flushed by calling flush.
+     */
+    public void stopBackgroundFlush() {
+        flushTask.cancel( false );
+
+        flush();
+    }
+
+    /**
+     * The number of keys waiting to be flushed.
+     */
+    public synchronized int getDirtyCount() {
+        return dirtyEntries.size();
+    }
+
+
+    /**
+     * The number of batches that the writer has failed to write.
+     */
+    public synchronized long getFlushFailureCount() {
+        return flushFailureCount;
+    }
+
+    /**
+     * The exception thrown by the writer the last time that it failed, or null if it never has.
+     */
+    public synchronized Throwable getLastFlushFailure() {
+        return lastFlushFailure;
+    }
+
+
+    private void markDirty( K key, Object valueOrRemoved ) {
+        dirtyEntries.put( key, valueOrRemoved );
+
+        if ( dirtyEntries.size() >= maxBatchSize && !isFlushRequested && !isBackingOff && !flushTask.isCancelled() ) {
+            isFlushRequested = true;
+
+            flushScheduler.execute( backgroundFlush );
+        }
+    }
+
+    private synchronized List<Map.Entry<K,Object>> takeBatch() {
+        isFlushRequested = false;
+
+        List<Map.Entry<K,Object>>     batch = new ArrayList<Map.Entry<K,Object>>( Math.min(dirtyEntries.size(), maxBatchSize) );
+        Iterator<Map.Entry<K,Object>> it    = dirtyEntries.entrySet().iterator();
+
+        while ( it.hasNext() && batch.size() < maxBatchSize ) {
+            Map.Entry<K,Object> e = it.next();
+
+            batch.add( new AbstractMap.SimpleImmutableEntry<K,Object>(e) );
+            it.remove();
+        }
+
+        return batch;
+    }
+
+    private void writeBatch( List<Map.Entry<K,Object>> batch ) {
+        Map<K,V> updatedValues = new LinkedHashMap<K,V>( batch.size()*2 );
+        List<K>  removedKeys   = new ArrayList<K>();
+
+        for ( Map.Entry<K,Object> e : batch ) {
+            if ( e.getValue() == REMOVED ) {
+                removedKeys.add( e.getKey() );
+            } else {
+                updatedValues.put( e.getKey(), (V) e.getValue() );
+            }
+        }
+
+        try {
+            writer.writeAll( updatedValues, removedKeys );
+        } catch ( RuntimeException e ) {
+            batchFailed( batch, e );
+
+            throw e;
+        } catch ( Error e ) {
+            batchFailed( batch, e );
+
+            throw e;
+        }
+
+        batchWritten();
+    }
+
+    private synchronized void batchWritten() {
+        isBackingOff = false;
+    }
+
+    /**
+     * Queues the batch again and stops size triggered flushes until a batch is written. Keys that have been written
+     * again since the batch was taken keep their newer value.
+     */
+    private synchronized void batchFailed( List<Map.Entry<K,Object>> batch, Throwable failure ) {
+        for ( Map.Entry<K,Object> e : batch ) {
+            if ( !dirtyEntries.containsKey(e.getKey()) ) {
+                dirtyEntries.put( e.getKey(), e.getValue() );
+            }
+        }
+
+        isBackingOff     = true;
+        lastFlushFailure = failure;
+        flushFailureCount++;
+    }
+}
@@ -1,8 +1,14 @@
 package com.mosaic.caches.impl;
 
+import com.mosaic.caches.BatchFetcher;
 import com.mosaic.caches.Cache;
 import com.mosaic.caches.Fetcher;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
 /**
  *
  */
@@ -53,6 +59,65 @@ public abstract class BaseCache<K,V> implements Cache<K,V> {
         return doGetOrFetch( key, fetcher, key.hashCode() );
     }
 
+    /**
+     * Looks up each key in turn. Caches that guard their contents with a lock override the bulk methods so that the
+     * lock is taken once per batch rather than once per key.
+     */
+    public Map<K,V> getAll( Collection<K> keys ) {
+        Map<K,V> found = new HashMap<K,V>( keys.size()*2 );
+
+        for ( K key : keys ) {
+            V value = doGet( key, key.hashCode() );
+
+            if ( value != null ) {
+                found.put( key, value );
+            }
+        }
+
+        return found;
+    }
+
+    public void putAll( Map<K,V> newMappings ) {
+        for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+            K key = e.getKey();
+
+            doPut( key, e.getValue(), key.hashCode() );
+        }
+    }
+
+    public void removeAll( Collection<K> keys ) {
+        for ( K key : keys ) {
+            doRemove( key, key.hashCode() );
+        }
+    }
+
+    /**
+     * Built from the bulk operations, so the lookup and the write back each cost one pass through the cache (one lock
+     * acquisition per stripe for those caches that lock) and no lock is held while the fetcher runs.
+     */
+    public Map<K,V> getAllOrFetch( Collection<K> keys, BatchFetcher<K,V> fetcher ) {
+        Map<K,V> found = getAll( keys );
+        if ( found.size() == keys.size() ) {
+            return found;
+        }
+
+        Collection<K> misses = new LinkedHashSet<K>();
+        for ( K key : keys ) {
+            if ( !found.containsKey(key) ) {
+                misses.add( key );
+            }
+        }
+
+        if ( !misses.isEmpty() ) {
+            Map<K,V> fetched = fetcher.fetchAll( misses );
+
+            putAll( fetched );
+            found.putAll( fetched );
+        }
+
+        return found;
+    }
+
 
 
     public abstract V doGet( K key, int keyHashCode );
@@ -0,0 +1,148 @@
+package com.mosaic.caches.impl;
+
+import com.mosaic.caches.AsyncCache;
+import com.mosaic.caches.AsyncFetcher;
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.CacheFuture;
+import com.mosaic.caches.CacheFutureListener;
+
+/**
+ * An AsyncCache that holds its values as futures within an ordinary Cache. A fetch is installed into the wrapped cache
+ * with putIfAbsent before it is started, so concurrent callers for the same key are handed the same future rather
+ * than starting fetches of their own. Because the futures are ordinary cache values, the wrapped cache may be any of
+ * the existing decorators; an LRUEvictionCache bounds the number of values and fetches held, a TTLEvictionCache
+ * expires them.<p/>
+ *
+ * A fetch that fails, or that completes without a value, is removed again so that the next call fetches afresh. The
+ * removal must not take out a value or fetch that has replaced it in the meantime. The Cache SPI has no conditional
+ * remove, so every write made by this class takes one of a set of striped locks, selected by the key's hash code, and
+ * the failed fetch is only removed while it is still the current value under that lock.<p/>
+ *
+ * The wrapped cache must be thread safe when the AsyncCache is shared between threads, and should only be written to
+ * through this class; evictions made by the wrapped cache itself are fine.
+ */
+public class FutureCache<K,V> implements AsyncCache<K,V> {
+
+    private static final int NUM_KEY_LOCKS = 32;
+
+
+    private Cache<K, CacheFuture<V>> wrappedCache;
+    private Object[]                 keyLocks = new Object[NUM_KEY_LOCKS];
+
+    public FutureCache( Cache<K, CacheFuture<V>> wrappedCache ) {
+        this.wrappedCache = wrappedCache;
+
+        for ( int i=0; i<NUM_KEY_LOCKS; i++ ) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String getCacheName() {
+        return wrappedCache.getCacheName();
+    }
+
+    @Override
+    public int size() {
+        return wrappedCache.size();
+    }
+
+    @Override
+    public CacheFuture<V> getAsync( K key ) {
+        CacheFuture<V> future = wrappedCache.get( key );
+
+        return future == null ? CacheFuture.<V>completed( null ) : future;
+    }
+
+    @Override
+    public CacheFuture<V> getOrFetchAsync( final K key, AsyncFetcher<K, V> fetcher ) {
+        final int keyHashCode = key.hashCode();
+
+        CacheFuture<V> currentFuture = wrappedCache.doGet( key, keyHashCode );
+        if ( currentFuture != null ) {
+            return currentFuture;
+        }
+
+        final CacheFuture<V> newFuture = new CacheFuture<V>();
+
+        synchronized (lockFor(keyHashCode)) {
+            currentFuture = wrappedCache.doPutIfAbsent( key, newFuture, keyHashCode );
+        }
+
+        if ( currentFuture != null ) {
+            return currentFuture;
+        }
+
+        newFuture.addListener( new CacheFutureListener<V>() {
+            public void completed( V value, Throwable failure ) {
+                if ( failure != null || value == null ) {
+                    removeIfCurrent( key, keyHashCode, newFuture );
+                }
+            }
+        } );
+
+        // whatever goes wrong starting the fetch must fail the installed future, else it would never complete and every
+        // later caller for the key would wait on it forever
+        CacheFuture<V> fetchedFuture;
+        try {
+            fetchedFuture = fetcher.fetchAsync( key );
+        } catch ( RuntimeException e ) {
+            newFuture.fail( e );
+
+            return newFuture;
+        } catch ( Error e ) {
+            newFuture.fail( e );
+
+            throw e;
+        }
+
+        if ( fetchedFuture == null ) {
+            newFuture.fail( new NullPointerException("fetchAsync returned null for key " + key) );
+
+            return newFuture;
+        }
+
+        fetchedFuture.addListener( new CacheFutureListener<V>() {
+            public void completed( V value, Throwable failure ) {
+                if ( failure == null ) {
+                    newFuture.complete( value );
+                } else {
+                    newFuture.fail( failure );
+                }
+            }
+        } );
+
+        return newFuture;
+    }
+
+    @Override
+    public void put( K key, V newValue ) {
+        int keyHashCode = key.hashCode();
+
+        synchronized (lockFor(keyHashCode)) {
+            wrappedCache.doPut( key, CacheFuture.completed(newValue), keyHashCode );
+        }
+    }
+
+    @Override
+    public void remove( K key ) {
+        int keyHashCode = key.hashCode();
+
+        synchronized (lockFor(keyHashCode)) {
+            wrappedCache.doRemove( key, keyHashCode );
+        }
+    }
+
+
+    private Object lockFor( int keyHashCode ) {
+        return keyLocks[keyHashCode & (NUM_KEY_LOCKS-1)];
+    }
+
+    private void removeIfCurrent( K key, int keyHashCode, CacheFuture<V> expectedFuture ) {
+        synchronized (lockFor(keyHashCode)) {
+            if ( wrappedCache.doGet(key, keyHashCode) == expectedFuture ) {
+                wrappedCache.doRemove( key, keyHashCode );
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.mosaic.caches.impl;
+
+import com.mosaic.caches.LongLongCache;
+import com.mosaic.caches.LongLongFetcher;
+import com.mosaic.caches.stores.InlineLongLongMapStore;
+import com.mosaic.caches.stores.LongLongStore;
+
+/**
+ * A long to long cache that wraps a LongLongStore. Not thread safe.
+ */
+public class LongLongStoreCache implements LongLongCache {
+
+    private String        cacheName;
+    private LongLongStore store;
+
+    public LongLongStoreCache( String cacheName ) {
+        this( cacheName, new InlineLongLongMapStore() );
+    }
+
+    public LongLongStoreCache( String cacheName, LongLongStore underlyingStore ) {
+        this.cacheName = cacheName;
+        this.store     = underlyingStore;
+    }
+
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public long getNoEntryValue() {
+        return store.getNoEntryValue();
+    }
+
+    public boolean containsKey( long key ) {
+        return store.containsKey( key );
+    }
+
+    public long get( long key ) {
+        return store.get( key );
+    }
+
+    public long put( long key, long newValue ) {
+        return store.put( key, newValue );
+    }
+
+    public long putIfAbsent( long key, long newValue ) {
+        if ( store.containsKey(key) ) {
+            return store.get( key );
+        }
+
+        return store.put( key, newValue );
+    }
+
+    public long getOrFetch( long key, LongLongFetcher fetcher ) {
+        if ( store.containsKey(key) ) {
+            return store.get( key );
+        }
+
+        long newValue = fetcher.fetch( key );
+
+        store.put( key, newValue );
+
+        return newValue;
+    }
+
+    public long remove( long key ) {
+        return store.remove( key );
+    }
+}
@@ -0,0 +1,67 @@
+package com.mosaic.caches.impl;
+
+import com.mosaic.caches.LongCache;
+import com.mosaic.caches.LongFetcher;
+import com.mosaic.caches.stores.InlineLongObjectMapStore;
+import com.mosaic.caches.stores.LongObjectStore;
+
+/**
+ * A long keyed cache that wraps a LongObjectStore. Not thread safe.
+ */
+public class LongStoreCache<V> implements LongCache<V> {
+
+    private String             cacheName;
+    private LongObjectStore<V> store;
+
+    public LongStoreCache( String cacheName ) {
+        this( cacheName, new InlineLongObjectMapStore<V>() );
+    }
+
+    public LongStoreCache( String cacheName, LongObjectStore<V> underlyingStore ) {
+        this.cacheName = cacheName;
+        this.store     = underlyingStore;
+    }
+
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public V get( long key ) {
+        return store.get( key );
+    }
+
+    public V put( long key, V newValue ) {
+        return store.put( key, newValue );
+    }
+
+    public V putIfAbsent( long key, V newValue ) {
+        V currentValue = store.get( key );
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        return store.put( key, newValue );
+    }
+
+    public V getOrFetch( long key, LongFetcher<V> fetcher ) {
+        V currentValue = store.get( key );
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+        V newValue = fetcher.fetch( key );
+
+        store.put( key, newValue );
+
+        return newValue;
+    }
+
+    public V remove( long key ) {
+        return store.remove( key );
+    }
+}
@@ -0,0 +1,280 @@
+package com.mosaic.caches.impl;
+
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.stores.Store;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A variation of ReadWriteCache whose readers do not touch the shared read lock unless a write is in progress.<p/>
+ *
+ * Taking a read lock writes to the lock's reader count, so on a read only workload every get still bounces that cache
+ * line between cores. Instead readers optimistically announce themselves on one of a set of per thread counters,
+ * each on a cache line of its own, and then check whether a writer is active. When no writer is active the store is
+ * read without any further coordination; otherwise the reader withdraws its announcement and falls back to the read
+ * lock. Writers take the write lock, raise the writer flag and wait for the announced readers to drain before
+ * modifying the store.<p/>
+ *
+ * Reads scale with the number of reader threads at the cost of making each write scan the reader counters, so this
+ * cache suits read mostly workloads.
+ */
+public class OptimisticReadWriteCache<K,V> extends BaseCache<K,V> {
+    private static final int NUM_READER_STRIPES   = 64;
+    private static final int READER_PADDING_SHIFT = 4;   // one counter per 64 byte cache line
+
+    private ReentrantReadWriteLock           rwLock    = new ReentrantReadWriteLock();
+    private ReentrantReadWriteLock.ReadLock  readLock  = rwLock.readLock();
+    private ReentrantReadWriteLock.WriteLock writeLock = rwLock.writeLock();
+
+    private final AtomicIntegerArray readerCounts = new AtomicIntegerArray( NUM_READER_STRIPES << READER_PADDING_SHIFT );
+    private volatile boolean         isWriterActive;
+
+
+    private Store<K, V> underlyingStore;
+
+
+    public OptimisticReadWriteCache( String cacheName, Store<K, V> underlyingStore ) {
+        super( cacheName );
+
+        this.underlyingStore = underlyingStore;
+    }
+
+    @Override
+    public int size() {
+        int stripe = readerStripe();
+
+        readerCounts.incrementAndGet( stripe );
+        try {
+            if ( !isWriterActive ) {
+                return underlyingStore.size();
+            }
+        } finally {
+            readerCounts.decrementAndGet( stripe );
+        }
+
+
+        readLock.lock();
+
+        try {
+            return underlyingStore.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void trimToSize() {
+        lockForWriting();
+
+        try {
+            underlyingStore.trimToSize();
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+    @Override
+    public V doGet( K key, int keyHashCode ) {
+        int stripe = readerStripe();
+
+        readerCounts.incrementAndGet( stripe );
+        try {
+            if ( !isWriterActive ) {
+                return underlyingStore.get( key, keyHashCode );
+            }
+        } finally {
+            readerCounts.decrementAndGet( stripe );
+        }
+
+
+        readLock.lock();     // a writer is active, wait for it to finish
+
+        try {
+            return underlyingStore.get( key, keyHashCode );
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V doPut( K key, V newValue, int keyHashCode ) {
+        lockForWriting();
+
+        try {
+            return underlyingStore.put( key, newValue, keyHashCode );
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+    @Override
+    public V doPutIfAbsent( K key, V newValue, int keyHashCode ) {
+        V currentValue = doGet(key,keyHashCode);  // try an optimistic read first; majority of time this should be it
+
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+
+        lockForWriting();
+
+        try {
+            currentValue = underlyingStore.get(key, keyHashCode);   // retry once the write lock is established
+
+            if ( currentValue != null ) {
+                return currentValue;
+            }
+
+            return underlyingStore.put( key, newValue, keyHashCode );
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+    @Override
+    public V doRemove( K key, int keyHashCode ) {
+        lockForWriting();
+
+        try {
+            return underlyingStore.remove( key, keyHashCode );
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+    @Override
+    public V doGetOrFetch( K key, Fetcher<K, V> kvFetcher, int keyHashCode ) {
+        V currentValue = doGet(key,keyHashCode);  // try an optimistic read first; majority of time this should be it
+
+        if ( currentValue != null ) {
+            return currentValue;
+        }
+
+
+        lockForWriting();
+
+        try {
+            currentValue = underlyingStore.get(key, keyHashCode);   // retry once the write lock is established
+
+            if ( currentValue != null ) {
+                return currentValue;
+            }
+
+            V newValue = kvFetcher.fetch( key );
+            underlyingStore.put( key, newValue, keyHashCode );
+
+            return newValue;
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+    @Override
+    public Map<K,V> getAll( Collection<K> keys ) {
+        int stripe = readerStripe();
+
+        readerCounts.incrementAndGet( stripe );
+        try {
+            if ( !isWriterActive ) {
+                return getAllFromStore( keys );
+            }
+        } finally {
+            readerCounts.decrementAndGet( stripe );
+        }
+
+
+        readLock.lock();
+
+        try {
+            return getAllFromStore( keys );
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll( Map<K,V> newMappings ) {
+        lockForWriting();
+
+        try {
+            for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+                K key = e.getKey();
+
+                underlyingStore.put( key, e.getValue(), key.hashCode() );
+            }
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+    @Override
+    public void removeAll( Collection<K> keys ) {
+        lockForWriting();
+
+        try {
+            for ( K key : keys ) {
+                underlyingStore.remove( key, key.hashCode() );
+            }
+        } finally {
+            unlockForWriting();
+        }
+    }
+
+
+    private Map<K,V> getAllFromStore( Collection<K> keys ) {
+        Map<K,V> found = new HashMap<K,V>( keys.size()*2 );
+
+        for ( K key : keys ) {
+            V value = underlyingStore.get( key, key.hashCode() );
+
+            if ( value != null ) {
+                found.put( key, value );
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Takes the write lock and then waits for any optimistic readers that slipped in before the writer flag was raised.
+     * Both the reader counters and the flag are volatile, so a reader either sees the flag and backs off or has already
+     * been counted by the time the writer scans the counters.<p/>
+     *
+     * The write lock is reentrant, for example a fetcher may write to the cache from within getOrFetch, so only the
+     * outermost acquisition raises the flag and drains the readers.
+     */
+    private void lockForWriting() {
+        writeLock.lock();
+
+        if ( writeLock.getHoldCount() > 1 ) {
+            return;
+        }
+
+        isWriterActive = true;
+
+        for ( int i=0; i<NUM_READER_STRIPES; i++ ) {
+            while ( readerCounts.get(i << READER_PADDING_SHIFT) != 0 ) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Only lowers the writer flag when the outermost write lock is released.
+     */
+    private void unlockForWriting() {
+        if ( writeLock.getHoldCount() == 1 ) {
+            isWriterActive = false;
+        }
+
+        writeLock.unlock();
+    }
+
+    private static int readerStripe() {
+        return ((int) Thread.currentThread().getId() & (NUM_READER_STRIPES-1)) << READER_PADDING_SHIFT;
+    }
+}
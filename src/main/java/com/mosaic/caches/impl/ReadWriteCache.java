@@ -3,6 +3,9 @@ package com.mosaic.caches.impl;
 import com.mosaic.caches.Fetcher;
 import com.mosaic.caches.stores.Store;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -39,6 +42,17 @@ public class ReadWriteCache<K,V> extends BaseCache<K,V> {
         }
     }
 
+    @Override
+    public void trimToSize() {
+        writeLock.lock();
+
+        try {
+            underlyingStore.trimToSize();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     @Override
     public V doGet( K key, int keyHashCode ) {
         readLock.lock();
@@ -122,4 +136,53 @@ public class ReadWriteCache<K,V> extends BaseCache<K,V> {
             writeLock.unlock();
         }
     }
+
+    @Override
+    public Map<K,V> getAll( Collection<K> keys ) {
+        Map<K,V> found = new HashMap<K,V>( keys.size()*2 );
+
+        readLock.lock();
+
+        try {
+            for ( K key : keys ) {
+                V value = underlyingStore.get( key, key.hashCode() );
+
+                if ( value != null ) {
+                    found.put( key, value );
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        return found;
+    }
+
+    @Override
+    public void putAll( Map<K,V> newMappings ) {
+        writeLock.lock();
+
+        try {
+            for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+                K key = e.getKey();
+
+                underlyingStore.put( key, e.getValue(), key.hashCode() );
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void removeAll( Collection<K> keys ) {
+        writeLock.lock();
+
+        try {
+            for ( K key : keys ) {
+                underlyingStore.remove( key, key.hashCode() );
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
 }
@@ -4,7 +4,9 @@ import com.mosaic.caches.Fetcher;
 import com.mosaic.caches.stores.MapStore;
 import com.mosaic.caches.stores.Store;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Wraps an instance of java.util.Map.<p/>
@@ -31,6 +33,10 @@ public class StoreCache<K,V> extends BaseCache<K,V> {
         return store.size();
     }
 
+    public void trimToSize() {
+        store.trimToSize();
+    }
+
     public V doGet( K key, int keyHashCode ) {
         return store.get(key, keyHashCode);
     }
@@ -64,4 +70,32 @@ public class StoreCache<K,V> extends BaseCache<K,V> {
 
         return newValue;
     }
+
+    public Map<K,V> getAll( Collection<K> keys ) {
+        Map<K,V> found = new HashMap<K,V>( keys.size()*2 );
+
+        for ( K key : keys ) {
+            V value = store.get( key, key.hashCode() );
+
+            if ( value != null ) {
+                found.put( key, value );
+            }
+        }
+
+        return found;
+    }
+
+    public void putAll( Map<K,V> newMappings ) {
+        for ( Map.Entry<K,V> e : newMappings.entrySet() ) {
+            K key = e.getKey();
+
+            store.put( key, e.getValue(), key.hashCode() );
+        }
+    }
+
+    public void removeAll( Collection<K> keys ) {
+        for ( K key : keys ) {
+            store.remove( key, key.hashCode() );
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package com.mosaic.caches.stores;
+
+/**
+ * A store that keeps a compact access time beside each entry's value, so that eviction policies which sample entries
+ * can record recency without wrapping every value in an object of their own. Access times are ints supplied by the
+ * caller, typically from a logical clock; plain gets and puts leave them untouched.
+ */
+public interface AccessTimedStore<K,V> extends Store<K,V> {
+
+    /**
+     * Returns the value mapped to the key, stamping the entry with the access time. Returns null, stamping nothing,
+     * when the key is not held.
+     */
+    public V getAndTouch( K key, int keyHashCode, int accessTime );
+
+    /**
+     * Stores the mapping and stamps it with the access time. Returns the value that was replaced.
+     */
+    public V putAndTouch( K key, V newValue, int keyHashCode, int accessTime );
+
+    /**
+     * Returns the access time last stamped on the entry, or zero when the key is not held.
+     */
+    public int accessTimeOf( K key, int keyHashCode );
+
+}
@@ -0,0 +1,516 @@
+package com.mosaic.caches.stores;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static com.mosaic.caches.util.BitUtils.roundUpToClosestPowerOf2;
+
+/**
+ * A thread safe, lock free, inline hash map based on Cliff Click's non-blocking hash map. Keys and values sit side by
+ * side in one array and are installed with CAS; a bucket's key never changes once claimed, removal replaces the value
+ * with a tombstone. Readers never block, and writers only contend when they touch the same bucket.<p/>
+ *
+ * Resizing is cooperative. A writer that finds the array full allocates a larger array and links it to the current
+ * one. From then on every writer that passes through the old array copies a chunk of buckets across before carrying
+ * on, and once every bucket has been copied the new array is promoted. A bucket that is being copied has its value
+ * wrapped in a Prime marker; anybody who meets a Prime finishes copying that bucket and then retries in the newer
+ * array. Readers follow the same protocol, so no operation ever waits on another thread. A bucket that was removed
+ * before being frozen is marked differently to one that was never written, so that a copy which stalled part way
+ * through a chain of resizes cannot resurrect a value that has since been removed.<p/>
+ *
+ * Null values are not stored, putting null removes the mapping. When a bucket is copied its key is rehashed using
+ * key.hashCode(), so the hash codes passed in must match those of the keys.
+ *
+ * @see "http://www.azulsystems.com/events/javaone_2007/2007_LockFreeHash.pdf"
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentInlineMapStore<K,V> implements Store<K,V> {
+
+    private static final Object TOMBSTONE = new Object();
+    private static final Prime  TOMBPRIME = new Prime( null );        // copied, or frozen before a value was written
+    private static final Prime  DEADPRIME = new Prime( TOMBSTONE );   // frozen after the key was removed
+
+    private static final int COPY_CHUNK_SIZE       = 1024;
+    private static final int NUM_COUNTER_STRIPES   = 64;
+    private static final int COUNTER_PADDING_SHIFT = 4;   // one counter per 64 byte cache line
+
+    private static final AtomicReferenceFieldUpdater<ConcurrentInlineMapStore,Table> TOP_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater( ConcurrentInlineMapStore.class, Table.class, "top" );
+
+
+    private volatile Table top;
+
+    private final AtomicIntegerArray sizeCounters = new AtomicIntegerArray( NUM_COUNTER_STRIPES << COUNTER_PADDING_SHIFT );
+    private final int                minTableSize;
+
+
+    public ConcurrentInlineMapStore() {
+        this( 32 );
+    }
+
+    public ConcurrentInlineMapStore( int initialMapSize ) {
+        this.minTableSize = roundUpToClosestPowerOf2( initialMapSize );
+        this.top          = new Table( minTableSize );
+    }
+
+    public int size() {
+        long count = 0;
+
+        for ( int i=0; i<NUM_COUNTER_STRIPES; i++ ) {
+            count += sizeCounters.get( i << COUNTER_PADDING_SHIFT );
+        }
+
+        return (int) Math.max( 0, count );
+    }
+
+    /**
+     * Copies the contents into the smallest array that keeps the map half full. Concurrent reads and writes carry on
+     * while the copy takes place.
+     */
+    public void trimToSize() {
+        Table t = top;
+
+        Table.NEXT_UPDATER.compareAndSet( t, null, new Table(roundUpToClosestPowerOf2(size()*2)) );
+
+        while ( top == t ) {
+            copyChunk( t );
+        }
+    }
+
+    /**
+     * Probes random buckets for one holding a live value. Buckets part way through being copied still count. Should
+     * that fail, falls back to scanning from a random bucket, moving on to the next array when every bucket of an array
+     * has already been copied.
+     */
+    @Override
+    public K sampleKey( Random rnd ) {
+        Table first = top;
+        for ( int n=0; n<first.length; n++ ) {
+            K key = liveKeyAt( first, rnd.nextInt(first.length) );
+
+            if ( key != null ) {
+                return key;
+            }
+        }
+
+        for ( Table t=first; t != null; t=t.next ) {
+            int start = rnd.nextInt( t.length );
+
+            for ( int n=0; n<t.length; n++ ) {
+                K key = liveKeyAt( t, (start + n) & t.mask );
+
+                if ( key != null ) {
+                    return key;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private K liveKeyAt( Table t, int idx ) {
+        Object k = t.keyAt( idx );
+        if ( k == null || k == TOMBSTONE ) {
+            return null;
+        }
+
+        Object v = t.valueAt( idx );
+        if ( v instanceof Prime ) {
+            v = ((Prime) v).value;
+        }
+
+        return v == null || v == TOMBSTONE ? null : (K) k;
+    }
+
+    @Override
+    public V get( K key, int keyHashCode ) {
+        int   fullHash = spread( keyHashCode );
+        Table t        = top;
+
+        tables:
+        while ( true ) {
+            int idx      = fullHash & t.mask;
+            int reprobes = 0;
+
+            while ( true ) {
+                Object k = t.keyAt( idx );
+                if ( k == null ) {
+                    return null;
+                }
+
+                Object v = t.valueAt( idx );
+                if ( keyMatches(t, idx, k, key, fullHash) ) {
+                    if ( v instanceof Prime ) {
+                        t = copySlotAndCheck( t, idx, false );
+
+                        continue tables;
+                    }
+
+                    return v == TOMBSTONE ? null : (V) v;
+                }
+
+                // a key stamped with a tombstone means the array is being copied and the rest of the chain has moved on
+                if ( ++reprobes >= t.reprobeLimit || k == TOMBSTONE ) {
+                    if ( t.next == null ) {
+                        return null;
+                    }
+
+                    t = t.next;
+
+                    continue tables;
+                }
+
+                idx = (idx + 1) & t.mask;
+            }
+        }
+    }
+
+    @Override
+    public V put( K key, V newValue, int keyHashCode ) {
+        Object putValue = newValue == null ? TOMBSTONE : newValue;
+
+        return toValue( putIfMatch(top, key, spread(keyHashCode), putValue, false) );
+    }
+
+    @Override
+    public V remove( K key, int keyHashCode ) {
+        return toValue( putIfMatch(top, key, spread(keyHashCode), TOMBSTONE, false) );
+    }
+
+
+    /**
+     * Writes putValue against the key and returns the raw value that it replaced. When isCopy is set the write only
+     * happens if the bucket has never held a value, which stops a bucket being copied over a newer write.
+     */
+    private Object putIfMatch( Table t, Object key, int fullHash, Object putValue, boolean isCopy ) {
+        tables:
+        while ( true ) {
+            int idx      = fullHash & t.mask;
+            int reprobes = 0;
+
+            while ( true ) {
+                Object k = t.keyAt( idx );
+
+                if ( k == null ) {
+                    if ( putValue == TOMBSTONE ) {
+                        return null;  // the key was never in the map, do not claim a bucket just to remove it
+                    }
+
+                    if ( t.casKey(idx, null, key) ) {
+                        t.slotsUsed.incrementAndGet();
+                        t.hashes[idx] = fullHash;
+
+                        break;
+                    }
+
+                    k = t.keyAt( idx );
+                }
+
+                if ( keyMatches(t, idx, k, key, fullHash) ) {
+                    break;
+                }
+
+                if ( ++reprobes >= t.reprobeLimit || k == TOMBSTONE ) {
+                    t = resize( t );
+
+                    if ( !isCopy ) {
+                        helpCopy();
+                    }
+
+                    continue tables;
+                }
+
+                idx = (idx + 1) & t.mask;
+            }
+
+            Object v = t.valueAt( idx );
+
+            if ( isCopy && v != null && v != TOMBPRIME ) {
+                return v;   // the key has already been written to in this array, so the value being copied is stale
+            }
+
+            if ( t.next == null && v == null && t.isFull() ) {
+                resize( t );
+            }
+
+            if ( t.next != null ) {
+                t = copySlotAndCheck( t, idx, !isCopy );
+
+                continue;
+            }
+
+            while ( true ) {
+                if ( isCopy && v != null ) {
+                    return v;
+                } else if ( putValue == TOMBSTONE && v == TOMBSTONE ) {
+                    return v;
+                }
+
+                // n.b. removing a key whose value is still null must write the tombstone anyway, otherwise a copy that
+                // is still in flight from the previous array could install the old value after the remove
+
+                if ( t.casValue(idx, v, putValue) ) {
+                    if ( !isCopy ) {
+                        updateSize( v, putValue );
+                    }
+
+                    return v;
+                }
+
+                v = t.valueAt( idx );
+
+                if ( v instanceof Prime ) {
+                    t = copySlotAndCheck( t, idx, !isCopy );
+
+                    continue tables;
+                }
+            }
+        }
+    }
+
+    private void updateSize( Object oldValue, Object newValue ) {
+        boolean wasAbsent = oldValue == null || oldValue == TOMBSTONE;
+        boolean isAbsent  = newValue == TOMBSTONE;
+
+        if ( wasAbsent != isAbsent ) {
+            int stripe = ((int) Thread.currentThread().getId() & (NUM_COUNTER_STRIPES-1)) << COUNTER_PADDING_SHIFT;
+
+            sizeCounters.addAndGet( stripe, isAbsent ? -1 : 1 );
+        }
+    }
+
+    private Table resize( Table t ) {
+        Table next = t.next;
+        if ( next != null ) {
+            return next;
+        }
+
+        int liveCount = size();
+        int newLength = t.length;   // the array may be full of removed keys, in which case a clean copy is enough
+
+        if ( liveCount >= (t.length >> 1) ) {
+            newLength = t.length << 2;
+        } else if ( liveCount >= (t.length >> 2) ) {
+            newLength = t.length << 1;
+        } else if ( liveCount < (t.length >> 3) ) {
+            newLength = Math.max( minTableSize, roundUpToClosestPowerOf2(liveCount << 2) );
+        }
+
+        Table.NEXT_UPDATER.compareAndSet( t, null, new Table(newLength) );
+
+        return t.next;
+    }
+
+    private Table copySlotAndCheck( Table t, int idx, boolean shouldHelp ) {
+        Table next = t.next;
+
+        if ( copySlot(t, idx, next) ) {
+            copiesCompleted( t, 1 );
+        }
+
+        if ( shouldHelp ) {
+            helpCopy();
+        }
+
+        return next;
+    }
+
+    private void helpCopy() {
+        Table t = top;
+
+        if ( t.next != null ) {
+            copyChunk( t );
+        }
+    }
+
+    /**
+     * Claims the next chunk of buckets and copies them to the next array. Once every chunk has been claimed twice over
+     * it is assumed that a claimant has stalled, at which point each helper copies the whole array itself so that
+     * nobody is left waiting on the stalled thread.
+     */
+    private void copyChunk( Table old ) {
+        int length    = old.length;
+        int chunkSize = Math.min( length, COPY_CHUNK_SIZE );
+        int claimed   = old.copyIndex.get();
+
+        if ( claimed < (length << 1) ) {
+            claimed = old.copyIndex.getAndAdd( chunkSize );
+        }
+
+        int from;
+        int to;
+        if ( claimed < length ) {
+            from = claimed;
+            to   = claimed + chunkSize;
+        } else if ( claimed >= (length << 1) ) {
+            from = 0;
+            to   = length;
+        } else {
+            promoteCopiedTables();
+
+            return;
+        }
+
+        Table next        = old.next;
+        int   copiedCount = 0;
+
+        for ( int i=from; i<to; i++ ) {
+            if ( copySlot(old, i, next) ) {
+                copiedCount++;
+            }
+        }
+
+        copiesCompleted( old, copiedCount );
+    }
+
+    /**
+     * Moves a single bucket into the next array. Returns true if this call was the one that completed the bucket, so
+     * that every bucket is counted exactly once.
+     */
+    private boolean copySlot( Table old, int idx, Table next ) {
+        Object k;
+        while ( (k = old.keyAt(idx)) == null ) {
+            old.casKey( idx, null, TOMBSTONE );   // stops any new key being claimed in the old array
+        }
+
+        Object v = old.valueAt( idx );
+        while ( !(v instanceof Prime) ) {
+            Prime frozen = v == null ? TOMBPRIME : v == TOMBSTONE ? DEADPRIME : new Prime( v );
+
+            if ( old.casValue(idx, v, frozen) ) {
+                if ( frozen == TOMBPRIME || frozen == DEADPRIME ) {
+                    return true;   // nothing to carry across
+                }
+
+                v = frozen;
+
+                break;
+            }
+
+            v = old.valueAt( idx );
+        }
+
+        if ( v == TOMBPRIME || v == DEADPRIME ) {
+            return false;
+        }
+
+        int fullHash = old.hashes[idx];
+        if ( fullHash == 0 ) {
+            fullHash = spread( k.hashCode() );
+        }
+
+        boolean copiedIntoNext = putIfMatch( next, k, fullHash, ((Prime) v).value, true ) == null;
+
+        while ( v != TOMBPRIME && v != DEADPRIME && !old.casValue(idx, v, TOMBPRIME) ) {
+            v = old.valueAt( idx );
+        }
+
+        return copiedIntoNext;
+    }
+
+    private void copiesCompleted( Table t, int count ) {
+        if ( count > 0 ) {
+            t.copyDone.addAndGet( count );
+        }
+
+        promoteCopiedTables();
+    }
+
+    private void promoteCopiedTables() {
+        Table t = top;
+
+        while ( t.next != null && t.copyDone.get() == t.length && TOP_UPDATER.compareAndSet(this, t, t.next) ) {
+            t = top;
+        }
+    }
+
+    private static boolean keyMatches( Table t, int idx, Object k, Object key, int fullHash ) {
+        if ( k == key ) {
+            return true;
+        } else if ( k == TOMBSTONE ) {
+            return false;
+        }
+
+        int h = t.hashes[idx];   // zero means the claiming thread has not recorded the hash yet
+
+        return (h == 0 || h == fullHash) && key.equals( k );
+    }
+
+    private V toValue( Object rawValue ) {
+        return rawValue == null || rawValue == TOMBSTONE ? null : (V) rawValue;
+    }
+
+    /**
+     * Spreads the bits of the hash code as the low bits select the bucket; never returns zero.
+     */
+    private static int spread( int h ) {
+        h += (h <<  15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h <<   3);
+        h ^= (h >>>  6);
+        h += (h <<   2) + (h << 14);
+        h ^= (h >>> 16);
+
+        return h == 0 ? 1 : h;
+    }
+
+
+    private static class Table {
+        private static final AtomicReferenceFieldUpdater<Table,Table> NEXT_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater( Table.class, Table.class, "next" );
+
+        private final AtomicReferenceArray<Object> keysAndValues;
+        private final int[]                        hashes;
+        private final int                          length;
+        private final int                          mask;
+        private final int                          reprobeLimit;
+
+        private final AtomicInteger slotsUsed = new AtomicInteger();
+        private final AtomicInteger copyIndex = new AtomicInteger();
+        private final AtomicInteger copyDone  = new AtomicInteger();
+
+        private volatile Table next;
+
+        public Table( int length ) {
+            this.keysAndValues = new AtomicReferenceArray<Object>( length << 1 );
+            this.hashes        = new int[length];
+            this.length        = length;
+            this.mask          = length - 1;
+            this.reprobeLimit  = 10 + (length >> 2);
+        }
+
+        public Object keyAt( int idx ) {
+            return keysAndValues.get( idx << 1 );
+        }
+
+        public Object valueAt( int idx ) {
+            return keysAndValues.get( (idx << 1) + 1 );
+        }
+
+        public boolean casKey( int idx, Object expected, Object newKey ) {
+            return keysAndValues.compareAndSet( idx << 1, expected, newKey );
+        }
+
+        public boolean casValue( int idx, Object expected, Object newValue ) {
+            return keysAndValues.compareAndSet( (idx << 1) + 1, expected, newValue );
+        }
+
+        public boolean isFull() {
+            return slotsUsed.get() >= (length >> 1) + (length >> 2);
+        }
+    }
+
+    /**
+     * Marks a value that is part way through being copied into the next array.
+     */
+    private static class Prime {
+        private final Object value;
+
+        public Prime( Object value ) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.mosaic.caches.stores;
+
+import java.util.Random;
+
+import static com.mosaic.caches.util.BitUtils.roundUpToClosestPowerOf2;
+
+/**
+ * A variation of InlineMapStore that does not allocate an object per mapping. Instead the hash codes, keys and values
+ * are held in three parallel arrays (a struct of arrays), which removes one pointer chase from every lookup and means
+ * that inserting a new mapping creates no garbage.<p/>
+ *
+ * Collisions are handled the same way as InlineMapStore, by linearly probing the next bucket along. Removals repair the
+ * probe chain by shuffling later members of the cluster back into the gap, so that no tombstones are required.<p/>
+ *
+ * The store shrinks once removals leave it less than an eighth as full as the point at which it would grow.<p/>
+ *
+ * A fourth parallel array holds an int access time per bucket, for eviction policies that sample entries rather than
+ * keep them on a list (see AccessTimedStore). It costs four bytes per bucket and is only written by the touch methods.<p/>
+ *
+ * This store is not thread safe.
+ */
+@SuppressWarnings("unchecked")
+public class InlineArrayMapStore<K,V> implements AccessTimedStore<K,V> {
+    private int[]    hashes;
+    private Object[] keys;
+    private Object[] values;
+    private int[]    accessTimes;
+
+    private int currentSize;
+    private int bitMask;
+    private int maxSizeBeforeResizing;
+
+    private final int    minMapSize;
+    private final double loadFactor;
+
+    public InlineArrayMapStore() {
+        this(10);
+    }
+
+    public InlineArrayMapStore( int initialMapSize ) {
+        this( initialMapSize, 0.25 );
+    }
+
+    public InlineArrayMapStore( int initialMapSize, double loadFactor ) {
+        this.loadFactor = loadFactor;
+
+        int mapSize = roundUpToClosestPowerOf2( initialMapSize );
+
+        this.minMapSize = mapSize;
+
+        initNewMap( mapSize );
+    }
+
+    private void initNewMap( int mapSize ) {
+        hashes      = new int[mapSize];
+        keys        = new Object[mapSize];
+        values      = new Object[mapSize];
+        accessTimes = new int[mapSize];
+        bitMask     = mapSize-1;
+
+        maxSizeBeforeResizing = (int) (mapSize*loadFactor);
+    }
+
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Rebuilds the store into the smallest arrays that hold the current contents within the load factor.
+     */
+    public void trimToSize() {
+        int mapSize = roundUpToClosestPowerOf2( (int) Math.ceil(currentSize/loadFactor) );
+        while ( (int) (mapSize*loadFactor) < currentSize ) {
+            mapSize <<= 1;
+        }
+
+        resizeTo( mapSize );
+    }
+
+    @Override
+    public K sampleKey( Random rnd ) {
+        if ( currentSize == 0 ) {
+            return null;
+        }
+
+        for ( int n=0; n<keys.length; n++ ) {
+            int i = rnd.nextInt( keys.length );
+
+            if ( keys[i] != null ) {
+                return (K) keys[i];
+            }
+        }
+
+        int i = rnd.nextInt( keys.length );
+        while ( keys[i] == null ) {
+            i = (i + 1) & bitMask;
+        }
+
+        return (K) keys[i];
+    }
+
+    @Override
+    public V get( K key, int keyHashCode ) {
+        int i = toIndex( keyHashCode );
+        while ( true ) {
+            Object k = keys[i];
+
+            if ( k == null ) {
+                return null;
+            } else if ( hashes[i] == keyHashCode && k.equals(key) ) {
+                return (V) values[i];
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    @Override
+    public V getAndTouch( K key, int keyHashCode, int accessTime ) {
+        int i = indexOf( key, keyHashCode );
+        if ( i < 0 ) {
+            return null;
+        }
+
+        accessTimes[i] = accessTime;
+
+        return (V) values[i];
+    }
+
+    /**
+     * A new mapping may trigger a resize, so it is located again after being inserted.
+     */
+    @Override
+    public V putAndTouch( K key, V newValue, int keyHashCode, int accessTime ) {
+        V oldValue = put( key, newValue, keyHashCode );
+
+        accessTimes[indexOf(key, keyHashCode)] = accessTime;
+
+        return oldValue;
+    }
+
+    @Override
+    public int accessTimeOf( K key, int keyHashCode ) {
+        int i = indexOf( key, keyHashCode );
+
+        return i < 0 ? 0 : accessTimes[i];
+    }
+
+    @Override
+    public V put( K key, V newValue, int keyHashCode ) {
+        int i = toIndex( keyHashCode );
+        while ( true ) {
+            Object k = keys[i];
+
+            if ( k == null ) {
+                hashes[i]      = keyHashCode;
+                keys[i]        = key;
+                values[i]      = newValue;
+                accessTimes[i] = 0;
+
+                newElementAdded();
+
+                return null;
+            } else if ( hashes[i] == keyHashCode && k.equals(key) ) {
+                V oldValue = (V) values[i];
+
+                values[i] = newValue;
+
+                return oldValue;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    @Override
+    public V remove( K key, int keyHashCode ) {
+        int i = toIndex( keyHashCode );
+        while ( true ) {
+            Object k = keys[i];
+
+            if ( k == null ) {
+                return null;
+            } else if ( hashes[i] == keyHashCode && k.equals(key) ) {
+                V oldValue = (V) values[i];
+
+                closeGap( i );
+                elementRemoved();
+
+                return oldValue;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    /**
+     * Empties the specified bucket and then walks the rest of the cluster, moving back into the gap any element whose
+     * probe chain would otherwise be broken by it (Knuth, TAOCP Vol 3, Algorithm R).
+     */
+    private void closeGap( int gapIndex ) {
+        int i = gapIndex;
+
+        while ( true ) {
+            i = (i + 1) & bitMask;
+
+            if ( keys[i] == null ) {
+                break;
+            }
+
+            int homeIndex = toIndex( hashes[i] );
+
+            boolean canMoveIntoGap = gapIndex <= i ? (homeIndex <= gapIndex || homeIndex > i) : (homeIndex <= gapIndex && homeIndex > i);
+            if ( canMoveIntoGap ) {
+                hashes[gapIndex]      = hashes[i];
+                keys[gapIndex]        = keys[i];
+                values[gapIndex]      = values[i];
+                accessTimes[gapIndex] = accessTimes[i];
+
+                gapIndex = i;
+            }
+        }
+
+        keys[gapIndex]   = null;
+        values[gapIndex] = null;
+    }
+
+    /**
+     * Returns the bucket holding the key, or -1 when the key is not held.
+     */
+    private int indexOf( K key, int keyHashCode ) {
+        int i = toIndex( keyHashCode );
+        while ( true ) {
+            Object k = keys[i];
+
+            if ( k == null ) {
+                return -1;
+            } else if ( hashes[i] == keyHashCode && k.equals(key) ) {
+                return i;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    private int toIndex( int hashCode ) {
+        return hashCode & bitMask;
+    }
+
+    private void newElementAdded() {
+        currentSize++;
+
+        if ( currentSize > maxSizeBeforeResizing ) {
+            resizeTo( keys.length << 2 );
+        }
+    }
+
+    private void elementRemoved() {
+        currentSize--;
+
+        boolean isSparse = currentSize < (maxSizeBeforeResizing >> 3);
+        if ( isSparse && keys.length > minMapSize ) {
+            resizeTo( Math.max(minMapSize, roundUpToClosestPowerOf2((int) (currentSize*2/loadFactor))) );
+        }
+    }
+
+    private void resizeTo( int newMapSize ) {
+        int[]    oldHashes      = hashes;
+        Object[] oldKeys        = keys;
+        Object[] oldValues      = values;
+        int[]    oldAccessTimes = accessTimes;
+
+        initNewMap( newMapSize );
+
+        for ( int j=0; j<oldKeys.length; j++ ) {
+            if ( oldKeys[j] != null ) {
+                int i = toIndex( oldHashes[j] );
+
+                while ( keys[i] != null ) {
+                    i = (i + 1) & bitMask;
+                }
+
+                hashes[i]      = oldHashes[j];
+                keys[i]        = oldKeys[j];
+                values[i]      = oldValues[j];
+                accessTimes[i] = oldAccessTimes[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.mosaic.caches.stores;
+
+import static com.mosaic.caches.util.BitUtils.roundUpToClosestPowerOf2;
+
+/**
+ * An inline (open addressing) hash map from primitive longs to primitive longs. Keys and values are held in parallel
+ * long arrays, so nothing is boxed and nothing is allocated outside of a resize.<p/>
+ *
+ * A key of zero marks an empty bucket; the mapping for the key zero itself is held to one side in a field of its own.
+ * Collisions are resolved by linear probing and removals shift the rest of the cluster back into the gap.<p/>
+ *
+ * This store is not thread safe.
+ */
+public class InlineLongLongMapStore implements LongLongStore {
+    private long[] keys;
+    private long[] values;
+
+    private boolean hasZeroKey;
+    private long    zeroKeyValue;
+
+    private int currentSize;
+    private int bitMask;
+    private int maxSizeBeforeResizing;
+
+    private final double loadFactor;
+    private final long   noEntryValue;
+
+    /**
+     * Creates a store that returns Long.MIN_VALUE for absent keys.
+     */
+    public InlineLongLongMapStore() {
+        this( 16, 0.5, Long.MIN_VALUE );
+    }
+
+    public InlineLongLongMapStore( int initialMapSize, double loadFactor, long noEntryValue ) {
+        this.loadFactor   = loadFactor;
+        this.noEntryValue = noEntryValue;
+        this.zeroKeyValue = noEntryValue;
+
+        initNewMap( roundUpToClosestPowerOf2(initialMapSize) );
+    }
+
+    private void initNewMap( int mapSize ) {
+        keys    = new long[mapSize];
+        values  = new long[mapSize];
+        bitMask = mapSize - 1;
+
+        maxSizeBeforeResizing = (int) (mapSize*loadFactor);
+    }
+
+    public int size() {
+        return currentSize;
+    }
+
+    public long getNoEntryValue() {
+        return noEntryValue;
+    }
+
+    public boolean containsKey( long key ) {
+        if ( key == 0 ) {
+            return hasZeroKey;
+        }
+
+        int i = toIndex( key );
+        while ( true ) {
+            long k = keys[i];
+
+            if ( k == key ) {
+                return true;
+            } else if ( k == 0 ) {
+                return false;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    public long get( long key ) {
+        if ( key == 0 ) {
+            return zeroKeyValue;
+        }
+
+        int i = toIndex( key );
+        while ( true ) {
+            long k = keys[i];
+
+            if ( k == key ) {
+                return values[i];
+            } else if ( k == 0 ) {
+                return noEntryValue;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    public long put( long key, long newValue ) {
+        if ( key == 0 ) {
+            long oldValue = zeroKeyValue;
+
+            zeroKeyValue = newValue;
+
+            if ( !hasZeroKey ) {
+                hasZeroKey = true;
+                currentSize++;
+            }
+
+            return oldValue;
+        }
+
+        int i = toIndex( key );
+        while ( true ) {
+            long k = keys[i];
+
+            if ( k == key ) {
+                long oldValue = values[i];
+
+                values[i] = newValue;
+
+                return oldValue;
+            } else if ( k == 0 ) {
+                keys[i]   = key;
+                values[i] = newValue;
+
+                newElementAdded();
+
+                return noEntryValue;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    public long remove( long key ) {
+        if ( key == 0 ) {
+            long oldValue = zeroKeyValue;
+
+            if ( hasZeroKey ) {
+                hasZeroKey   = false;
+                zeroKeyValue = noEntryValue;
+                currentSize--;
+            }
+
+            return oldValue;
+        }
+
+        int i = toIndex( key );
+        while ( true ) {
+            long k = keys[i];
+
+            if ( k == key ) {
+                long oldValue = values[i];
+
+                closeGap( i );
+                currentSize--;
+
+                return oldValue;
+            } else if ( k == 0 ) {
+                return noEntryValue;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    /**
+     * Walks the rest of the cluster moving back into the gap any key whose probe chain would otherwise be broken by it
+     * (Knuth, TAOCP Vol 3, Algorithm R).
+     */
+    private void closeGap( int gapIndex ) {
+        int i = gapIndex;
+
+        while ( true ) {
+            i = (i + 1) & bitMask;
+
+            long k = keys[i];
+            if ( k == 0 ) {
+                break;
+            }
+
+            int homeIndex = toIndex( k );
+
+            boolean canMoveIntoGap = gapIndex <= i ? (homeIndex <= gapIndex || homeIndex > i) : (homeIndex <= gapIndex && homeIndex > i);
+            if ( canMoveIntoGap ) {
+                keys[gapIndex]   = k;
+                values[gapIndex] = values[i];
+
+                gapIndex = i;
+            }
+        }
+
+        keys[gapIndex]   = 0;
+        values[gapIndex] = 0;
+    }
+
+    /**
+     * Ids are frequently sequential, so spread them across the table using Fibonacci hashing.
+     */
+    private int toIndex( long key ) {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32)) & bitMask;
+    }
+
+    private void newElementAdded() {
+        currentSize++;
+
+        if ( currentSize > maxSizeBeforeResizing ) {
+            long[]   oldKeys   = keys;
+            long[]   oldValues = values;
+
+            initNewMap( oldKeys.length << 1 );
+
+            for ( int j=0; j<oldKeys.length; j++ ) {
+                long k = oldKeys[j];
+
+                if ( k != 0 ) {
+                    int i = toIndex( k );
+
+                    while ( keys[i] != 0 ) {
+                        i = (i + 1) & bitMask;
+                    }
+
+                    keys[i]   = k;
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.mosaic.caches.stores;
+
+import static com.mosaic.caches.util.BitUtils.roundUpToClosestPowerOf2;
+
+/**
+ * An inline (open addressing) hash map keyed by primitive longs. Keys are held in a long[] and values in a parallel
+ * Object[], so neither get nor put box the key or allocate.<p/>
+ *
+ * A key of zero marks an empty bucket; the mapping for the key zero itself is held to one side in a field of its own.
+ * Collisions are resolved by linear probing and removals shift the rest of the cluster back into the gap.<p/>
+ *
+ * This store is not thread safe.
+ */
+@SuppressWarnings("unchecked")
+public class InlineLongObjectMapStore<V> implements LongObjectStore<V> {
+    private long[]   keys;
+    private Object[] values;
+
+    private boolean hasZeroKey;
+    private V       zeroKeyValue;
+
+    private int currentSize;
+    private int bitMask;
+    private int maxSizeBeforeResizing;
+
+    private final double loadFactor;
+
+    public InlineLongObjectMapStore() {
+        this( 16 );
+    }
+
+    public InlineLongObjectMapStore( int initialMapSize ) {
+        this( initialMapSize, 0.5 );
+    }
+
+    public InlineLongObjectMapStore( int initialMapSize, double loadFactor ) {
+        this.loadFactor = loadFactor;
+
+        initNewMap( roundUpToClosestPowerOf2(initialMapSize) );
+    }
+
+    private void initNewMap( int mapSize ) {
+        keys    = new long[mapSize];
+        values  = new Object[mapSize];
+        bitMask = mapSize - 1;
+
+        maxSizeBeforeResizing = (int) (mapSize*loadFactor);
+    }
+
+    public int size() {
+        return currentSize;
+    }
+
+    public V get( long key ) {
+        if ( key == 0 ) {
+            return zeroKeyValue;
+        }
+
+        int i = toIndex( key );
+        while ( true ) {
+            long k = keys[i];
+
+            if ( k == key ) {
+                return (V) values[i];
+            } else if ( k == 0 ) {
+                return null;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    public V put( long key, V newValue ) {
+        if ( key == 0 ) {
+            V oldValue = zeroKeyValue;
+
+            zeroKeyValue = newValue;
+
+            if ( !hasZeroKey ) {
+                hasZeroKey = true;
+                currentSize++;
+            }
+
+            return oldValue;
+        }
+
+        int i = toIndex( key );
+        while ( true ) {
+            long k = keys[i];
+
+            if ( k == key ) {
+                V oldValue = (V) values[i];
+
+                values[i] = newValue;
+
+                return oldValue;
+            } else if ( k == 0 ) {
+                keys[i]   = key;
+                values[i] = newValue;
+
+                newElementAdded();
+
+                return null;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    public V remove( long key ) {
+        if ( key == 0 ) {
+            V oldValue = zeroKeyValue;
+
+            if ( hasZeroKey ) {
+                hasZeroKey   = false;
+                zeroKeyValue = null;
+                currentSize--;
+            }
+
+            return oldValue;
+        }
+
+        int i = toIndex( key );
+        while ( true ) {
+            long k = keys[i];
+
+            if ( k == key ) {
+                V oldValue = (V) values[i];
+
+                closeGap( i );
+                currentSize--;
+
+                return oldValue;
+            } else if ( k == 0 ) {
+                return null;
+            }
+
+            i = (i + 1) & bitMask;
+        }
+    }
+
+    /**
+     * Walks the rest of the cluster moving back into the gap any key whose probe chain would otherwise be broken by it
+     * (Knuth, TAOCP Vol 3, Algorithm R).
+     */
+    private void closeGap( int gapIndex ) {
+        int i = gapIndex;
+
+        while ( true ) {
+            i = (i + 1) & bitMask;
+
+            long k = keys[i];
+            if ( k == 0 ) {
+                break;
+            }
+
+            int homeIndex = toIndex( k );
+
+            boolean canMoveIntoGap = gapIndex <= i ? (homeIndex <= gapIndex || homeIndex > i) : (homeIndex <= gapIndex && homeIndex > i);
+            if ( canMoveIntoGap ) {
+                keys[gapIndex]   = k;
+                values[gapIndex] = values[i];
+
+                gapIndex = i;
+            }
+        }
+
+        keys[gapIndex]   = 0;
+        values[gapIndex] = null;
+    }
+
+    /**
+     * Ids are frequently sequential, so spread them across the table using Fibonacci hashing.
+     */
+    private int toIndex( long key ) {
+        long h = key * 0x9E3779B97F4A7C15L;
+
+        return (int) (h ^ (h >>> 32)) & bitMask;
+    }
+
+    private void newElementAdded() {
+        currentSize++;
+
+        if ( currentSize > maxSizeBeforeResizing ) {
+            long[]   oldKeys   = keys;
+            Object[] oldValues = values;
+
+            initNewMap( oldKeys.length << 1 );
+
+            for ( int j=0; j<oldKeys.length; j++ ) {
+                long k = oldKeys[j];
+
+                if ( k != 0 ) {
+                    int i = toIndex( k );
+
+                    while ( keys[i] != 0 ) {
+                        i = (i + 1) & bitMask;
+                    }
+
+                    keys[i]   = k;
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
@@ -1,19 +1,51 @@
 package com.mosaic.caches.stores;
 
+import java.util.Random;
+
 import static com.mosaic.caches.util.BitUtils.roundUpToClosestPowerOf2;
 
 /**
+ * A hash map that handles collisions by moving on to the next bucket within the array.<p/>
+ *
+ * Optionally the map can run in Robin Hood mode. On insert an element that is further from its home bucket than the
+ * element currently occupying a bucket takes that bucket, and the displaced element continues along the probe chain.
+ * This keeps the variance of probe lengths low even when hash codes cluster, which in turn allows the map to run at
+ * much higher load factors. It also lets a lookup for a missing key stop as soon as it meets an element that is closer
+ * to its home than the lookup is.<p/>
+ *
+ * In both modes removals shift the following members of the cluster back, so no tombstones are left behind.<p/>
  *
+ * By default the map grows by rehashing every element in one go, which for a large map is a long pause for whichever
+ * request happened to trigger it. Optionally the map can resize incrementally instead. The old array is then kept
+ * alongside the new one and each subsequent put and remove migrates a small, fixed number of buckets across; lookups
+ * consult both arrays until the migration completes. While migrating the old array is never reshuffled, removals and
+ * migrated buckets are replaced with a tombstone so that the probe chains of the remaining elements stay intact.<p/>
+ *
+ * The map also shrinks once removals leave it less than an eighth as full as the point at which it would grow, which
+ * is far enough below the growth point that a map hovering around one size will not repeatedly grow and shrink.
  */
+@SuppressWarnings("unchecked")
 public class InlineMapStore<K,V> implements Store<K,V>{
+    private static final int     MIGRATION_BUCKETS_PER_OPERATION = 16;
+    private static final Element TOMBSTONE                       = new Element<Object,Object>( new Object(), null, 0 );
+
     private Element<K,V>[] map;
 
     private int currentSize;
     private int bitMask;
+    private int slotMask;
     private int maxSizeBeforeResizing;
 
-    private final int    reservationShift;
-    private final double loadFactor;
+    private Element<K,V>[] oldMap;              // only set while an incremental resize is in progress
+    private int            oldBitMask;
+    private int            oldSlotMask;
+    private int            migrationIndex;
+
+    private final int     minMapSize;
+    private final int     reservationShift;
+    private final double  loadFactor;
+    private final boolean isRobinHoodMode;
+    private final boolean isIncrementalResize;
 
     public InlineMapStore() {
         this(10);
@@ -24,19 +56,38 @@ public class InlineMapStore<K,V> implements Store<K,V>{
     }
 
     public InlineMapStore( int initialMapSize, double loadFactor, int reservationShift ) {
-        this.reservationShift = reservationShift;
-        this.loadFactor       = loadFactor;
+        this( initialMapSize, loadFactor, reservationShift, false );
+    }
+
+    /**
+     * @param isRobinHoodMode when true elements are displaced on insert so as to even out probe lengths; recommended when
+     *                        running with load factors above 0.5 or with keys whose hash codes cluster
+     */
+    public InlineMapStore( int initialMapSize, double loadFactor, int reservationShift, boolean isRobinHoodMode ) {
+        this( initialMapSize, loadFactor, reservationShift, isRobinHoodMode, false );
+    }
+
+    /**
+     * @param isIncrementalResize when true the map doubles in size and migrates its elements a few buckets at a time
+     *                            over subsequent writes, rather than quadrupling and rehashing everything at once
+     */
+    public InlineMapStore( int initialMapSize, double loadFactor, int reservationShift, boolean isRobinHoodMode, boolean isIncrementalResize ) {
+        this.reservationShift    = reservationShift;
+        this.loadFactor          = loadFactor;
+        this.isRobinHoodMode     = isRobinHoodMode;
+        this.isIncrementalResize = isIncrementalResize;
 
         int mapSize = roundUpToClosestPowerOf2( initialMapSize );
 
+        this.minMapSize = mapSize;
+
         initNewMap( mapSize );
     }
 
     private void initNewMap( int mapSize ) {
-        currentSize = 0;
-
-        map     = new Element[mapSize << reservationShift];
-        bitMask = mapSize-1;
+        map      = new Element[mapSize << reservationShift];
+        bitMask  = mapSize-1;
+        slotMask = map.length-1;
 
         maxSizeBeforeResizing = (int) (mapSize*loadFactor);
     }
@@ -45,34 +96,107 @@ public class InlineMapStore<K,V> implements Store<K,V>{
         return currentSize;
     }
 
+    /**
+     * Rebuilds the map into the smallest array that holds the current contents within the load factor. Any incremental
+     * resize that is in progress is completed first.
+     */
+    public void trimToSize() {
+        if ( oldMap != null ) {
+            migrateBuckets( oldMap.length );
+        }
+
+        int mapSize = roundUpToClosestPowerOf2( (int) Math.ceil(currentSize/loadFactor) );
+        while ( (int) (mapSize*loadFactor) < currentSize ) {
+            mapSize <<= 1;
+        }
+
+        resizeTo( mapSize );
+    }
+
+    /**
+     * While an incremental resize is in progress the elements still waiting to migrate are sampled from the old map.
+     */
     @Override
-    public V get( K key, int keyHashCode ) {
-        int i = toIndex( keyHashCode );
-        while ( true ) {
-            Element<K,V> e = map[i];
+    public K sampleKey( Random rnd ) {
+        if ( currentSize == 0 ) {
+            return null;
+        }
 
-            if ( e == null ) {
-                return null;
-            } else if ( e.keyHashCode == keyHashCode && e.key.equals(key) ) {
-                return e.value;
+        K key = sampleKeyFrom( map, rnd );
+        if ( key == null && oldMap != null ) {
+            key = sampleKeyFrom( oldMap, rnd );
+        }
+
+        return key;
+    }
+
+    private static <K,V> K sampleKeyFrom( Element<K,V>[] elements, Random rnd ) {
+        for ( int n=0; n<elements.length; n++ ) {
+            Element<K,V> e = elements[rnd.nextInt( elements.length )];
+
+            if ( e != null && e != TOMBSTONE ) {
+                return e.key;
             }
+        }
+
+        int mask  = elements.length - 1;
+        int start = rnd.nextInt( elements.length );
 
-            i = (i + 1) & bitMask;
+        for ( int n=0; n<elements.length; n++ ) {
+            Element<K,V> e = elements[(start + n) & mask];
+
+            if ( e != null && e != TOMBSTONE ) {
+                return e.key;
+            }
         }
+
+        return null;
+    }
+
+    boolean isResizeInProgress() {
+        return oldMap != null;
+    }
+
+    @Override
+    public V get( K key, int keyHashCode ) {
+        int i = indexOf( key, keyHashCode );
+        if ( i >= 0 ) {
+            return map[i].value;
+        }
+
+        if ( oldMap != null ) {
+            i = indexOfInOldMap( key, keyHashCode );
+
+            return i < 0 ? null : oldMap[i].value;
+        }
+
+        return null;
     }
 
     @Override
     public V put( K key, V newValue, int keyHashCode ) {
-        int attemptCount = 0;
+        if ( oldMap != null ) {
+            migrateBuckets( MIGRATION_BUCKETS_PER_OPERATION );
+
+            int j = oldMap == null ? -1 : indexOfInOldMap( key, keyHashCode );
+            if ( j >= 0 ) {
+                // not migrated yet; update in place and the new value will be carried across with it
+                V oldValue = oldMap[j].value;
+
+                oldMap[j].value = newValue;
+
+                return oldValue;
+            }
+        }
+
+        int i        = toIndex( keyHashCode );
+        int distance = 0;
 
         while ( true ) {
-            int          i = toIndex( keyHashCode+attemptCount );
             Element<K,V> e = map[i];
 
             if ( e == null ) {
-                Element newElement = new Element( key, newValue, keyHashCode );
-
-                map[i] = newElement;
+                map[i] = new Element<K,V>( key, newValue, keyHashCode );
                 newElementAdded();
 
                 return null;
@@ -82,47 +206,172 @@ public class InlineMapStore<K,V> implements Store<K,V>{
                 e.value = newValue;
 
                 return oldValue;
+            } else if ( isRobinHoodMode && probeDistance(e,i) < distance ) {
+                // the key cannot be further along the chain, so steal this bucket and push the rest of the chain along
+                map[i] = new Element<K,V>( key, newValue, keyHashCode );
+                insertDisplacedElement( e, (i + 1) & slotMask, probeDistance(e,i) + 1 );
+                newElementAdded();
+
+                return null;
             }
 
-            attemptCount++;
+            i = (i + 1) & slotMask;
+            distance++;
         }
     }
 
     @Override
     public V remove( K key, int keyHashCode ) {
-        int startOfChainIndex = toIndex( keyHashCode );
-        int i = startOfChainIndex;
+        if ( oldMap != null ) {
+            migrateBuckets( MIGRATION_BUCKETS_PER_OPERATION );
+
+            int j = oldMap == null ? -1 : indexOfInOldMap( key, keyHashCode );
+            if ( j >= 0 ) {
+                V oldValue = oldMap[j].value;
+
+                oldMap[j] = TOMBSTONE;
+                elementRemoved();
+
+                return oldValue;
+            }
+        }
+
+        int i = indexOf( key, keyHashCode );
+        if ( i < 0 ) {
+            return null;
+        }
+
+        V oldValue = map[i].value;
+
+        if ( isRobinHoodMode ) {
+            backwardShiftFrom( i );
+        } else {
+            closeGap( i );
+        }
+
+        elementRemoved();
+
+        return oldValue;
+    }
+
+
+    private int indexOf( K key, int keyHashCode ) {
+        int i        = toIndex( keyHashCode );
+        int distance = 0;
+
         while ( true ) {
             Element<K,V> e = map[i];
 
             if ( e == null ) {
-                return null;
+                return -1;
             } else if ( e.keyHashCode == keyHashCode && e.key.equals(key) ) {
-                int endOfChainIndex = findEndOfChain(startOfChainIndex, i+1 );
+                return i;
+            } else if ( isRobinHoodMode && probeDistance(e,i) < distance ) {
+                return -1;
+            }
+
+            i = (i + 1) & slotMask;
+            distance++;
+        }
+    }
+
+    /**
+     * Searches the part of the old array that has not been migrated yet. Tombstones may have broken the Robin Hood
+     * ordering, so the search always runs to the end of the chain.
+     */
+    private int indexOfInOldMap( K key, int keyHashCode ) {
+        int i = (keyHashCode & oldBitMask) << reservationShift;
 
-                if ( endOfChainIndex == i ) {
-                    map[i] = null;
-                } else {
-                    map[i] = map[endOfChainIndex];
-                    map[endOfChainIndex] = null;
-                }
+        while ( true ) {
+            Element<K,V> e = oldMap[i];
 
-                return e.value;
+            if ( e == null ) {
+                return -1;
+            } else if ( e != TOMBSTONE && e.keyHashCode == keyHashCode && e.key.equals(key) ) {
+                return i;
             }
 
-            i = (i + 1) & bitMask;
+            i = (i + 1) & oldSlotMask;
         }
     }
 
-
-    private int findEndOfChain( int startOfChainIndex, int startingFrom ) {
+    /**
+     * Robin Hood insert of an element that is already known not to be in the map. Walks from the specified bucket
+     * swapping the element being carried with any element that is closer to its home bucket.
+     */
+    private void insertDisplacedElement( Element<K,V> carried, int startingFrom, int distance ) {
         int i = startingFrom;
 
-        while ( map[i] != null && toIndex(map[i].keyHashCode) == startOfChainIndex ) {
-            i++;
+        while ( true ) {
+            Element<K,V> e = map[i];
+
+            if ( e == null ) {
+                map[i] = carried;
+
+                return;
+            }
+
+            int existingDistance = probeDistance( e, i );
+            if ( existingDistance < distance ) {
+                map[i]   = carried;
+                carried  = e;
+                distance = existingDistance;
+            }
+
+            i = (i + 1) & slotMask;
+            distance++;
         }
+    }
+
+    /**
+     * Robin Hood removal. Every following element of the cluster that is not already in its home bucket moves back one
+     * place; the shift stops at the first gap or at the first element that is already home.
+     */
+    private void backwardShiftFrom( int gapIndex ) {
+        while ( true ) {
+            int          next = (gapIndex + 1) & slotMask;
+            Element<K,V> e    = map[next];
+
+            if ( e == null || probeDistance(e,next) == 0 ) {
+                map[gapIndex] = null;
+
+                return;
+            }
 
-        return i-1;
+            map[gapIndex] = e;
+            gapIndex      = next;
+        }
+    }
+
+    /**
+     * Linear probing removal. Walks the rest of the cluster moving back into the gap any element whose probe chain would
+     * otherwise be broken by it (Knuth, TAOCP Vol 3, Algorithm R).
+     */
+    private void closeGap( int gapIndex ) {
+        int i = gapIndex;
+
+        while ( true ) {
+            i = (i + 1) & slotMask;
+
+            Element<K,V> e = map[i];
+            if ( e == null ) {
+                break;
+            }
+
+            int homeIndex = toIndex( e.keyHashCode );
+
+            boolean canMoveIntoGap = gapIndex <= i ? (homeIndex <= gapIndex || homeIndex > i) : (homeIndex <= gapIndex && homeIndex > i);
+            if ( canMoveIntoGap ) {
+                map[gapIndex] = e;
+                gapIndex      = i;
+            }
+        }
+
+        map[gapIndex] = null;
+    }
+
+    private int probeDistance( Element<K,V> e, int currentIndex ) {
+        return (currentIndex - toIndex(e.keyHashCode)) & slotMask;
     }
 
     private int toIndex( int hashCode ) {
@@ -133,29 +382,97 @@ public class InlineMapStore<K,V> implements Store<K,V>{
         currentSize++;
 
         if ( currentSize > maxSizeBeforeResizing ) {
-            Element<K,V>[] oldMap = map;
+            if ( isIncrementalResize ) {
+                beginIncrementalResize( (bitMask+1) << 1 );
+            } else {
+                resizeTo( map.length << 2 );
+            }
+        }
+    }
+
+    private void elementRemoved() {
+        currentSize--;
 
-            initNewMap( oldMap.length << 2 );
+        boolean isSparse = currentSize < (maxSizeBeforeResizing >> 3);
+        if ( isSparse && oldMap == null && bitMask+1 > minMapSize ) {
+            int newMapSize = Math.max( minMapSize, roundUpToClosestPowerOf2((int) (currentSize*2/loadFactor)) );
 
-            outer:
-            for ( Element e : oldMap ) {
-                if ( e != null ) {
-                    int keyHashCode = e.key.hashCode();
-                    int i = toIndex( keyHashCode );
-                    while ( true ) {
+            if ( isIncrementalResize ) {
+                beginIncrementalResize( newMapSize );
+            } else {
+                resizeTo( newMapSize );
+            }
+        }
+    }
 
-                        if ( map[i] == null ) {
-                            map[i] = e;
-                            continue outer;
-                        }
+    private void resizeTo( int newMapSize ) {
+        Element<K,V>[] oldElements = map;
 
-                        i = (i + 1) & bitMask;
-                    }
-                }
+        initNewMap( newMapSize );
+
+        for ( Element<K,V> e : oldElements ) {
+            if ( e != null ) {
+                insertMigratedElement( e );
             }
         }
     }
 
+    private void beginIncrementalResize( int newMapSize ) {
+        if ( oldMap != null ) {
+            // the previous resize has not finished yet (very high write rate relative to the migration rate), so
+            // finish it off before starting the next one
+            migrateBuckets( oldMap.length );
+        }
+
+        oldMap         = map;
+        oldBitMask     = bitMask;
+        oldSlotMask    = slotMask;
+        migrationIndex = 0;
+
+        initNewMap( newMapSize );
+    }
+
+    /**
+     * Moves up to the specified number of buckets from the old array into the new one. Migrated buckets become
+     * tombstones rather than nulls, as later elements in the old array may still need to probe past them.
+     */
+    private void migrateBuckets( int numBuckets ) {
+        int endIndex = Math.min( migrationIndex + numBuckets, oldMap.length );
+
+        for ( int i=migrationIndex; i<endIndex; i++ ) {
+            Element<K,V> e = oldMap[i];
+
+            if ( e != null && e != TOMBSTONE ) {
+                insertMigratedElement( e );
+
+                oldMap[i] = TOMBSTONE;
+            }
+        }
+
+        migrationIndex = endIndex;
+
+        if ( migrationIndex == oldMap.length ) {
+            oldMap = null;
+        }
+    }
+
+    /**
+     * Inserts an element that is known not to be in the current array without altering the size of the map.
+     */
+    private void insertMigratedElement( Element<K,V> e ) {
+        if ( isRobinHoodMode ) {
+            insertDisplacedElement( e, toIndex(e.keyHashCode), 0 );
+        } else {
+            int i = toIndex( e.keyHashCode );
+
+            while ( map[i] != null ) {
+                i = (i + 1) & slotMask;
+            }
+
+            map[i] = e;
+        }
+    }
+
     private static class Element<K,V> {
         private final K key;
         private       V value;
@@ -0,0 +1,20 @@
+package com.mosaic.caches.stores;
+
+/**
+ * A store that maps primitive longs to primitive longs. Absent mappings are reported by returning the store's no entry
+ * value.
+ */
+public interface LongLongStore {
+
+    public long getNoEntryValue();
+
+    public boolean containsKey( long key );
+
+    public long get( long key );
+
+    public long put( long key, long newValue );
+
+    public long remove( long key );
+
+    public int size();
+}
@@ -0,0 +1,15 @@
+package com.mosaic.caches.stores;
+
+/**
+ * A store keyed by primitive longs.
+ */
+public interface LongObjectStore<V> {
+
+    public V get( long key );
+
+    public V put( long key, V newValue );
+
+    public V remove( long key );
+
+    public int size();
+}
@@ -1,6 +1,9 @@
 package com.mosaic.caches.stores;
 
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 
 /**
  *
@@ -32,4 +35,34 @@ public class MapStore<K,V> implements Store<K,V> {
     public int size() {
         return map.size();
     }
+
+    /**
+     * java.util.Map offers no way to release memory, so a plain HashMap is copied into a new, right sized, HashMap. All
+     * other map types are left untouched; replacing a map that may be shared between threads would lose writes.
+     */
+    @Override
+    public void trimToSize() {
+        if ( map.getClass() == HashMap.class ) {
+            map = new HashMap<K,V>( map );
+        }
+    }
+
+    /**
+     * java.util.Map offers no random access, so this walks the map's iterator to a randomly chosen position. Costs
+     * O(n); prefer one of the inline stores when sampling.
+     */
+    @Override
+    public K sampleKey( Random rnd ) {
+        int size = map.size();
+        if ( size == 0 ) {
+            return null;
+        }
+
+        Iterator<K> it = map.keySet().iterator();
+        for ( int i=rnd.nextInt(size); i>0; i-- ) {
+            it.next();
+        }
+
+        return it.next();
+    }
 }
@@ -1,5 +1,7 @@
 package com.mosaic.caches.stores;
 
+import java.util.Random;
+
 /**
  *
  */
@@ -12,4 +14,17 @@ public interface Store<K,V> {
     public V remove( K key, int keyHashCode );
 
     public int size();
+
+    /**
+     * Releases any memory held beyond that which is needed to hold the current contents of the store.
+     */
+    public void trimToSize();
+
+    /**
+     * Returns the key of an entry picked at random, or null when the store is empty. Supports eviction policies that
+     * sample entries rather than keeping every entry on a list. The pick needs to be cheap rather than perfectly
+     * uniform; the inline stores probe random buckets, so the expected cost grows as the store becomes sparser, and
+     * only fall back to scanning from a random bucket to the next occupied one when those probes keep missing.
+     */
+    public K sampleKey( Random rnd );
 }
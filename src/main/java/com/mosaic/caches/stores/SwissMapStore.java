@@ -0,0 +1,338 @@
+package com.mosaic.caches.stores;
+
+import java.util.Random;
+
+import static com.mosaic.caches.util.BitUtils.roundUpToClosestPowerOf2;
+
+/**
+ * An open addressing hash map modelled on Google's SwissTable. Alongside the key and value arrays the map keeps one
+ * control byte per bucket; the control byte records whether the bucket is empty, deleted or full and when full it holds
+ * a 7 bit fingerprint of the key's hash code.<p/>
+ *
+ * The control bytes are packed eight to a long, and a probe examines a whole group of eight buckets at once using
+ * SWAR (SIMD within a register) bit tricks. The key array is only touched when a fingerprint matches, which happens
+ * on average once every 128 non-matching buckets. This makes misses particularly cheap, as they usually cost a single
+ * read of the control word.<p/>
+ *
+ * Groups are probed quadratically. Removals leave a tombstone behind unless the group still contains an empty bucket,
+ * tombstones are cleared when the map next rehashes. The map shrinks once removals leave fewer than one in sixteen
+ * buckets in use.<p/>
+ *
+ * This store is not thread safe.
+ *
+ * @see "https://abseil.io/about/design/swisstables"
+ */
+@SuppressWarnings("unchecked")
+public class SwissMapStore<K,V> implements Store<K,V> {
+
+    private static final int  GROUP_SIZE       = 8;
+    private static final int  GROUP_SHIFT      = 3;
+
+    private static final long EMPTY            = 0x80L;
+    private static final long DELETED          = 0xFEL;
+
+    private static final long LSBS             = 0x0101010101010101L;
+    private static final long MSBS             = 0x8080808080808080L;
+    private static final long ALL_EMPTY_GROUP  = EMPTY * LSBS;
+
+
+    private long[]   controlWords;
+    private int[]    hashes;
+    private Object[] keys;
+    private Object[] values;
+
+    private int currentSize;
+    private int groupMask;
+    private int growthLeft;
+
+    private final int minNumGroups;
+
+
+    public SwissMapStore() {
+        this( 16 );
+    }
+
+    public SwissMapStore( int initialMapSize ) {
+        int numGroups = roundUpToClosestPowerOf2( (initialMapSize+GROUP_SIZE-1) >> GROUP_SHIFT );
+
+        this.minNumGroups = numGroups;
+
+        initNewMap( numGroups );
+    }
+
+    private void initNewMap( int numGroups ) {
+        int capacity = numGroups << GROUP_SHIFT;
+
+        controlWords = new long[numGroups];
+        hashes       = new int[capacity];
+        keys         = new Object[capacity];
+        values       = new Object[capacity];
+
+        groupMask   = numGroups - 1;
+        currentSize = 0;
+        growthLeft  = growthAllowanceOf( numGroups );
+
+        for ( int g=0; g<numGroups; g++ ) {
+            controlWords[g] = ALL_EMPTY_GROUP;
+        }
+    }
+
+    /**
+     * The number of slots currently allocated.
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    public int size() {
+        return currentSize;
+    }
+
+    /**
+     * Rebuilds the map into the smallest number of groups that can hold the current contents, dropping all tombstones.
+     */
+    public void trimToSize() {
+        int numGroups = 1;
+        while ( growthAllowanceOf(numGroups) <= currentSize ) {
+            numGroups <<= 1;
+        }
+
+        rehashTo( numGroups );
+    }
+
+    @Override
+    public K sampleKey( Random rnd ) {
+        if ( currentSize == 0 ) {
+            return null;
+        }
+
+        for ( int n=0; n<keys.length; n++ ) {
+            int i = rnd.nextInt( keys.length );
+
+            if ( keys[i] != null ) {
+                return (K) keys[i];
+            }
+        }
+
+        int mask = keys.length - 1;
+
+        int i = rnd.nextInt( keys.length );
+        while ( keys[i] == null ) {
+            i = (i + 1) & mask;
+        }
+
+        return (K) keys[i];
+    }
+
+    @Override
+    public V get( K key, int keyHashCode ) {
+        int i = indexOf( key, keyHashCode );
+
+        return i < 0 ? null : (V) values[i];
+    }
+
+    @Override
+    public V put( K key, V newValue, int keyHashCode ) {
+        int i = indexOf( key, keyHashCode );
+
+        if ( i >= 0 ) {
+            V oldValue = (V) values[i];
+
+            values[i] = newValue;
+
+            return oldValue;
+        }
+
+        if ( growthLeft == 0 ) {
+            rehash();
+        }
+
+        insertNew( key, newValue, keyHashCode );
+
+        return null;
+    }
+
+    @Override
+    public V remove( K key, int keyHashCode ) {
+        int i = indexOf( key, keyHashCode );
+        if ( i < 0 ) {
+            return null;
+        }
+
+        V oldValue = (V) values[i];
+
+        keys[i]   = null;
+        values[i] = null;
+
+        // a group that still has an empty bucket has never been probed past, so the bucket can safely become empty again
+        if ( matchEmpty(controlWords[i >>> GROUP_SHIFT]) != 0 ) {
+            setControlByte( i, EMPTY );
+            growthLeft++;
+        } else {
+            setControlByte( i, DELETED );
+        }
+
+        currentSize--;
+
+        int capacity = controlWords.length << GROUP_SHIFT;
+        if ( currentSize < (capacity >> 4) && controlWords.length > minNumGroups ) {
+            rehashTo( Math.max(minNumGroups, controlWords.length >> 2) );
+        }
+
+        return oldValue;
+    }
+
+
+    private int indexOf( K key, int keyHashCode ) {
+        int  mixedHash   = mix( keyHashCode );
+        long fingerprint = fingerprintOf( mixedHash );
+
+        int g    = mixedHash & groupMask;
+        int step = 0;
+
+        while ( true ) {
+            long word    = controlWords[g];
+            long matches = matchByte( word, fingerprint );
+
+            while ( matches != 0 ) {
+                int i = (g << GROUP_SHIFT) + (Long.numberOfTrailingZeros(matches) >>> 3);
+
+                if ( hashes[i] == keyHashCode && key.equals(keys[i]) ) {
+                    return i;
+                }
+
+                matches &= matches - 1;
+            }
+
+            if ( matchEmpty(word) != 0 ) {
+                return -1;
+            }
+
+            step++;
+            g = (g + step) & groupMask;
+        }
+    }
+
+    /**
+     * Places a key that is known not to be in the map into the first empty or deleted bucket along its probe sequence.
+     */
+    private void insertNew( Object key, Object value, int keyHashCode ) {
+        int  mixedHash   = mix( keyHashCode );
+        long fingerprint = fingerprintOf( mixedHash );
+
+        int g    = mixedHash & groupMask;
+        int step = 0;
+
+        while ( true ) {
+            long word      = controlWords[g];
+            long available = matchEmptyOrDeleted( word );
+
+            if ( available != 0 ) {
+                int i = (g << GROUP_SHIFT) + (Long.numberOfTrailingZeros(available) >>> 3);
+
+                if ( controlByte(i) == EMPTY ) {
+                    growthLeft--;
+                }
+
+                setControlByte( i, fingerprint );
+
+                hashes[i] = keyHashCode;
+                keys[i]   = key;
+                values[i] = value;
+
+                currentSize++;
+
+                return;
+            }
+
+            step++;
+            g = (g + step) & groupMask;
+        }
+    }
+
+    /**
+     * Rebuilds the table, dropping tombstones. The table only grows when it is more than half full, otherwise it was
+     * the tombstones that used up the growth allowance and rehashing in place is enough.
+     */
+    private void rehash() {
+        int numGroups = controlWords.length;
+        if ( currentSize >= (keys.length >> 1) ) {
+            numGroups <<= 1;
+        }
+
+        rehashTo( numGroups );
+    }
+
+    private void rehashTo( int numGroups ) {
+        int[]    oldHashes = hashes;
+        Object[] oldKeys   = keys;
+        Object[] oldValues = values;
+
+        initNewMap( numGroups );
+
+        for ( int i=0; i<oldKeys.length; i++ ) {
+            if ( oldKeys[i] != null ) {
+                insertNew( oldKeys[i], oldValues[i], oldHashes[i] );
+            }
+        }
+    }
+
+    /**
+     * The number of buckets that may be filled before the map must rehash, a max load factor of 7/8.
+     */
+    private static int growthAllowanceOf( int numGroups ) {
+        int capacity = numGroups << GROUP_SHIFT;
+
+        return capacity - (capacity >> 3);
+    }
+
+    private long controlByte( int i ) {
+        return (controlWords[i >>> GROUP_SHIFT] >>> ((i & (GROUP_SIZE-1)) << 3)) & 0xFFL;
+    }
+
+    private void setControlByte( int i, long b ) {
+        int g     = i >>> GROUP_SHIFT;
+        int shift = (i & (GROUP_SIZE-1)) << 3;
+
+        controlWords[g] = (controlWords[g] & ~(0xFFL << shift)) | (b << shift);
+    }
+
+    /**
+     * Java hash codes are frequently sequential, so spread the bits before splitting the hash into a group index (low
+     * bits) and a fingerprint (top 7 bits). The multiply only carries low bits upwards, so the high half is then folded
+     * back down; otherwise hash codes that differ only in their high bits would all share one probe sequence.
+     */
+    static int mix( int keyHashCode ) {
+        int h = keyHashCode * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+
+    private static long fingerprintOf( int mixedHash ) {
+        return mixedHash >>> 25;
+    }
+
+    /**
+     * Returns a word with the high bit set in each byte of the group that equals b. May report a false positive for a
+     * byte that immediately follows a true match, which is harmless as candidates are always confirmed against the key.
+     */
+    static long matchByte( long word, long b ) {
+        long x = word ^ (LSBS * b);
+
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    /**
+     * EMPTY is the only control byte with the high bit set and bit 1 clear.
+     */
+    static long matchEmpty( long word ) {
+        return word & (~word << 6) & MSBS;
+    }
+
+    /**
+     * Full buckets hold a 7 bit fingerprint, so their high bit is always clear.
+     */
+    static long matchEmptyOrDeleted( long word ) {
+        return word & MSBS;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mosaic.caches.util;
+
+/**
+ * A coarse clock whose time is refreshed by a daemon ticker thread, so reading it costs a single volatile read rather
+ * than a call to System.currentTimeMillis(). The time lags behind the system clock by up to the tick interval, which is
+ * harmless for expiry timers that are themselves only accurate to a hash wheel bucket.<p/>
+ *
+ * One instance is intended to be shared by every cache in the process; stop it once it is no longer needed.
+ */
+public class CachedClock implements Clock {
+
+    private final    Thread  ticker;
+    private volatile long    nowMillis;
+    private volatile boolean isRunning = true;
+
+
+    public CachedClock() {
+        this( 1 );
+    }
+
+    public CachedClock( final int tickIntervalMillis ) {
+        Validate.gtZero( tickIntervalMillis, "tickIntervalMillis" );
+
+        this.nowMillis = System.currentTimeMillis();
+        this.ticker    = new Thread( "CachedClock" ) {
+            public void run() {
+                while ( isRunning ) {
+                    nowMillis = System.currentTimeMillis();
+
+                    try {
+                        Thread.sleep( tickIntervalMillis );
+                    } catch ( InterruptedException e ) {
+                        return;
+                    }
+                }
+            }
+        };
+
+        ticker.setDaemon( true );
+        ticker.start();
+    }
+
+    public long currentTimeMillis() {
+        return nowMillis;
+    }
+
+    /**
+     * Stops the ticker thread. The clock then stays at the last time that it read.
+     */
+    public void stop() {
+        isRunning = false;
+
+        ticker.interrupt();
+    }
+
+}
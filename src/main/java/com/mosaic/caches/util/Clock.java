@@ -0,0 +1,15 @@
+package com.mosaic.caches.util;
+
+/**
+ * The source of time for the time based decorators. Lets the cost and precision of reading the time be chosen per
+ * application, and lets tests and simulations drive expiry deterministically.
+ *
+ * @see SystemClock
+ * @see CachedClock
+ * @see ManualClock
+ */
+public interface Clock {
+
+    public long currentTimeMillis();
+
+}
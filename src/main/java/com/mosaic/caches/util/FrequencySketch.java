@@ -0,0 +1,117 @@
+package com.mosaic.caches.util;
+
+/**
+ * A count-min sketch that estimates how often each key has been seen, using 4 bit counters packed sixteen to a long.
+ * A key's counters are spread over four longs chosen by four different hash functions; its estimated frequency is the
+ * smallest of the four, which can over count due to collisions but never under counts.<p/>
+ *
+ * Counters saturate at 15. To keep the estimates about recent history, once the number of increments reaches the
+ * sample size every counter is halved (aging), so keys that were popular long ago gradually lose their standing.<p/>
+ *
+ * This class is not thread safe.
+ */
+public class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long MAX_COUNT  = 15L;
+
+
+    private final long[] table;
+    private final int    tableMask;
+    private final int    sampleSize;
+
+    private int additions;
+
+
+    /**
+     * @param expectedNumKeys the number of keys being tracked, usually the maximum size of the cache
+     */
+    public FrequencySketch( int expectedNumKeys ) {
+        Validate.gtZero( expectedNumKeys, "expectedNumKeys" );
+
+        int tableSize = BitUtils.roundUpToClosestPowerOf2( expectedNumKeys );
+
+        this.table      = new long[tableSize];
+        this.tableMask  = tableSize - 1;
+        this.sampleSize = 10 * expectedNumKeys;
+    }
+
+    /**
+     * Returns the estimated number of times the key with the specified hash code has been seen, between 0 and 15.
+     */
+    public int frequency( int keyHashCode ) {
+        int  h     = spread( keyHashCode );
+        int  start = (h & 3) << 2;
+        long min   = MAX_COUNT;
+
+        for ( int i=0; i<4; i++ ) {
+            long count = (table[indexOf(h, i)] >>> ((start + i) << 2)) & 0xFL;
+
+            min = Math.min( min, count );
+        }
+
+        return (int) min;
+    }
+
+    /**
+     * Records one more sighting of the key with the specified hash code.
+     */
+    public void increment( int keyHashCode ) {
+        int     h           = spread( keyHashCode );
+        int     start       = (h & 3) << 2;
+        boolean incremented = false;
+
+        for ( int i=0; i<4; i++ ) {
+            incremented |= incrementAt( indexOf(h, i), start + i );
+        }
+
+        if ( incremented && ++additions == sampleSize ) {
+            reset();
+        }
+    }
+
+    /**
+     * Halves every counter.
+     */
+    public void reset() {
+        for ( int i=0; i<table.length; i++ ) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+
+        additions >>>= 1;
+    }
+
+
+    private boolean incrementAt( int i, int counterIndex ) {
+        int shift = counterIndex << 2;
+
+        if ( ((table[i] >>> shift) & 0xFL) == MAX_COUNT ) {
+            return false;
+        }
+
+        table[i] += 1L << shift;
+
+        return true;
+    }
+
+    private int indexOf( int h, int hashFunction ) {
+        long x = (h + SEEDS[hashFunction]) * SEEDS[hashFunction];
+
+        x += x >>> 32;
+
+        return (int) x & tableMask;
+    }
+
+    /**
+     * Java hash codes are frequently sequential; spread them so that the low bits used to pick counters are well mixed.
+     */
+    private static int spread( int keyHashCode ) {
+        int h = keyHashCode * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+}
@@ -8,13 +8,16 @@ package com.mosaic.caches.util;
  * This scheduler does not guarantee strict timings. Any promise to execute a task is on the premise that it will occur
  * after the specified time and not before.<p/>
  *
+ * Tasks scheduled many rotations ahead share their bucket with tasks from other rotations, which costs a scan on insert.
+ * HierarchicalHashWheel avoids that for workloads that mix short and very long timers.<p/>
+ *
  *
  * The wheel is not thread safe.
  *
  * @see "http://www.cse.wustl.edu/~cdgill/courses/cs6874/TimingWheels.ppt"
  */
 @SuppressWarnings("unchecked")
-public class HashWheel {
+public class HashWheel implements TimerWheel {
 
     private final HashWheelBucket[] hashWheel;
     private final int               bitmask;
@@ -24,10 +27,17 @@ public class HashWheel {
     private final long wheelGranularityMillis;
 
     private int currentWheelIndex;
-    private int currentRotationCount;
+    private long currentRotationCount;
 
     public HashWheel() {
-        this( System.currentTimeMillis(), 128, 256 );
+        this( SystemClock.INSTANCE );
+    }
+
+    /**
+     * Starts the wheel at the clock's current time. Book keeping should then be driven by the same clock.
+     */
+    public HashWheel( Clock clock ) {
+        this( clock.currentTimeMillis(), 128, 256 );
     }
 
     public HashWheel( long startMillis ) {
@@ -62,9 +72,30 @@ public class HashWheel {
      * (bucketGranularity)*wheelSize each time.
      */
     public Ticket register( long whenMillis, Runnable task ) {
-        TaskNode taskNode = new TaskNode(task);
+        WheelTimer timer = new RunnableTimer( task );
+
+        register( whenMillis, timer );
+
+        return timer;
+    }
+
+    /**
+     * Register a timer without allocating. Has the same costs as registering a runnable.
+     */
+    public void register( long whenMillis, WheelTimer timer ) {
+        int  targetWheelIndex    = toWheelIndex( whenMillis );
+        long targetRotationCount = toRotationCount( whenMillis );
+
+        timer.scheduledBy( this, whenMillis );
 
-        return register( whenMillis, taskNode );
+        boolean hasBucketAlreadyFired = targetRotationCount < currentRotationCount || (targetRotationCount == currentRotationCount && targetWheelIndex < currentWheelIndex);
+        if ( hasBucketAlreadyFired ) {
+            timer.fire();
+
+            return;
+        }
+
+        hashWheel[targetWheelIndex].register( targetRotationCount, timer );
     }
 
     public void clear() {
@@ -77,36 +108,28 @@ public class HashWheel {
     }
 
     public void applyBookKeeping( long nowMillis ) {
-        int targetWheelIndex    = toWheelIndex( nowMillis );
-        int targetRotationCount = toRotationCount( nowMillis );
-
-        while ( currentWheelIndex != targetWheelIndex || targetRotationCount != currentRotationCount ) {
-            hashWheel[currentWheelIndex].trigger(currentRotationCount);
-
-            incrementWheel();
-        }
+        applyBookKeeping( nowMillis, Integer.MAX_VALUE );
     }
 
+    public boolean applyBookKeeping( long nowMillis, int maxTimeouts ) {
+        int  targetWheelIndex    = toWheelIndex( nowMillis );
+        long targetRotationCount = toRotationCount( nowMillis );
+        int  timeoutsLeft        = maxTimeouts;
 
-    private Ticket register( long whenMillis, TaskNode taskNode ) {
-        int targetWheelIndex    = toWheelIndex( whenMillis );
-        int targetRotationCount = toRotationCount( whenMillis );
+        while ( currentWheelIndex != targetWheelIndex || targetRotationCount != currentRotationCount ) {
+            timeoutsLeft -= hashWheel[currentWheelIndex].trigger( currentRotationCount, timeoutsLeft );
 
-        boolean hasBucketAlreadyFired = targetRotationCount < currentRotationCount || (targetRotationCount == currentRotationCount && targetWheelIndex < currentWheelIndex);
-        if ( hasBucketAlreadyFired ) {
-            taskNode.run();
+            if ( timeoutsLeft == 0 ) {
+                return false;   // the bucket may not be empty yet, so stay on it
+            }
 
-            return ALREADY_FIRED_TICKET;
+            incrementWheel();
         }
 
-        HashWheelBucket bucket = hashWheel[targetWheelIndex];
-
-        Ticket ticket = bucket.register( targetRotationCount, taskNode );
-        ticket.setOwningHashWheel( this );
-
-        return taskNode;
+        return true;
     }
 
+
     private void incrementWheel() {
         int previousWheelIndex = currentWheelIndex;
 
@@ -121,43 +144,11 @@ public class HashWheel {
         return (int) (millis >> bucketGranularityBitShift) & bitmask;
     }
 
-    protected int toRotationCount( long millis ) {
-        return (int) (millis >> rotationBitShift);
+    protected long toRotationCount( long millis ) {
+        return millis >> rotationBitShift;
     }
 
-    private static Ticket ALREADY_FIRED_TICKET = new Ticket() {
-
-        @Override
-        public boolean isScheduledToRun() {
-            return false;
-        }
-
-        @Override
-        public boolean wasCancelled() {
-            return false;
-        }
-
-        @Override
-        public boolean hasRun() {
-            return true;
-        }
-
-        public void cancel() {}
-        public void rescheduleTo( long whenMillis ) {}
-        public void setOwningHashWheel( HashWheel hashWheel ) {}
-    };
-
-
-    public static interface Ticket {
-
-        public boolean isScheduledToRun();
-        public boolean wasCancelled();
-        public boolean hasRun();
-
-        public void cancel();
-
-        public void rescheduleTo( long whenMillis );
-
+    public static interface Ticket extends TimerWheel.Ticket {
         public void setOwningHashWheel( HashWheel hashWheel );
     }
 
@@ -165,27 +156,38 @@ public class HashWheel {
     private static class HashWheelBucket {
         private RotationList rotationList = new RotationList();
 
-        public Ticket register( int rotationSeq, TaskNode taskNode ) {
-            DoubleLinkList<TaskNode> taskList = rotationList.selectOrCreateTaskListForRotation( rotationSeq );
+        public void register( long rotationSeq, WheelTimer timer ) {
+            DoubleLinkList<WheelTimer> taskList = rotationList.selectOrCreateTaskListForRotation( rotationSeq );
 
-            taskList.insertTail( taskNode );
-
-            return taskNode;
+            taskList.insertTail( timer );
         }
 
-        public void trigger( int currentRotationCount ) {
+        /**
+         * Fires up to maxTimeouts of the timers due on the specified rotation, returning how many fired. The rotation
+         * is only dropped from the bucket once it has been emptied.
+         */
+        public int trigger( long currentRotationCount, int maxTimeouts ) {
             RotationNode rotationNode = rotationList.selectRotationNode( currentRotationCount );
+            if ( rotationNode == null ) {
+                return 0;
+            }
 
-            if ( rotationNode != null ) {
-                rotationNode.detachNode();
+            DoubleLinkList<WheelTimer> taskList = rotationNode.getValue();
+            int                        numFired = 0;
 
-                TaskNode nextTaskNode = rotationNode.getValue().head();
-                while ( nextTaskNode != null ) {
-                    nextTaskNode.run();
+            while ( numFired < maxTimeouts ) {
+                WheelTimer timer = taskList.popHead();   // timers are detached before they fire, as they may register themselves again
+                if ( timer == null ) {
+                    rotationNode.detachNode();
 
-                    nextTaskNode = nextTaskNode.nextNode();
+                    break;
                 }
+
+                timer.fire();
+                numFired++;
             }
+
+            return numFired;
         }
 
         public void clear() {
@@ -196,7 +198,7 @@ public class HashWheel {
     private static class RotationList {
         private DoubleLinkList<RotationNode> rotationList = new DoubleLinkList();
 
-        public RotationNode selectRotationNode( int rotationSeq ) {
+        public RotationNode selectRotationNode( long rotationSeq ) {
             RotationNode candidate = rotationList.head();
 
             while ( candidate != null ) {
@@ -210,7 +212,7 @@ public class HashWheel {
             return null;
         }
 
-        public DoubleLinkList<TaskNode> selectOrCreateTaskListForRotation( int rotationSeq ) {
+        public DoubleLinkList<WheelTimer> selectOrCreateTaskListForRotation( long rotationSeq ) {
             RotationNode candidate = rotationList.head();
 
             while ( candidate != null && candidate.rotationSeq < rotationSeq) {
@@ -234,12 +236,12 @@ public class HashWheel {
             RotationNode rotationNode = rotationList.head();
 
             while ( rotationNode != null ) {
-                TaskNode taskNode = rotationNode.getValue().head();
+                WheelTimer timer = rotationNode.getValue().head();
 
-                while ( taskNode != null ) {
-                    taskNode.cancel();
+                while ( timer != null ) {
+                    timer.cancel();
 
-                    taskNode = rotationNode.getValue().head();
+                    timer = rotationNode.getValue().head();
                 }
 
                 rotationNode.detachNode();
@@ -248,65 +250,13 @@ public class HashWheel {
         }
     }
 
-    private static class RotationNode extends DoubleLinkList.Node<DoubleLinkList<TaskNode>, RotationNode> {
-        private final int rotationSeq;
+    private static class RotationNode extends DoubleLinkList.Node<DoubleLinkList<WheelTimer>, RotationNode> {
+        private final long rotationSeq;
 
-        public RotationNode( int rotationSeq ) {
+        public RotationNode( long rotationSeq ) {
             super( new DoubleLinkList() );
 
             this.rotationSeq = rotationSeq;
         }
     }
-
-    private static class TaskNode extends DoubleLinkList.Node<Runnable, TaskNode> implements Ticket {
-        private boolean   hasRun;
-        private boolean   wasCancelled;
-        private HashWheel owningHashWheel;
-
-        public TaskNode( Runnable runnable ) {
-            super( runnable );
-        }
-
-        public boolean isScheduledToRun() {
-            return isAttached() && !wasCancelled && !hasRun;
-        }
-
-        public boolean wasCancelled() {
-            return wasCancelled;
-        }
-
-        public boolean hasRun() {
-            return hasRun;
-        }
-
-        public void cancel() {
-            detachNode();
-
-            clear();
-
-            wasCancelled = true;
-        }
-
-        public void rescheduleTo( long whenMillis ) {
-            if ( !isScheduledToRun() ) {
-                return;
-            }
-
-            detachNode();
-            owningHashWheel.register( whenMillis, this );
-        }
-
-        public void setOwningHashWheel( HashWheel hashWheel ) {
-            owningHashWheel = hashWheel;
-        }
-
-        protected void run() {
-            if ( !hasRun ) {
-                getValue().run();
-
-                hasRun          = true;
-                owningHashWheel = null;
-            }
-        }
-    }
 }
@@ -0,0 +1,195 @@
+package com.mosaic.caches.util;
+
+/**
+ * A timer wheel made up of several wheels of increasing granularity, like the hands of a clock. Insert, cancel and
+ * reschedule are O(1) however far in the future a task is scheduled, as is the book keeping for each tick of the
+ * finest wheel.<p/>
+ *
+ * The finest wheel has one bucket per tick. Each bucket of the next wheel up spans one full rotation of the wheel below
+ * it, and so on. A task is placed on the finest wheel that can reach its time. Whenever the finest wheel completes a
+ * rotation, the next bucket of the wheel above is emptied and its tasks cascade down onto finer wheels, landing on the
+ * finest wheel once they are due within one rotation. Unlike HashWheel no bucket ever holds tasks for different
+ * rotations, so nothing needs to be scanned or sorted.<p/>
+ *
+ * The defaults of 256 buckets per wheel and four wheels at 128ms granularity span 17 years. Tasks further out than the
+ * span are parked in the coarsest wheel's furthest bucket and re-placed each time that bucket cascades.<p/>
+ *
+ * This scheduler does not guarantee strict timings. Any promise to execute a task is on the premise that it will occur
+ * after the specified time and not before.<p/>
+ *
+ * The wheel is not thread safe.
+ *
+ * @see "Varghese and Lauck, Hashed and Hierarchical Timing Wheels"
+ */
+@SuppressWarnings("unchecked")
+public class HierarchicalHashWheel implements TimerWheel {
+
+    private final DoubleLinkList<WheelTimer>[][] wheels;
+    private final int                            numWheels;
+    private final int                            bucketBits;
+    private final int                            bucketMask;
+    private final int                            tickBitShift;
+    private final long                           maxTicksAhead;
+
+    private long currentTick;
+
+
+    public HierarchicalHashWheel() {
+        this( SystemClock.INSTANCE );
+    }
+
+    /**
+     * Starts the wheel at the clock's current time. Book keeping should then be driven by the same clock.
+     */
+    public HierarchicalHashWheel( Clock clock ) {
+        this( clock.currentTimeMillis() );
+    }
+
+    public HierarchicalHashWheel( long startMillis ) {
+        this( startMillis, 128, 256, 4 );
+    }
+
+    /**
+     * As an optimisation to replace divisions with bitshifts and modulo with bitands, scheduling granularity and the
+     * number of buckets per wheel are rounded up to the closest power of two (eg 4,8,16,32,64,128,...)
+     */
+    public HierarchicalHashWheel( long startMillis, long schedulingGranularityMillis, int bucketsPerWheel, int numWheels ) {
+        Validate.gtZero( numWheels, "numWheels" );
+
+        int size = BitUtils.roundUpToClosestPowerOf2( bucketsPerWheel );
+
+        this.numWheels     = numWheels;
+        this.bucketMask    = size - 1;
+        this.bucketBits    = BitUtils.numberOfBitsSet( bucketMask );
+        this.tickBitShift  = BitUtils.numberOfBitsSet( (int) BitUtils.roundUpToClosestPowerOf2(schedulingGranularityMillis) - 1 );
+        this.maxTicksAhead = bucketBits*numWheels >= 63 ? Long.MAX_VALUE : (1L << (bucketBits*numWheels)) - 1;
+        this.wheels        = new DoubleLinkList[numWheels][size];
+
+        for ( int w=0; w<numWheels; w++ ) {
+            for ( int i=0; i<size; i++ ) {
+                wheels[w][i] = new DoubleLinkList<WheelTimer>();
+            }
+        }
+
+        this.currentTick = startMillis >> tickBitShift;
+    }
+
+    public Ticket register( long whenMillis, Runnable task ) {
+        WheelTimer timer = new RunnableTimer( task );
+
+        register( whenMillis, timer );
+
+        return timer;
+    }
+
+    public void register( long whenMillis, WheelTimer timer ) {
+        timer.scheduledBy( this, whenMillis );
+
+        long targetTick = whenMillis >> tickBitShift;
+        if ( targetTick < currentTick ) {
+            timer.fire();
+
+            return;
+        }
+
+        bucketFor( targetTick ).insertTail( timer );
+    }
+
+    public void applyBookKeeping( long nowMillis ) {
+        applyBookKeeping( nowMillis, Integer.MAX_VALUE );
+    }
+
+    public boolean applyBookKeeping( long nowMillis, int maxTimeouts ) {
+        long targetTick   = nowMillis >> tickBitShift;
+        int  timeoutsLeft = maxTimeouts;
+
+        while ( currentTick < targetTick ) {
+            timeoutsLeft -= runBucket( wheels[0][(int) currentTick & bucketMask], timeoutsLeft );
+
+            if ( timeoutsLeft == 0 ) {
+                return false;   // the bucket may not be empty yet, so stay on this tick
+            }
+
+            currentTick++;
+
+            cascade();
+        }
+
+        return true;
+    }
+
+    public void clear() {
+        for ( DoubleLinkList<WheelTimer>[] wheel : wheels ) {
+            for ( DoubleLinkList<WheelTimer> bucket : wheel ) {
+                WheelTimer timer = bucket.head();
+
+                while ( timer != null ) {
+                    timer.cancel();
+
+                    timer = bucket.head();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Selects the finest wheel whose rotation reaches the target tick.
+     */
+    private DoubleLinkList<WheelTimer> bucketFor( long targetTick ) {
+        long ticksAhead = targetTick - currentTick;
+        if ( ticksAhead > maxTicksAhead ) {
+            targetTick = currentTick + maxTicksAhead;
+            ticksAhead = maxTicksAhead;
+        }
+
+        int wheel = 0;
+        while ( wheel < numWheels-1 && (ticksAhead >> (bucketBits*(wheel+1))) != 0 ) {
+            wheel++;
+        }
+
+        return wheels[wheel][(int) (targetTick >> (bucketBits*wheel)) & bucketMask];
+    }
+
+    /**
+     * Called after each tick. Every wheel whose finer neighbour has just completed a rotation empties its next bucket
+     * down onto the finer wheels. Coarser wheels go first, so that their tasks can land in a bucket of a finer wheel
+     * that has yet to cascade on this tick.
+     */
+    private void cascade() {
+        int wheel = 0;
+        while ( wheel < numWheels-1 && (currentTick & ((1L << (bucketBits*(wheel+1))) - 1)) == 0 ) {
+            wheel++;
+        }
+
+        for ( ; wheel > 0; wheel-- ) {
+            DoubleLinkList<WheelTimer> bucket = wheels[wheel][(int) (currentTick >> (bucketBits*wheel)) & bucketMask];
+
+            WheelTimer timer = bucket.popHead();
+            while ( timer != null ) {
+                bucketFor( timer.whenMillis >> tickBitShift ).insertTail( timer );
+
+                timer = bucket.popHead();
+            }
+        }
+    }
+
+    /**
+     * Fires up to maxTimeouts of the bucket's timers, returning how many fired.
+     */
+    private int runBucket( DoubleLinkList<WheelTimer> bucket, int maxTimeouts ) {
+        int numFired = 0;
+
+        while ( numFired < maxTimeouts ) {
+            WheelTimer timer = bucket.popHead();
+            if ( timer == null ) {
+                break;
+            }
+
+            timer.fire();
+            numFired++;
+        }
+
+        return numFired;
+    }
+}
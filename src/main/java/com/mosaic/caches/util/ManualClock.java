@@ -0,0 +1,26 @@
+package com.mosaic.caches.util;
+
+/**
+ * A clock that only moves when told to. Used to drive expiry deterministically from tests and simulations.
+ */
+public class ManualClock implements Clock {
+
+    private volatile long nowMillis;
+
+    public ManualClock( long startMillis ) {
+        this.nowMillis = startMillis;
+    }
+
+    public long currentTimeMillis() {
+        return nowMillis;
+    }
+
+    public void setTimeMillis( long nowMillis ) {
+        this.nowMillis = nowMillis;
+    }
+
+    public void advanceMillis( long deltaMillis ) {
+        this.nowMillis += deltaMillis;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.mosaic.caches.util;
+
+/**
+ * Adapts a Runnable registered with a TimerWheel into a WheelTimer.
+ */
+class RunnableTimer extends WheelTimer {
+
+    private Runnable task;
+
+    public RunnableTimer( Runnable task ) {
+        this.task = task;
+    }
+
+    @Override
+    protected void timeout() {
+        task.run();
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+
+        task = null;
+    }
+
+}
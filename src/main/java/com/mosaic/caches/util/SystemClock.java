@@ -0,0 +1,14 @@
+package com.mosaic.caches.util;
+
+/**
+ * Reads System.currentTimeMillis() every time it is asked.
+ */
+public class SystemClock implements Clock {
+
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+}
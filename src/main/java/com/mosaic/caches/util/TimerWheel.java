@@ -0,0 +1,53 @@
+package com.mosaic.caches.util;
+
+/**
+ * Schedules tasks to run once a point in time has passed. Time only moves forward when applyBookKeeping is called, at
+ * which point every task scheduled before that time is run on the calling thread. Designed for timers that are
+ * usually cancelled or rescheduled before they fire, such as the expiry of cache entries.<p/>
+ *
+ * Implementations are not thread safe.
+ */
+public interface TimerWheel {
+
+    /**
+     * Register the specified runnable to execute after the specified time. A time that has already passed runs the
+     * task immediately.
+     */
+    public Ticket register( long whenMillis, Runnable task );
+
+    /**
+     * Register a timer to time out after the specified time. The timer is held by the wheel directly, so registering
+     * it allocates nothing. A timer that has already run or been cancelled may be registered again.
+     */
+    public void register( long whenMillis, WheelTimer timer );
+
+    /**
+     * Runs every task that was scheduled to run before the specified time.
+     */
+    public void applyBookKeeping( long nowMillis );
+
+    /**
+     * Like applyBookKeeping, but runs at most maxTimeouts tasks, so that a caller holding a lock can release it between
+     * slices of a large backlog. Returns true once every task scheduled before the specified time has run, or false when
+     * the limit was reached first; calling again carries on from where the previous call stopped. maxTimeouts must be
+     * greater than zero.
+     */
+    public boolean applyBookKeeping( long nowMillis, int maxTimeouts );
+
+    /**
+     * Cancels every scheduled task.
+     */
+    public void clear();
+
+
+    public static interface Ticket {
+
+        public boolean isScheduledToRun();
+        public boolean wasCancelled();
+        public boolean hasRun();
+
+        public void cancel();
+
+        public void rescheduleTo( long whenMillis );
+    }
+}
@@ -0,0 +1,81 @@
+package com.mosaic.caches.util;
+
+/**
+ * A timer that a TimerWheel holds directly as the node of one of its bucket lists. Designed to be extended, so that
+ * whatever is being timed can be its own timer; a cache entry that extends WheelTimer expires without the wheel having
+ * to allocate a node or a Runnable for it. The timer is also its own ticket.<p/>
+ *
+ * A timer may be registered again from within timeout(), for example to push its expiry back.
+ */
+public abstract class WheelTimer extends DoubleLinkList.Node<Object,WheelTimer> implements HashWheel.Ticket {
+
+    long whenMillis;
+
+    private boolean    hasRun;
+    private boolean    wasCancelled;
+    private TimerWheel owningWheel;
+
+
+    protected WheelTimer() {
+        super( null );
+    }
+
+    /**
+     * Called by the wheel on the thread applying its book keeping, once the time that the timer was registered for has
+     * passed.
+     */
+    protected abstract void timeout();
+
+
+    public boolean isScheduledToRun() {
+        return isAttached() && !wasCancelled && !hasRun;
+    }
+
+    public boolean wasCancelled() {
+        return wasCancelled;
+    }
+
+    public boolean hasRun() {
+        return hasRun;
+    }
+
+    public void cancel() {
+        detachNode();
+
+        wasCancelled = true;
+        owningWheel  = null;
+    }
+
+    public void rescheduleTo( long whenMillis ) {
+        if ( !isScheduledToRun() ) {
+            return;
+        }
+
+        detachNode();
+        owningWheel.register( whenMillis, this );
+    }
+
+    public void setOwningHashWheel( HashWheel hashWheel ) {
+        owningWheel = hashWheel;
+    }
+
+    /**
+     * Readies the timer to be placed on a wheel, including one that it has already run or been cancelled on.
+     */
+    void scheduledBy( TimerWheel wheel, long whenMillis ) {
+        this.owningWheel  = wheel;
+        this.whenMillis   = whenMillis;
+        this.hasRun       = false;
+        this.wasCancelled = false;
+    }
+
+    void fire() {
+        if ( !hasRun ) {
+            hasRun      = true;
+            owningWheel = null;
+
+            timeout();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.impl.BasicCacheTestCases;
+import com.mosaic.caches.impl.StoreCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings("unchecked")
+public class ARCEvictionCacheTest extends BasicCacheTestCases {
+
+    public ARCEvictionCacheTest() {
+        super( new ARCEvictionCache( new StoreCache("test-cache"), 3 ) );
+    }
+
+    @Test
+    public void insertOneMoreValueThanLimit_expectFirstValueInsertedToBeDropped() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertNull( cache.get("a") );
+        assertEquals( new Integer(2), cache.get("b") );
+        assertEquals( new Integer(3), cache.get("c") );
+        assertEquals( new Integer(4), cache.get("d") );
+    }
+
+    @Test
+    public void valuesReadTwice_scanOfNewValues_expectFrequentlyUsedValuesToSurvive() {
+        ARCEvictionCache<Integer,Integer> arcCache = new ARCEvictionCache( new StoreCache("test-cache"), 10 );
+
+        for ( int key=0; key<5; key++ ) {
+            arcCache.put( key, key );
+            arcCache.get( key );
+        }
+
+        for ( int key=100; key<200; key++ ) {
+            arcCache.put( key, key );
+        }
+
+        for ( int key=0; key<5; key++ ) {
+            assertEquals( new Integer(key), arcCache.get(key) );
+        }
+
+        assertEquals( 10, arcCache.size() );
+    }
+
+    @Test
+    public void recentlyEvictedOnceUsedKeyReinserted_expectTargetToShiftTowardsRecency() {
+        ARCEvictionCache<Integer,Integer> arcCache = new ARCEvictionCache( new StoreCache("test-cache"), 4 );
+
+        arcCache.put( 1, 1 );
+        arcCache.get( 1 );                   // 1 is now frequent
+        arcCache.put( 2, 2 );
+        arcCache.put( 3, 3 );
+        arcCache.put( 4, 4 );
+        arcCache.put( 5, 5 );                // evicts 2 from T1 into the B1 ghost list
+
+        assertNull( arcCache.get(2) );
+        assertEquals( 0, arcCache.getTargetT1Size() );
+
+        arcCache.put( 2, 2 );                // ghost hit in B1
+
+        assertEquals( 1, arcCache.getTargetT1Size() );
+        assertEquals( new Integer(2), arcCache.get(2) );
+        assertEquals( 4, arcCache.size() );
+    }
+
+    @Test
+    public void recentlyEvictedFrequentKeyReinserted_expectTargetToShiftTowardsFrequency() {
+        ARCEvictionCache<Integer,Integer> arcCache = new ARCEvictionCache( new StoreCache("test-cache"), 2 );
+
+        arcCache.put( 1, 1 );
+        arcCache.get( 1 );                   // T2: 1
+        arcCache.put( 2, 2 );
+        arcCache.put( 3, 3 );                // evicts 2 from T1 into B1
+        arcCache.get( 3 );                   // T2: 3, 1
+        arcCache.put( 4, 4 );                // T1 is under target, so evicts 1 from T2 into B2
+
+        assertNull( arcCache.get(1) );
+
+        arcCache.put( 2, 2 );                // B1 hit
+
+        assertEquals( 1, arcCache.getTargetT1Size() );
+
+        arcCache.put( 1, 1 );                // B2 hit
+
+        assertEquals( 0, arcCache.getTargetT1Size() );
+        assertEquals( new Integer(1), arcCache.get(1) );
+        assertEquals( 2, arcCache.size() );
+    }
+
+    @Test
+    public void manyMoreInsertsThanTheLimit_expectSizeToStayCapped() {
+        ARCEvictionCache<Integer,Integer> arcCache = new ARCEvictionCache( new StoreCache("test-cache"), 50 );
+
+        for ( int i=0; i<10000; i++ ) {
+            int key = (i * 7919) % 300;
+
+            if ( arcCache.get(key) == null ) {
+                arcCache.put( key, key );
+            }
+
+            if ( i % 13 == 0 ) {
+                arcCache.remove( (i * 31) % 300 );
+            }
+        }
+
+        assertTrue( arcCache.size() <= 50 );
+    }
+}
@@ -0,0 +1,128 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.CacheFactory;
+import com.mosaic.caches.impl.BasicCacheTestCases;
+import com.mosaic.caches.impl.StoreCache;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings("unchecked")
+public class ClockEvictionCacheTest extends BasicCacheTestCases {
+
+    public ClockEvictionCacheTest() {
+        super( new ClockEvictionCache( new StoreCache("test-cache"), 3 ) );
+    }
+
+    @Test
+    public void insertOneMoreValueThanLimit_expectFirstValueInsertedToBeDropped() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertNull( cache.get("a") );
+        assertEquals( new Integer(2), cache.get("b") );
+        assertEquals( new Integer(3), cache.get("c") );
+        assertEquals( new Integer(4), cache.get("d") );
+    }
+
+    @Test
+    public void fullCache_readOldestThenInsertNewElement_expectOldestToGetASecondChance() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        cache.get( "a" );
+
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertEquals( new Integer(1), cache.get("a") );
+        assertNull( cache.get("b") );
+    }
+
+    @Test
+    public void fullCache_removeOneThenInsertNewElement_expectFreedSlotToBeReusedWithoutEviction() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        cache.remove( "b" );
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertEquals( new Integer(1), cache.get("a") );
+        assertEquals( new Integer(3), cache.get("c") );
+        assertEquals( new Integer(4), cache.get("d") );
+    }
+
+    @Test
+    public void everyEntryReferenced_insertNewElement_expectHandToWrapAroundAndEvictOldest() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        cache.get( "a" );
+        cache.get( "b" );
+        cache.get( "c" );
+
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertNull( cache.get("a") );
+    }
+
+    @Test
+    public void readersRunningAlongsideAWriter_expectSizeToStayBoundedAndReadsToBeConsistent() throws InterruptedException {
+        final Cache<Integer,Integer>     clockCache = new ClockEvictionCache( CacheFactory.threadSafeInlineMapCache("junit", Integer.class, Integer.class), 100 );
+        final AtomicBoolean              isWriting  = new AtomicBoolean( true );
+        final AtomicReference<Throwable> failure    = new AtomicReference<Throwable>();
+
+        Thread[] readers = new Thread[4];
+        for ( int t=0; t<readers.length; t++ ) {
+            readers[t] = new Thread() {
+                public void run() {
+                    try {
+                        int i = 0;
+                        while ( isWriting.get() ) {
+                            Integer key   = i++ % 1000;
+                            Integer value = clockCache.get( key );
+
+                            if ( value != null ) {
+                                assertEquals( new Integer(key*2), value );
+                            }
+                        }
+                    } catch ( Throwable e ) {
+                        failure.set( e );
+                    }
+                }
+            };
+
+            readers[t].start();
+        }
+
+        for ( int i=0; i<20000; i++ ) {
+            Integer key = i % 1000;
+
+            clockCache.put( key, key*2 );
+        }
+
+        isWriting.set( false );
+
+        for ( Thread t : readers ) {
+            t.join();
+        }
+
+        assertNull( failure.get() );
+        assertEquals( 100, clockCache.size() );
+    }
+}
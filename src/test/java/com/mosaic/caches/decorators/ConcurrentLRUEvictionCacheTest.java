@@ -0,0 +1,120 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.CacheFactory;
+import com.mosaic.caches.impl.BasicCacheTestCases;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class ConcurrentLRUEvictionCacheTest extends BasicCacheTestCases {
+
+    public ConcurrentLRUEvictionCacheTest() {
+        super( CacheFactory.threadSafeLRUCache("junit", String.class, Integer.class, 3) );
+    }
+
+    @Test
+    public void insertOneMoreValueThanLimit_expectFirstValueInsertedToBeDropped() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertNull( cache.get("a") );
+        assertEquals( new Integer(2), cache.get("b") );
+        assertEquals( new Integer(3), cache.get("c") );
+        assertEquals( new Integer(4), cache.get("d") );
+    }
+
+    @Test
+    public void fullCache_readOldestThenInsertNewElement_expectBufferedReadToBeReplayedBeforeEviction() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        cache.get( "a" );
+
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertEquals( new Integer(1), cache.get("a") );
+        assertNull( cache.get("b") );
+    }
+
+    @Test
+    public void manyMoreReadsThanTheBufferHolds_expectLRUOrderToBeKept() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        for ( int i=0; i<1000; i++ ) {
+            cache.get( "c" );
+            cache.get( "a" );
+        }
+
+        cache.put( "d", 4 );
+
+        assertNull( cache.get("b") );
+        assertEquals( new Integer(1), cache.get("a") );
+        assertEquals( new Integer(3), cache.get("c") );
+    }
+
+    @Test
+    public void manyThreadsReadingAndWriting_expectSizeToStayBoundedAndReadsToBeConsistent() throws InterruptedException {
+        final Cache<Integer,Integer>     lruCache   = CacheFactory.threadSafeLRUCache( "junit", Integer.class, Integer.class, 100 );
+        final int                        numThreads = 8;
+        final CountDownLatch             startLatch = new CountDownLatch( 1 );
+        final AtomicBoolean              isRunning  = new AtomicBoolean( true );
+        final AtomicReference<Throwable> failure    = new AtomicReference<Throwable>();
+
+        Thread[] threads = new Thread[numThreads];
+        for ( int t=0; t<numThreads; t++ ) {
+            final boolean isWriter = t % 4 == 0;
+
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        startLatch.await();
+
+                        for ( int i=0; isRunning.get(); i++ ) {
+                            Integer key = (i * 7919) % 1000;
+
+                            if ( isWriter ) {
+                                lruCache.put( key, key*2 );
+                            } else {
+                                Integer value = lruCache.get( key );
+
+                                if ( value != null ) {
+                                    assertEquals( new Integer(key*2), value );
+                                }
+                            }
+                        }
+                    } catch ( Throwable e ) {
+                        failure.set( e );
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        startLatch.countDown();
+        Thread.sleep( 500 );
+        isRunning.set( false );
+
+        for ( Thread t : threads ) {
+            t.join();
+        }
+
+        assertNull( failure.get() );
+        assertEquals( 100, lruCache.size() );
+    }
+}
@@ -1,8 +1,11 @@
 package com.mosaic.caches.decorators;
 
+import com.mosaic.caches.Weigher;
 import com.mosaic.caches.impl.BasicCacheTestCases;
 import com.mosaic.caches.impl.StoreCache;
 import org.junit.Test;
+
+import java.util.Arrays;
 import static org.junit.Assert.*;
 
 /**
@@ -64,4 +67,112 @@ public class LRUEvictionCacheTest extends BasicCacheTestCases {
         assertEquals( new Integer(4), cache.get("d") );
     }
 
+    @Test
+    public void fullCache_getAllOfTheTailThenInsertNewElement_ensureSecondOldestValueRemoved() {
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        cache.getAll( Arrays.asList("a") );
+
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertEquals( new Integer(1), cache.get("a") );
+        assertEquals( null, cache.get("b") );
+    }
+
+    @Test
+    public void weighedCache_insertValuesHeavierThanTheLimit_expectLeastRecentlyUsedToBeDroppedUntilTheyFit() {
+        LRUEvictionCache<String,Integer> weighedCache = new LRUEvictionCache( new StoreCache("test-cache"), 10, new ValueWeigher() );
+
+        weighedCache.put( "a", 5 );
+        weighedCache.put( "b", 3 );
+        weighedCache.put( "c", 2 );
+
+        assertEquals( 10, weighedCache.weightedSize() );
+
+        weighedCache.put( "d", 4 );
+
+        assertEquals( 9, weighedCache.weightedSize() );
+        assertEquals( null, weighedCache.get("a") );
+        assertEquals( new Integer(3), weighedCache.get("b") );
+    }
+
+    @Test
+    public void weighedCache_replaceValueWithAHeavierOne_expectWeightRecomputedAndOtherValuesEvicted() {
+        LRUEvictionCache<String,Integer> weighedCache = new LRUEvictionCache( new StoreCache("test-cache"), 10, new ValueWeigher() );
+
+        weighedCache.put( "a", 2 );
+        weighedCache.put( "b", 3 );
+        weighedCache.put( "c", 4 );
+
+        weighedCache.put( "b", 8 );
+
+        assertEquals( 1, weighedCache.size() );
+        assertEquals( 8, weighedCache.weightedSize() );
+        assertEquals( new Integer(8), weighedCache.get("b") );
+    }
+
+    @Test
+    public void weighedCache_removeValue_expectItsWeightToBeReleased() {
+        LRUEvictionCache<String,Integer> weighedCache = new LRUEvictionCache( new StoreCache("test-cache"), 10, new ValueWeigher() );
+
+        weighedCache.put( "a", 6 );
+        weighedCache.remove( "a" );
+        weighedCache.put( "b", 7 );
+
+        assertEquals( 7, weighedCache.weightedSize() );
+        assertEquals( new Integer(7), weighedCache.get("b") );
+    }
+
+    @Test
+    public void weighedCache_insertValueHeavierThanTheWholeCache_expectItNotToBeCachedAndNothingEvicted() {
+        LRUEvictionCache<String,Integer> weighedCache = new LRUEvictionCache( new StoreCache("test-cache"), 10, new ValueWeigher() );
+
+        weighedCache.put( "a", 4 );
+        weighedCache.put( "b", 5 );
+
+        assertEquals( null, weighedCache.put("c", 11) );
+
+        assertEquals( 9, weighedCache.weightedSize() );
+        assertEquals( 2, weighedCache.size() );
+        assertEquals( null, weighedCache.get("c") );
+        assertEquals( new Integer(4), weighedCache.get("a") );
+    }
+
+    @Test
+    public void weighedCache_replaceValueWithOneHeavierThanTheWholeCache_expectEntryToBeRemoved() {
+        LRUEvictionCache<String,Integer> weighedCache = new LRUEvictionCache( new StoreCache("test-cache"), 10, new ValueWeigher() );
+
+        weighedCache.put( "a", 4 );
+        weighedCache.put( "b", 5 );
+
+        assertEquals( new Integer(5), weighedCache.put("b", 11) );
+
+        assertEquals( 4, weighedCache.weightedSize() );
+        assertEquals( null, weighedCache.get("b") );
+        assertEquals( new Integer(4), weighedCache.get("a") );
+    }
+
+    @Test
+    public void weighedCache_weigherReturnsNegativeWeight_expectException() {
+        LRUEvictionCache<String,Integer> weighedCache = new LRUEvictionCache( new StoreCache("test-cache"), 10, new ValueWeigher() );
+
+        try {
+            weighedCache.put( "a", -1 );
+            fail( "expected IllegalArgumentException" );
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+
+        assertEquals( 0, weighedCache.weightedSize() );
+        assertEquals( 0, weighedCache.size() );
+    }
+
+    private static class ValueWeigher implements Weigher<String,Integer> {
+        public int weigh( String key, Integer value ) {
+            return value;
+        }
+    }
 }
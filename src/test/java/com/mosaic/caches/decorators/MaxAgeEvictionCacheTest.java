@@ -1,16 +1,27 @@
 package com.mosaic.caches.decorators;
 
+import com.mosaic.caches.Cache;
 import com.mosaic.caches.CacheFactory;
+import com.mosaic.caches.Fetcher;
 import com.mosaic.caches.impl.BasicCacheTestCases;
 import com.mosaic.caches.util.HashWheel;
+import com.mosaic.caches.util.ManualClock;
 import com.mosaic.jtunit.TestTools;
 import org.junit.Test;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 /**
  *
@@ -66,4 +77,241 @@ public class MaxAgeEvictionCacheTest extends BasicCacheTestCases {
         assertNull( cache.get("b") );
     }
 
+    @Test
+    public void backgroundExpiry_waitTTLPeriodWithoutTouchingTheCache_expectSchedulerToRemoveEntry() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            Cache<String,Integer> bgCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 20, new HashWheel(System.currentTimeMillis(),4,16), scheduler, 5 );
+
+            bgCache.put( "a", 42 );
+
+            long startMillis = System.currentTimeMillis();
+            while ( bgCache.size() > 0 && System.currentTimeMillis()-startMillis < 5000 ) {
+                Thread.sleep( 5 );
+            }
+
+            assertEquals( 0, bgCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void backgroundExpiryStopped_waitTTLPeriod_expectGetToFindEntryExpired() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            MaxAgeEvictionCache bgCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 10, new HashWheel(System.currentTimeMillis(),4,16), scheduler, 5 );
+            bgCache.stopBackgroundExpiry();
+
+            bgCache.put( "a", 42 );
+            Thread.sleep( 20 );
+
+            assertEquals( 1, bgCache.size() );
+            assertNull( bgCache.get("a") );
+            assertEquals( 0, bgCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void backgroundExpiryOfALargeBucket_expectWheelToAdvanceInSlicesThatLetRequestsIn() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            ManualClock                         clock       = new ManualClock( 1000 );
+            MaxAgeEvictionCache<String,Integer> maxAgeCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, scheduler, 60000 );
+            maxAgeCache.stopBackgroundExpiry();
+
+            int numEntries = 3*MaxAgeEvictionCache.MAX_EXPIRIES_PER_SLICE;
+            for ( int i=0; i<numEntries; i++ ) {
+                maxAgeCache.put( "k"+i, i );
+            }
+
+            clock.advanceMillis( 110 );
+            maxAgeCache.put( "fresh", 42 );
+
+            assertFalse( maxAgeCache.applyBackgroundBookKeepingSlice(clock.currentTimeMillis()) );
+            assertEquals( numEntries + 1 - MaxAgeEvictionCache.MAX_EXPIRIES_PER_SLICE, maxAgeCache.size() );
+
+            assertEquals( new Integer(42), maxAgeCache.get("fresh") );   // the lock is free between slices
+
+            while ( !maxAgeCache.applyBackgroundBookKeepingSlice(clock.currentTimeMillis()) ) {}
+
+            assertEquals( 1, maxAgeCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void manualClock_readJustBeforeMaxAge_expectReadNotToExtendLife() {
+        ManualClock           clock       = new ManualClock( 1000 );
+        Cache<String,Integer> maxAgeCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock );
+
+        maxAgeCache.put( "a", 42 );
+
+        clock.advanceMillis( 90 );
+        assertEquals( new Integer(42), maxAgeCache.get("a") );
+
+        clock.advanceMillis( 20 );
+        assertNull( maxAgeCache.get("a") );
+        assertEquals( 0, maxAgeCache.size() );
+    }
+
+    @Test
+    public void refreshAhead_getOrFetchAfterRefreshAge_expectStaleValueAndOneReload() {
+        ManualClock           clock       = new ManualClock( 1000 );
+        QueuedExecutor        executor    = new QueuedExecutor();
+        CountingFetcher       fetcher     = new CountingFetcher();
+        Cache<String,Integer> maxAgeCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, 60, executor );
+
+        assertEquals( new Integer(1), maxAgeCache.getOrFetch("a", fetcher) );
+
+        clock.advanceMillis( 50 );
+        assertEquals( new Integer(1), maxAgeCache.getOrFetch("a", fetcher) );
+        assertEquals( 0, executor.tasks.size() );
+
+        clock.advanceMillis( 20 );
+        assertEquals( new Integer(1), maxAgeCache.getOrFetch("a", fetcher) );
+        assertEquals( new Integer(1), maxAgeCache.getOrFetch("a", fetcher) );
+        assertEquals( 1, executor.tasks.size() );
+        assertEquals( 1, fetcher.fetchCount );
+
+        executor.runAll();
+        assertEquals( 2, fetcher.fetchCount );
+        assertEquals( new Integer(2), maxAgeCache.get("a") );
+
+        clock.advanceMillis( 90 );     // past the original max age, but within the refreshed one
+        assertEquals( new Integer(2), maxAgeCache.get("a") );
+
+        clock.advanceMillis( 20 );
+        assertNull( maxAgeCache.get("a") );
+    }
+
+    @Test
+    public void refreshAhead_entryReplacedBeforeReloadCompletes_expectReloadToBeDropped() {
+        ManualClock           clock       = new ManualClock( 1000 );
+        QueuedExecutor        executor    = new QueuedExecutor();
+        CountingFetcher       fetcher     = new CountingFetcher();
+        Cache<String,Integer> maxAgeCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, 60, executor );
+
+        maxAgeCache.getOrFetch( "a", fetcher );
+
+        clock.advanceMillis( 70 );
+        maxAgeCache.getOrFetch( "a", fetcher );
+
+        maxAgeCache.put( "a", 42 );
+        executor.runAll();
+
+        assertEquals( 2, fetcher.fetchCount );
+        assertEquals( new Integer(42), maxAgeCache.get("a") );
+    }
+
+    @Test
+    public void refreshAhead_reloadFails_expectEntryToKeepAgeingAndNextReadToRetry() {
+        ManualClock           clock       = new ManualClock( 1000 );
+        QueuedExecutor        executor    = new QueuedExecutor();
+        CountingFetcher       fetcher     = new CountingFetcher();
+        Cache<String,Integer> maxAgeCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, 60, executor );
+
+        maxAgeCache.getOrFetch( "a", fetcher );
+
+        clock.advanceMillis( 70 );
+        fetcher.isFailing = true;
+        maxAgeCache.getOrFetch( "a", fetcher );
+
+        try {
+            executor.runAll();
+            fail( "expected the reload to fail" );
+        } catch ( IllegalStateException e ) {
+            // expected
+        }
+
+        assertEquals( new Integer(1), maxAgeCache.getOrFetch("a", fetcher) );
+        assertEquals( 1, executor.tasks.size() );
+
+        clock.advanceMillis( 40 );
+        assertNull( maxAgeCache.get("a") );
+    }
+
+    @Test
+    public void refreshAhead_entryReachesMaxAgeBeforeReloadCompletes_expectReloadToBeDropped() {
+        ManualClock           clock       = new ManualClock( 1000 );
+        QueuedExecutor        executor    = new QueuedExecutor();
+        CountingFetcher       fetcher     = new CountingFetcher();
+        Cache<String,Integer> maxAgeCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, 60, executor );
+
+        maxAgeCache.getOrFetch( "a", fetcher );
+
+        clock.advanceMillis( 70 );
+        maxAgeCache.getOrFetch( "a", fetcher );
+
+        clock.advanceMillis( 40 );
+        executor.runAll();
+
+        assertEquals( 2, fetcher.fetchCount );
+        assertNull( maxAgeCache.get("a") );
+    }
+
+    @Test
+    public void refreshAhead_executorRejectsReload_expectCurrentValueAndRetryOnNextRead() {
+        ManualClock           clock       = new ManualClock( 1000 );
+        QueuedExecutor        executor    = new QueuedExecutor();
+        CountingFetcher       fetcher     = new CountingFetcher();
+        Cache<String,Integer> maxAgeCache = new MaxAgeEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, 60, executor );
+
+        maxAgeCache.getOrFetch( "a", fetcher );
+
+        clock.advanceMillis( 70 );
+        executor.isRejecting = true;
+        assertEquals( new Integer(1), maxAgeCache.getOrFetch("a", fetcher) );
+        assertEquals( 0, executor.tasks.size() );
+
+        executor.isRejecting = false;
+        assertEquals( new Integer(1), maxAgeCache.getOrFetch("a", fetcher) );
+        assertEquals( 1, executor.tasks.size() );
+
+        executor.runAll();
+        assertEquals( new Integer(2), maxAgeCache.get("a") );
+    }
+
+
+    /**
+     * Holds tasks until the test chooses to run them.
+     */
+    private static class QueuedExecutor implements Executor {
+        public final List<Runnable> tasks = new ArrayList<Runnable>();
+        public       boolean        isRejecting;
+
+        public void execute( Runnable task ) {
+            if ( isRejecting ) {
+                throw new RejectedExecutionException( "executor saturated" );
+            }
+
+            tasks.add( task );
+        }
+
+        public void runAll() {
+            while ( !tasks.isEmpty() ) {
+                tasks.remove( 0 ).run();
+            }
+        }
+    }
+
+    private static class CountingFetcher implements Fetcher<String,Integer> {
+        public int     fetchCount;
+        public boolean isFailing;
+
+        public Integer fetch( String key ) {
+            if ( isFailing ) {
+                throw new IllegalStateException( "reload failed" );
+            }
+
+            return ++fetchCount;
+        }
+    }
+
 }
@@ -0,0 +1,83 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.impl.BasicCacheTestCases;
+import com.mosaic.caches.stores.InlineArrayMapStore;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings("unchecked")
+public class SampledLRUEvictionCacheTest extends BasicCacheTestCases {
+
+    public SampledLRUEvictionCacheTest() {
+        super( new SampledLRUEvictionCache( "test-cache", new InlineArrayMapStore(), 1000 ) );
+    }
+
+    @Test
+    public void insertOneMoreValueThanLimit_expectLeastRecentlyUsedValueToBeDropped() {
+        // with this many samples from three entries, missing the oldest is vanishingly unlikely
+        Cache<String,Integer> lru = new SampledLRUEvictionCache( "test-cache", new InlineArrayMapStore(), 3, 64 );
+
+        lru.put( "a", 1 );
+        lru.put( "b", 2 );
+        lru.put( "c", 3 );
+
+        lru.get( "a" );
+
+        lru.put( "d", 4 );
+
+        assertEquals( 3, lru.size() );
+        assertEquals( new Integer(1), lru.get("a") );
+        assertNull( lru.get("b") );
+        assertEquals( new Integer(3), lru.get("c") );
+        assertEquals( new Integer(4), lru.get("d") );
+    }
+
+    @Test
+    public void insertManyMoreValuesThanLimit_expectSizeToNeverExceedLimit() {
+        Cache<String,Integer> lru = new SampledLRUEvictionCache( "test-cache", new InlineArrayMapStore(), 100 );
+
+        for ( int i=0; i<1000; i++ ) {
+            lru.put( "k"+i, i );
+
+            assertTrue( lru.size() <= 100 );
+        }
+
+        assertEquals( 100, lru.size() );
+        assertEquals( new Integer(999), lru.get("k999") );
+    }
+
+    @Test
+    public void readHotKeyBetweenEveryInsert_expectHotKeyToSurvive() {
+        Cache<String,Integer> lru = new SampledLRUEvictionCache( "test-cache", new InlineArrayMapStore(), 100 );
+
+        lru.put( "hot", -1 );
+
+        for ( int i=0; i<1000; i++ ) {
+            lru.put( "k"+i, i );
+
+            assertEquals( new Integer(-1), lru.get("hot") );
+        }
+    }
+
+    @Test
+    public void fullCache_removeOneThenInsertNewElement_expectNoEviction() {
+        Cache<String,Integer> lru = new SampledLRUEvictionCache( "test-cache", new InlineArrayMapStore(), 3 );
+
+        lru.put( "a", 1 );
+        lru.put( "b", 2 );
+        lru.put( "c", 3 );
+
+        lru.remove( "b" );
+        lru.put( "d", 4 );
+
+        assertEquals( 3, lru.size() );
+        assertEquals( new Integer(1), lru.get("a") );
+        assertEquals( new Integer(3), lru.get("c") );
+        assertEquals( new Integer(4), lru.get("d") );
+    }
+}
@@ -0,0 +1,131 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BasicCacheTestCases;
+import com.mosaic.caches.impl.StoreCache;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings("unchecked")
+public class SingleFlightCacheTest extends BasicCacheTestCases {
+
+    public SingleFlightCacheTest() {
+        super( new SingleFlightCache( new SynchronizedCache(new StoreCache("test-cache")) ) );
+    }
+
+    @Test
+    public void manyThreadsMissOnTheSameKey_expectOneFetchWhoseResultIsShared() throws InterruptedException {
+        final int                        numThreads   = 8;
+        final CountDownLatch             fetchStarted = new CountDownLatch( 1 );
+        final CountDownLatch             releaseFetch = new CountDownLatch( 1 );
+        final AtomicInteger              fetchCount   = new AtomicInteger();
+        final AtomicInteger              resultTotal  = new AtomicInteger();
+        final AtomicReference<Throwable> failure      = new AtomicReference<Throwable>();
+
+        final Fetcher<String,Integer> slowFetcher = new Fetcher<String,Integer>() {
+            public Integer fetch( String key ) {
+                fetchCount.incrementAndGet();
+                fetchStarted.countDown();
+
+                try {
+                    releaseFetch.await();
+                } catch ( InterruptedException e ) {
+                    throw new IllegalStateException( e );
+                }
+
+                return 42;
+            }
+        };
+
+        Thread[] threads = new Thread[numThreads];
+        for ( int t=0; t<numThreads; t++ ) {
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        resultTotal.addAndGet( cache.getOrFetch("a", slowFetcher) );
+                    } catch ( Throwable e ) {
+                        failure.set( e );
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        fetchStarted.await();
+        Thread.sleep( 50 );          // give the other threads time to pile up behind the fetch
+        releaseFetch.countDown();
+
+        for ( Thread t : threads ) {
+            t.join();
+        }
+
+        assertNull( failure.get() );
+        assertEquals( 1, fetchCount.get() );
+        assertEquals( numThreads*42, resultTotal.get() );
+        assertEquals( new Integer(42), cache.get("a") );
+    }
+
+    @Test
+    public void fetchOfOneKeyInFlight_fetchAnotherKey_expectSecondFetchNotToWaitForTheFirst() throws InterruptedException {
+        final CountDownLatch releaseFetch = new CountDownLatch( 1 );
+
+        Thread blockedFetch = new Thread() {
+            public void run() {
+                cache.getOrFetch( "a", new Fetcher<String,Integer>() {
+                    public Integer fetch( String key ) {
+                        try {
+                            releaseFetch.await();
+                        } catch ( InterruptedException e ) {
+                            throw new IllegalStateException( e );
+                        }
+
+                        return 1;
+                    }
+                } );
+            }
+        };
+
+        blockedFetch.start();
+
+        assertEquals( new Integer(2), cache.getOrFetch("b", new Fetcher<String,Integer>() {
+            public Integer fetch( String key ) {
+                return 2;
+            }
+        }) );
+
+        releaseFetch.countDown();
+        blockedFetch.join();
+
+        assertEquals( new Integer(1), cache.get("a") );
+    }
+
+    @Test
+    public void fetcherThrowsException_expectExceptionPropagatedAndNextCallToFetchAgain() {
+        try {
+            cache.getOrFetch( "a", new Fetcher<String,Integer>() {
+                public Integer fetch( String key ) {
+                    throw new IllegalStateException( "backend down" );
+                }
+            } );
+
+            fail( "expected IllegalStateException" );
+        } catch ( IllegalStateException e ) {
+            assertEquals( "backend down", e.getMessage() );
+        }
+
+        assertEquals( new Integer(3), cache.getOrFetch("a", new Fetcher<String,Integer>() {
+            public Integer fetch( String key ) {
+                return 3;
+            }
+        }) );
+    }
+}
@@ -1,13 +1,19 @@
 package com.mosaic.caches.decorators;
 
+import com.mosaic.caches.Cache;
 import com.mosaic.caches.CacheFactory;
+import com.mosaic.caches.Expiry;
 import com.mosaic.caches.impl.BasicCacheTestCases;
 import com.mosaic.caches.util.HashWheel;
+import com.mosaic.caches.util.HierarchicalHashWheel;
+import com.mosaic.caches.util.ManualClock;
 import com.mosaic.jtunit.TestTools;
 import org.junit.Test;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.junit.Assert.*;
 
@@ -31,6 +37,21 @@ public class TTLEvictionCacheTest extends BasicCacheTestCases {
         assertNull( cache.get( "a" ) );
     }
 
+    @Test
+    public void useHierarchicalWheel_waitTTLPeriod_expectGetToReturnNull() throws InterruptedException {
+        // the ttl reaches past the finest wheel's 16ms span, so the entry expires via a coarser wheel
+        Cache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 50, new HierarchicalHashWheel(System.currentTimeMillis(),4,4,3) );
+
+        ttlCache.put( "a", 42 );
+
+        assertEquals( new Integer(42), ttlCache.get("a") );
+
+        Thread.sleep(70);
+
+        assertNull( ttlCache.get( "a" ) );
+        assertEquals( 0, ttlCache.size() );
+    }
+
     @Test
     public void waitTTLPeriod_callGetExpectValueToGetGCd() throws InterruptedException {
         Integer value = new Integer(42);
@@ -71,4 +92,308 @@ public class TTLEvictionCacheTest extends BasicCacheTestCases {
         }
     }
 
+    @Test
+    public void backgroundExpiry_waitTTLPeriodWithoutTouchingTheCache_expectSchedulerToRemoveEntry() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            Cache<String,Integer> bgCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 20, new HashWheel(System.currentTimeMillis(),4,16), scheduler, 5 );
+
+            bgCache.put( "a", 42 );
+
+            long startMillis = System.currentTimeMillis();
+            while ( bgCache.size() > 0 && System.currentTimeMillis()-startMillis < 5000 ) {
+                Thread.sleep( 5 );
+            }
+
+            assertEquals( 0, bgCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void backgroundExpiryStopped_waitTTLPeriod_expectGetToFindEntryExpired() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            TTLEvictionCache bgCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 10, new HashWheel(System.currentTimeMillis(),4,16), scheduler, 5 );
+            bgCache.stopBackgroundExpiry();
+
+            bgCache.put( "a", 42 );
+            Thread.sleep( 20 );
+
+            assertEquals( 1, bgCache.size() );
+            assertNull( bgCache.get("a") );
+            assertEquals( 0, bgCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void backgroundExpiry_keepReadingWithinTTLPeriod_expectReadsToKeepEntryAlive() throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            Cache<String,Integer> bgCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 200, new HashWheel(System.currentTimeMillis(),4,16), scheduler, 5 );
+
+            bgCache.put( "a", 42 );
+
+            for ( int i=0; i<6; i++ ) {
+                long readMillis = System.currentTimeMillis();
+                Thread.sleep( 50 );
+
+                if ( System.currentTimeMillis()-readMillis >= 200 ) {   // avoid flickering on heavily loaded CI machines
+                    return;
+                }
+
+                assertEquals( new Integer(42), bgCache.get("a") );
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void backgroundExpiryOfALargeBucket_expectWheelToAdvanceInSlicesThatLetRequestsIn() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            ManualClock                      clock    = new ManualClock( 1000 );
+            TTLEvictionCache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, scheduler, 60000 );
+            ttlCache.stopBackgroundExpiry();
+
+            int numEntries = 3*TTLEvictionCache.MAX_EXPIRIES_PER_SLICE;
+            for ( int i=0; i<numEntries; i++ ) {
+                ttlCache.put( "k"+i, i );
+            }
+
+            clock.advanceMillis( 110 );
+            ttlCache.put( "fresh", 42 );
+
+            assertFalse( ttlCache.applyBackgroundBookKeepingSlice(clock.currentTimeMillis()) );
+            assertEquals( numEntries + 1 - TTLEvictionCache.MAX_EXPIRIES_PER_SLICE, ttlCache.size() );
+
+            assertEquals( new Integer(42), ttlCache.get("fresh") );   // the lock is free between slices
+
+            while ( !ttlCache.applyBackgroundBookKeepingSlice(clock.currentTimeMillis()) ) {}
+
+            assertEquals( 1, ttlCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void manualClock_readJustBeforeTTLExpires_expectReadToExtendLife() {
+        ManualClock           clock    = new ManualClock( 1000 );
+        Cache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock );
+
+        ttlCache.put( "a", 42 );
+        ttlCache.put( "b", 12 );
+
+        clock.advanceMillis( 90 );
+        assertEquals( new Integer(42), ttlCache.get("a") );
+
+        clock.advanceMillis( 90 );
+        assertEquals( new Integer(42), ttlCache.get("a") );
+        assertNull( ttlCache.get("b") );
+
+        clock.advanceMillis( 110 );
+        assertNull( ttlCache.get("a") );
+        assertEquals( 0, ttlCache.size() );
+    }
+
+    @Test
+    public void manualClockWithBackgroundExpiry_readJustBeforeTTLExpires_expectReadToExtendLife() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            ManualClock      clock    = new ManualClock( 1000 );
+            TTLEvictionCache ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), 100, new HashWheel(clock.currentTimeMillis(),4,16), clock, scheduler, 60000 );
+            ttlCache.stopBackgroundExpiry();
+
+            ttlCache.put( "a", 42 );
+            ttlCache.put( "b", 12 );
+
+            clock.advanceMillis( 90 );
+            assertEquals( new Integer(42), ttlCache.get("a") );
+
+            clock.advanceMillis( 90 );
+            assertEquals( new Integer(42), ttlCache.get("a") );
+            assertNull( ttlCache.get("b") );
+
+            clock.advanceMillis( 110 );
+            assertNull( ttlCache.get("a") );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void expiryPerEntry_expectEachEntryToExpireAfterItsOwnLifetime() {
+        ManualClock           clock    = new ManualClock( 1000 );
+        Cache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), new LifetimeByValueExpiry(), new HashWheel(clock.currentTimeMillis(),4,16), clock );
+
+        ttlCache.put( "quote", 200 );
+        ttlCache.put( "ref", 3600000 );
+
+        clock.advanceMillis( 210 );
+        assertNull( ttlCache.get("quote") );
+        assertEquals( new Integer(3600000), ttlCache.get("ref") );
+
+        clock.advanceMillis( 3600000 );
+        assertNull( ttlCache.get("ref") );
+        assertEquals( 0, ttlCache.size() );
+    }
+
+    @Test
+    public void expiryPerEntry_updateEntry_expectUpdateToChangeItsLifetime() {
+        ManualClock           clock    = new ManualClock( 1000 );
+        Cache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), new LifetimeByValueExpiry(), new HashWheel(clock.currentTimeMillis(),4,16), clock );
+
+        ttlCache.put( "a", 3600000 );
+        assertEquals( new Integer(3600000), ttlCache.put("a", 200) );
+
+        clock.advanceMillis( 210 );
+        assertNull( ttlCache.get("a") );
+        assertEquals( 0, ttlCache.size() );
+    }
+
+    @Test
+    public void expiryPerEntry_readsLeaveDurationUnchanged_expectEntryToExpireDespiteReads() {
+        ManualClock           clock    = new ManualClock( 1000 );
+        Cache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), new LifetimeByValueExpiry(), new HashWheel(clock.currentTimeMillis(),4,16), clock );
+
+        ttlCache.put( "a", 100 );
+
+        clock.advanceMillis( 60 );
+        assertEquals( new Integer(100), ttlCache.get("a") );
+
+        clock.advanceMillis( 60 );
+        assertNull( ttlCache.get("a") );
+    }
+
+    @Test
+    public void expiryPerEntryWithBackgroundExpiry_updateShortensLifetime_expectSchedulerToRemoveEntryEarly() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            ManualClock      clock    = new ManualClock( 1000 );
+            HashWheel        wheel    = new HashWheel( clock.currentTimeMillis(), 4, 16 );
+            TTLEvictionCache ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), new LifetimeByValueExpiry(), wheel, clock, scheduler, 60000 );
+            ttlCache.stopBackgroundExpiry();
+
+            ttlCache.put( "a", 3600000 );
+            ttlCache.put( "a", 200 );
+
+            clock.advanceMillis( 210 );
+            wheel.applyBookKeeping( clock.currentTimeMillis() );
+
+            assertEquals( 0, ttlCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void expiryReturnsMaxValue_expectEntryNeverToExpire() {
+        ManualClock           clock    = new ManualClock( 1000 );
+        Cache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), new FixedDurationExpiry(Long.MAX_VALUE), new HashWheel(clock.currentTimeMillis(),4,16), clock );
+
+        ttlCache.put( "a", 1 );
+        assertEquals( new Integer(1), ttlCache.get("a") );
+
+        clock.advanceMillis( 365L*24*60*60*1000 );
+        assertEquals( new Integer(1), ttlCache.get("a") );
+        assertEquals( 1, ttlCache.size() );
+    }
+
+    @Test
+    public void expiryReturnsMaxValueWithBackgroundExpiry_expectEntryNeverToExpire() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            ManualClock      clock    = new ManualClock( 1000 );
+            TTLEvictionCache ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), new FixedDurationExpiry(Long.MAX_VALUE), new HashWheel(clock.currentTimeMillis(),4,16), clock, scheduler, 60000 );
+            ttlCache.stopBackgroundExpiry();
+
+            ttlCache.put( "a", 1 );
+            assertEquals( 1, ttlCache.get("a") );
+
+            clock.advanceMillis( 365L*24*60*60*1000 );
+            while ( !ttlCache.applyBackgroundBookKeepingSlice(clock.currentTimeMillis()) ) {}
+
+            assertEquals( 1, ttlCache.get("a") );
+            assertEquals( 1, ttlCache.size() );
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void expiryReturnsNegativeDuration_expectIllegalArgumentExceptionAndNothingStored() {
+        ManualClock           clock    = new ManualClock( 1000 );
+        Cache<String,Integer> ttlCache = new TTLEvictionCache( CacheFactory.singleThreadedInlineHashMapCache("junit",String.class,Integer.class), new LifetimeByValueExpiry(), new HashWheel(clock.currentTimeMillis(),4,16), clock );
+
+        try {
+            ttlCache.put( "a", -5 );
+            fail( "expected IllegalArgumentException" );
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+
+        assertEquals( 0, ttlCache.size() );
+
+        ttlCache.put( "b", 100 );
+        try {
+            ttlCache.put( "b", -5 );
+            fail( "expected IllegalArgumentException" );
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+
+        assertEquals( new Integer(100), ttlCache.get("b") );
+    }
+
+
+    private static class FixedDurationExpiry implements Expiry<String,Integer> {
+        private final long durationMillis;
+
+        public FixedDurationExpiry( long durationMillis ) {
+            this.durationMillis = durationMillis;
+        }
+
+        public long expireAfterCreate( String key, Integer value, long nowMillis ) {
+            return durationMillis;
+        }
+
+        public long expireAfterUpdate( String key, Integer newValue, long nowMillis, long currentDurationMillis ) {
+            return durationMillis;
+        }
+
+        public long expireAfterRead( String key, Integer value, long nowMillis, long currentDurationMillis ) {
+            return durationMillis;
+        }
+    }
+
+    /**
+     * Each value is the lifetime of its entry in millis; reads do not extend it.
+     */
+    private static class LifetimeByValueExpiry implements Expiry<String,Integer> {
+        public long expireAfterCreate( String key, Integer value, long nowMillis ) {
+            return value;
+        }
+
+        public long expireAfterUpdate( String key, Integer newValue, long nowMillis, long currentDurationMillis ) {
+            return newValue;
+        }
+
+        public long expireAfterRead( String key, Integer value, long nowMillis, long currentDurationMillis ) {
+            return currentDurationMillis;
+        }
+    }
+
 }
@@ -0,0 +1,93 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.impl.BasicCacheTestCases;
+import com.mosaic.caches.impl.StoreCache;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings("unchecked")
+public class WindowTinyLFUEvictionCacheTest extends BasicCacheTestCases {
+
+    public WindowTinyLFUEvictionCacheTest() {
+        super( new WindowTinyLFUEvictionCache( new StoreCache("test-cache"), 100 ) );
+    }
+
+    @Test
+    public void insertMoreValuesThanTheLimit_expectSizeToBeCapped() {
+        for ( int i=0; i<1000; i++ ) {
+            cache.put( Integer.toString(i), i );
+        }
+
+        assertEquals( 100, cache.size() );
+    }
+
+    @Test
+    public void hotKeysThenScanOfColdKeys_expectHotKeysToSurviveTheScan() {
+        Cache<Integer,Integer> lfuCache = new WindowTinyLFUEvictionCache( new StoreCache("test-cache"), 100 );
+
+        for ( int round=0; round<5; round++ ) {
+            for ( int key=0; key<50; key++ ) {
+                lfuCache.getOrFetch( key, new IdentityFetcher() );
+            }
+        }
+
+        for ( int key=1000; key<3000; key++ ) {
+            lfuCache.put( key, key );
+        }
+
+        int numHotKeysRetained = 0;
+        for ( int key=0; key<50; key++ ) {
+            if ( lfuCache.get(key) != null ) {
+                numHotKeysRetained++;
+            }
+        }
+
+        // an LRU would have retained none of them; the sketch is approximate so allow for the odd collision
+        assertTrue( numHotKeysRetained >= 45 );
+        assertEquals( 100, lfuCache.size() );
+    }
+
+    @Test
+    public void keyReadOftenAfterFillingTheCache_expectItToBeAdmitted() {
+        Cache<Integer,Integer> lfuCache = new WindowTinyLFUEvictionCache( new StoreCache("test-cache"), 100 );
+
+        for ( int key=0; key<100; key++ ) {
+            lfuCache.put( key, key );
+        }
+
+        for ( int i=0; i<5; i++ ) {
+            lfuCache.get( 500 );
+        }
+
+        lfuCache.put( 500, 500 );
+        lfuCache.put( 501, 501 );      // pushes 500 out of the admission window
+
+        assertEquals( new Integer(500), lfuCache.get(500) );
+        assertEquals( 100, lfuCache.size() );
+    }
+
+    @Test
+    public void removeValue_expectItToLeaveTheEvictionOrder() {
+        cache.put( "a", 1 );
+        cache.remove( "a" );
+
+        for ( int i=0; i<200; i++ ) {
+            cache.put( Integer.toString(i), i );
+        }
+
+        assertEquals( 100, cache.size() );
+    }
+
+
+    private static class IdentityFetcher implements Fetcher<Integer,Integer> {
+        public Integer fetch( Integer key ) {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.mosaic.caches.decorators;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.Fetcher;
+import com.mosaic.caches.Writer;
+import com.mosaic.caches.impl.BasicCacheTestCases;
+import com.mosaic.caches.impl.StoreCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings("unchecked")
+public class WriteBehindCacheTest extends BasicCacheTestCases {
+
+    private static final ScheduledExecutorService FLUSH_SCHEDULER = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "WriteBehindCacheTest" );
+            t.setDaemon( true );
+
+            return t;
+        }
+    } );
+
+    public WriteBehindCacheTest() {
+        super( new WriteBehindCache( new SynchronizedCache(new StoreCache("test-cache")), new RecordingWriter(), FLUSH_SCHEDULER, 1000, 60000 ) );
+    }
+
+    @Test
+    public void updateKeyRepeatedlyThenFlush_expectOneWriteOfTheLatestValue() {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new StoreCache("test-cache"), writer, FLUSH_SCHEDULER, 1000, 60000 );
+
+        for ( int i=1; i<=100; i++ ) {
+            cache.put( "a", i );
+        }
+        cache.put( "b", 2 );
+
+        assertEquals( 2, cache.getDirtyCount() );
+        assertEquals( 0, writer.batchCount );
+
+        cache.flush();
+
+        assertEquals( 1, writer.batchCount );
+        assertEquals( new Integer(100), writer.writtenValues.get("a") );
+        assertEquals( new Integer(2), writer.writtenValues.get("b") );
+        assertEquals( 0, cache.getDirtyCount() );
+        assertEquals( new Integer(100), cache.get("a") );
+    }
+
+    @Test
+    public void putThenRemoveBeforeFlush_expectOnlyTheRemovalToBeWritten() {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new StoreCache("test-cache"), writer, FLUSH_SCHEDULER, 1000, 60000 );
+
+        cache.put( "a", 1 );
+        assertEquals( new Integer(1), cache.remove("a") );
+
+        cache.flush();
+
+        assertTrue( writer.writtenValues.isEmpty() );
+        assertEquals( Arrays.asList("a"), writer.removedKeys );
+    }
+
+    @Test
+    public void putIfAbsentOnExistingKey_expectNoWrite() {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new StoreCache("test-cache"), writer, FLUSH_SCHEDULER, 1000, 60000 );
+
+        cache.put( "a", 1 );
+        cache.flush();
+
+        assertEquals( new Integer(1), cache.putIfAbsent("a", 2) );
+        assertEquals( 0, cache.getDirtyCount() );
+    }
+
+    @Test
+    public void moreDirtyKeysThanBatchSize_expectFlushToWriteSeveralBatches() {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new StoreCache("test-cache"), writer, FLUSH_SCHEDULER, 2, 60000 );
+        cache.stopBackgroundFlush();
+
+        Map<String,Integer> values = new HashMap<String,Integer>();
+        for ( int i=0; i<5; i++ ) {
+            values.put( "k"+i, i );
+        }
+        cache.putAll( values );
+
+        cache.flush();
+
+        assertEquals( 3, writer.batchCount );
+        assertEquals( values, writer.writtenValues );
+    }
+
+    @Test
+    public void reachBatchSize_expectBackgroundFlushWithoutWaitingForThePeriod() throws InterruptedException {
+        final CountDownLatch flushed = new CountDownLatch( 1 );
+
+        RecordingWriter writer = new RecordingWriter() {
+            public void writeAll( Map<String,Integer> updatedValues, Collection<String> removedKeys ) {
+                super.writeAll( updatedValues, removedKeys );
+
+                flushed.countDown();
+            }
+        };
+
+        WriteBehindCache<String,Integer> cache = new WriteBehindCache( new SynchronizedCache(new StoreCache("test-cache")), writer, FLUSH_SCHEDULER, 3, 60000 );
+
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        assertTrue( flushed.await(5, TimeUnit.SECONDS) );
+        assertEquals( 3, writer.writtenValues.size() );
+
+        cache.stopBackgroundFlush();
+    }
+
+    @Test
+    public void periodElapses_expectBackgroundFlush() throws InterruptedException {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new SynchronizedCache(new StoreCache("test-cache")), writer, FLUSH_SCHEDULER, 1000, 5 );
+
+        cache.put( "a", 1 );
+
+        for ( int i=0; i<500 && cache.getDirtyCount() > 0; i++ ) {
+            Thread.sleep( 10 );
+        }
+
+        cache.stopBackgroundFlush();
+
+        assertEquals( 0, cache.getDirtyCount() );
+        assertEquals( Collections.singletonMap("a", 1), writer.writtenValues );
+    }
+
+    @Test
+    public void writerFails_expectBatchRequeuedBehindNewerWrites() {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new StoreCache("test-cache"), writer, FLUSH_SCHEDULER, 1000, 60000 );
+        cache.stopBackgroundFlush();
+
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+
+        writer.isFailing = true;
+        try {
+            cache.flush();
+            fail( "expected the writer to fail" );
+        } catch ( IllegalStateException e ) {
+            // expected
+        }
+
+        assertEquals( 2, cache.getDirtyCount() );
+
+        cache.put( "a", 10 );
+
+        writer.isFailing = false;
+        cache.flush();
+
+        assertEquals( new Integer(10), writer.writtenValues.get("a") );
+        assertEquals( new Integer(2), writer.writtenValues.get("b") );
+        assertEquals( 0, cache.getDirtyCount() );
+    }
+
+    @Test
+    public void writerFailing_expectSizeTriggeredFlushesToBackOffUntilABatchIsWritten() throws InterruptedException {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new SynchronizedCache(new StoreCache("test-cache")), writer, FLUSH_SCHEDULER, 2, 60000 );
+
+        writer.isFailing = true;
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+
+        for ( int i=0; i<500 && cache.getFlushFailureCount() == 0; i++ ) {
+            Thread.sleep( 10 );
+        }
+
+        assertEquals( 1, cache.getFlushFailureCount() );
+        assertEquals( "write failed", cache.getLastFlushFailure().getMessage() );
+
+        for ( int i=0; i<20; i++ ) {
+            cache.put( "k"+i, i );
+        }
+        Thread.sleep( 50 );
+
+        assertEquals( 1, writer.attemptCount );
+        assertEquals( 22, cache.getDirtyCount() );
+
+        writer.isFailing = false;
+        cache.stopBackgroundFlush();
+
+        assertEquals( 22, writer.writtenValues.size() );
+        assertEquals( 0, cache.getDirtyCount() );
+    }
+
+    @Test
+    public void writerThrowsError_expectBatchRequeuedAndFailureRecorded() {
+        RecordingWriter                  writer = new RecordingWriter();
+        WriteBehindCache<String,Integer> cache  = new WriteBehindCache( new StoreCache("test-cache"), writer, FLUSH_SCHEDULER, 1000, 60000 );
+        cache.stopBackgroundFlush();
+
+        cache.put( "a", 1 );
+
+        writer.errorToThrow = new StackOverflowError();
+        try {
+            cache.flush();
+            fail( "expected the writer to fail" );
+        } catch ( StackOverflowError e ) {
+            // expected
+        }
+
+        assertEquals( 1, cache.getDirtyCount() );
+        assertSame( writer.errorToThrow, cache.getLastFlushFailure() );
+
+        writer.errorToThrow = null;
+        cache.flush();
+
+        assertEquals( new Integer(1), writer.writtenValues.get("a") );
+        assertEquals( 1, cache.getFlushFailureCount() );
+    }
+
+
+    @Test
+    public void putWhileAMissIsBeingFetched_expectThePutToWinOverTheFetchedValue() throws InterruptedException {
+        RecordingWriter                        writer       = new RecordingWriter();
+        final WriteBehindCache<String,Integer> cache        = new WriteBehindCache( new StoreCache("test-cache"), writer, FLUSH_SCHEDULER, 1000, 60000 );
+        final CountDownLatch                   fetchStarted = new CountDownLatch( 1 );
+        final CountDownLatch                   fetchRelease = new CountDownLatch( 1 );
+        cache.stopBackgroundFlush();
+
+        Thread reader = new Thread() {
+            public void run() {
+                cache.getOrFetch( "a", new Fetcher<String,Integer>() {
+                    public Integer fetch( String key ) {
+                        fetchStarted.countDown();
+
+                        try {
+                            fetchRelease.await( 5, TimeUnit.SECONDS );
+                        } catch ( InterruptedException e ) {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        return 1;
+                    }
+                } );
+            }
+        };
+
+        Thread writerThread = new Thread() {
+            public void run() {
+                cache.put( "a", 2 );
+            }
+        };
+
+        reader.start();
+        assertTrue( fetchStarted.await(5, TimeUnit.SECONDS) );
+
+        writerThread.start();
+        writerThread.join( 200 );
+
+        assertTrue( "the put should wait for the fetch", writerThread.isAlive() );
+
+        fetchRelease.countDown();
+        reader.join( 5000 );
+        writerThread.join( 5000 );
+
+        cache.flush();
+
+        assertEquals( new Integer(2), cache.get("a") );
+        assertEquals( new Integer(2), writer.writtenValues.get("a") );
+    }
+
+    private static class RecordingWriter implements Writer<String,Integer> {
+        public volatile int                 batchCount;
+        public volatile int                 attemptCount;
+        public volatile boolean             isFailing;
+        public volatile Error               errorToThrow;
+        public final    Map<String,Integer> writtenValues = Collections.synchronizedMap( new HashMap<String,Integer>() );
+        public final    List<String>        removedKeys   = Collections.synchronizedList( new ArrayList<String>() );
+
+        public void writeAll( Map<String,Integer> updatedValues, Collection<String> removedKeys ) {
+            this.attemptCount++;
+
+            if ( errorToThrow != null ) {
+                throw errorToThrow;
+            } else if ( isFailing ) {
+                throw new IllegalStateException( "write failed" );
+            }
+
+            this.batchCount++;
+            this.writtenValues.putAll( updatedValues );
+            this.removedKeys.addAll( removedKeys );
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.mosaic.caches.impl;
 
+import com.mosaic.caches.BatchFetcher;
 import com.mosaic.caches.Cache;
 import com.mosaic.caches.Fetcher;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -145,6 +153,121 @@ public abstract class BasicCacheTestCases {
         assertEquals( 2, cache.size() );
     }
 
+    @Test
+    public void cacheWithTwoValues_removeOneAndTrimToSize_expectOtherValueToRemain() {
+        cache.put("a", 20);
+        cache.put("b", 10);
+
+        cache.remove( "a" );
+        cache.trimToSize();
+
+        assertEquals( 1, cache.size() );
+        assertNull( cache.get("a") );
+        assertEquals( new Integer(10), cache.get("b") );
+    }
+
+    @Test
+    public void emptyCache_getAll_expectEmptyMap() {
+        assertEquals( 0, cache.getAll(Arrays.asList("a", "b")).size() );
+    }
+
+    @Test
+    public void cacheWithTwoValues_getAllIncludingMissingKey_expectOnlyCachedValuesReturned() {
+        cache.put("a", 20);
+        cache.put("b", 10);
+
+        Map<String,Integer> found = cache.getAll( Arrays.asList("a", "b", "c") );
+
+        assertEquals( 2, found.size() );
+        assertEquals( new Integer(20), found.get("a") );
+        assertEquals( new Integer(10), found.get("b") );
+    }
+
+    @Test
+    public void emptyCache_putAll_expectEveryValueToBeStored() {
+        Map<String,Integer> newMappings = new HashMap<String,Integer>();
+        newMappings.put( "a", 1 );
+        newMappings.put( "b", 2 );
+        newMappings.put( "c", 3 );
+
+        cache.putAll( newMappings );
+
+        assertEquals( 3, cache.size() );
+        assertEquals( new Integer(1), cache.get("a") );
+        assertEquals( new Integer(2), cache.get("b") );
+        assertEquals( new Integer(3), cache.get("c") );
+    }
+
+    @Test
+    public void cacheWithThreeValues_removeAllOfTwo_expectOnlyTheThirdToRemain() {
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+
+        cache.removeAll( Arrays.asList("a", "c", "d") );
+
+        assertEquals( 1, cache.size() );
+        assertNull( cache.get("a") );
+        assertEquals( new Integer(2), cache.get("b") );
+        assertNull( cache.get("c") );
+    }
+
+    @Test
+    public void cacheWithOneValue_getAllOrFetch_expectOnlyTheMissingKeysToBeFetchedInOneBatch() {
+        cache.put("a", 20);
+
+        MyBatchFetcher      fetcher = new MyBatchFetcher();
+        Map<String,Integer> found   = cache.getAllOrFetch( Arrays.asList("a", "b", "c", "b"), fetcher );
+
+        assertEquals( 1, fetcher.batches.size() );
+        assertEquals( Arrays.asList("b", "c"), new ArrayList<String>(fetcher.batches.get(0)) );
+
+        assertEquals( 3, found.size() );
+        assertEquals( new Integer(20), found.get("a") );
+        assertEquals( new Integer(2), found.get("b") );
+        assertEquals( new Integer(3), found.get("c") );
+
+        assertEquals( 3, cache.size() );
+        assertEquals( new Integer(2), cache.get("b") );
+    }
+
+    @Test
+    public void cacheWithAllValues_getAllOrFetch_expectNoFetch() {
+        cache.put("a", 20);
+        cache.put("b", 10);
+
+        MyBatchFetcher fetcher = new MyBatchFetcher();
+
+        assertEquals( 2, cache.getAllOrFetch(Arrays.asList("a", "b"), fetcher).size() );
+        assertEquals( 0, fetcher.batches.size() );
+    }
+
+    @Test
+    public void emptyCache_getAllOrFetchKeyUnknownToTheBackend_expectKeyToBeLeftOut() {
+        Map<String,Integer> found = cache.getAllOrFetch( Arrays.asList("a", "unknown"), new MyBatchFetcher() );
+
+        assertEquals( 1, found.size() );
+        assertEquals( new Integer(1), found.get("a") );
+        assertNull( cache.get("unknown") );
+    }
+
+    private static class MyBatchFetcher implements BatchFetcher<String,Integer> {
+        private List<Collection<String>> batches = new ArrayList<Collection<String>>();
+
+        public Map<String,Integer> fetchAll( Collection<String> keys ) {
+            batches.add( keys );
+
+            Map<String,Integer> fetched = new HashMap<String,Integer>();
+            for ( String key : keys ) {
+                if ( !key.equals("unknown") ) {
+                    fetched.put( key, new MyFetcher().fetch(key) );
+                }
+            }
+
+            return fetched;
+        }
+    }
+
     private static class MyFetcher implements Fetcher<String,Integer> {
 
         public Integer fetch( String key ) {
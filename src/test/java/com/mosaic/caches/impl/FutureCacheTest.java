@@ -0,0 +1,205 @@
+package com.mosaic.caches.impl;
+
+import com.mosaic.caches.AsyncCache;
+import com.mosaic.caches.AsyncFetcher;
+import com.mosaic.caches.CacheFuture;
+import com.mosaic.caches.CacheFutureListener;
+import com.mosaic.caches.decorators.LRUEvictionCache;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings("unchecked")
+public class FutureCacheTest {
+
+    private AsyncCache<String,Integer> cache   = new FutureCache<String,Integer>( new StoreCache("junit") );
+    private PendingFetcher             fetcher = new PendingFetcher();
+
+
+    @Test
+    public void emptyCache_getAsync_expectCompletedFutureOfNull() throws Exception {
+        CacheFuture<Integer> future = cache.getAsync( "a" );
+
+        assertTrue( future.isDone() );
+        assertNull( future.get() );
+    }
+
+    @Test
+    public void emptyCache_put_expectGetAsyncToReturnCompletedValue() throws Exception {
+        cache.put( "a", 1 );
+
+        assertEquals( new Integer(1), cache.getAsync("a").get() );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void getOrFetchAsync_expectFutureToBePendingUntilTheFetchCompletes() throws Exception {
+        CacheFuture<Integer> future = cache.getOrFetchAsync( "a", fetcher );
+
+        assertFalse( future.isDone() );
+
+        fetcher.complete( "a", 10 );
+
+        assertTrue( future.isDone() );
+        assertEquals( new Integer(10), future.get() );
+        assertEquals( new Integer(10), cache.getAsync("a").get() );
+    }
+
+    @Test
+    public void fetchInFlight_getOrFetchAsyncAgain_expectTheSameFutureAndNoSecondFetch() {
+        CacheFuture<Integer> first  = cache.getOrFetchAsync( "a", fetcher );
+        CacheFuture<Integer> second = cache.getOrFetchAsync( "a", fetcher );
+
+        assertSame( first, second );
+        assertSame( first, cache.getAsync("a") );
+        assertEquals( 1, fetcher.fetchCount );
+    }
+
+    @Test
+    public void fetchFails_expectFutureToFailAndTheNextCallToFetchAgain() throws Exception {
+        CacheFuture<Integer> failed = cache.getOrFetchAsync( "a", fetcher );
+
+        fetcher.fail( "a", new IllegalStateException("backend down") );
+
+        try {
+            failed.get();
+            fail( "expected ExecutionException" );
+        } catch ( ExecutionException e ) {
+            assertEquals( "backend down", e.getCause().getMessage() );
+        }
+
+        assertEquals( 0, cache.size() );
+
+        CacheFuture<Integer> retry = cache.getOrFetchAsync( "a", fetcher );
+        fetcher.complete( "a", 11 );
+
+        assertEquals( new Integer(11), retry.get() );
+        assertEquals( 2, fetcher.fetchCount );
+    }
+
+    @Test
+    public void fetchCompletesWithNull_expectItToBeTreatedAsAMiss() throws Exception {
+        CacheFuture<Integer> future = cache.getOrFetchAsync( "a", fetcher );
+
+        fetcher.complete( "a", null );
+
+        assertNull( future.get() );
+        assertEquals( 0, cache.size() );
+
+        cache.getOrFetchAsync( "a", fetcher );
+        assertEquals( 2, fetcher.fetchCount );
+    }
+
+    @Test
+    public void putWhileFetchInFlight_thenFetchFails_expectPutValueToSurvive() throws Exception {
+        cache.getOrFetchAsync( "a", fetcher );
+        cache.put( "a", 5 );
+
+        fetcher.fail( "a", new IllegalStateException("backend down") );
+
+        assertEquals( new Integer(5), cache.getAsync("a").get() );
+    }
+
+    @Test
+    public void fetcherThrowsError_expectErrorRethrownAndTheNextCallToFetchAgain() throws Exception {
+        try {
+            cache.getOrFetchAsync( "a", new AsyncFetcher<String,Integer>() {
+                public CacheFuture<Integer> fetchAsync( String key ) {
+                    throw new AssertionError( "fetcher broken" );
+                }
+            } );
+            fail( "expected AssertionError" );
+        } catch ( AssertionError e ) {
+            assertEquals( "fetcher broken", e.getMessage() );
+        }
+
+        assertEquals( 0, cache.size() );
+
+        CacheFuture<Integer> retry = cache.getOrFetchAsync( "a", fetcher );
+        fetcher.complete( "a", 11 );
+
+        assertTrue( retry.isDone() );
+        assertEquals( new Integer(11), retry.get() );
+    }
+
+    @Test
+    public void fetcherReturnsNull_expectFailedFutureAndTheNextCallToFetchAgain() throws Exception {
+        CacheFuture<Integer> failed = cache.getOrFetchAsync( "a", new AsyncFetcher<String,Integer>() {
+            public CacheFuture<Integer> fetchAsync( String key ) {
+                return null;
+            }
+        } );
+
+        assertTrue( failed.isDone() );
+        try {
+            failed.get();
+            fail( "expected ExecutionException" );
+        } catch ( ExecutionException e ) {
+            assertTrue( e.getCause() instanceof NullPointerException );
+        }
+
+        assertEquals( 0, cache.size() );
+
+        CacheFuture<Integer> retry = cache.getOrFetchAsync( "a", fetcher );
+        fetcher.complete( "a", 11 );
+
+        assertEquals( new Integer(11), retry.get() );
+    }
+
+    @Test
+    public void completedFuture_addListener_expectListenerToBeCalledImmediately() {
+        final Integer[] notified = new Integer[1];
+
+        CacheFuture.completed( 5 ).addListener( new CacheFutureListener<Integer>() {
+            public void completed( Integer value, Throwable failure ) {
+                notified[0] = value;
+            }
+        } );
+
+        assertEquals( new Integer(5), notified[0] );
+    }
+
+    @Test
+    public void wrapLRUEvictionCache_fetchMoreKeysThanTheLimit_expectOldestFetchToBeEvicted() {
+        AsyncCache<String,Integer> lruCache = new FutureCache<String,Integer>( new LRUEvictionCache(new StoreCache("junit"), 2) );
+
+        lruCache.getOrFetchAsync( "a", fetcher );
+        lruCache.getOrFetchAsync( "b", fetcher );
+        lruCache.getOrFetchAsync( "c", fetcher );
+
+        assertEquals( 2, lruCache.size() );
+        assertTrue( lruCache.getAsync("a").isDone() );
+        assertFalse( lruCache.getAsync("b").isDone() );
+        assertFalse( lruCache.getAsync("c").isDone() );
+    }
+
+
+    private static class PendingFetcher implements AsyncFetcher<String,Integer> {
+        private Map<String,CacheFuture<Integer>> pending = new HashMap<String,CacheFuture<Integer>>();
+        private int                              fetchCount;
+
+        public CacheFuture<Integer> fetchAsync( String key ) {
+            CacheFuture<Integer> future = new CacheFuture<Integer>();
+
+            pending.put( key, future );
+            fetchCount++;
+
+            return future;
+        }
+
+        public void complete( String key, Integer value ) {
+            pending.remove( key ).complete( value );
+        }
+
+        public void fail( String key, Throwable failure ) {
+            pending.remove( key ).fail( failure );
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mosaic.caches.impl;
+
+import com.mosaic.caches.CacheFactory;
+import com.mosaic.caches.LongLongCache;
+import com.mosaic.caches.LongLongFetcher;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class LongLongStoreCacheTest {
+
+    private LongLongCache cache = CacheFactory.singleThreadedLongLongCache( "junit", -1 );
+
+    @Test
+    public void emptyCache_putIfAbsent_expectNoEntryValueAndValueToBeWritten() {
+        assertEquals( -1, cache.putIfAbsent(1, 10) );
+        assertEquals( 10, cache.get(1) );
+    }
+
+    @Test
+    public void noneEmptyCache_putIfAbsent_expectPreexistingValueToBeKept() {
+        cache.put( 1, 10 );
+
+        assertEquals( 10, cache.putIfAbsent(1, 20) );
+        assertEquals( 10, cache.get(1) );
+    }
+
+    @Test
+    public void emptyCache_getOrFetch_expectFetchedValueToBeReturnedAndStored() {
+        assertEquals( 2, cache.getOrFetch(1, new DoublingFetcher()) );
+        assertEquals( 2, cache.get(1) );
+        assertEquals( 1, cache.size() );
+    }
+
+    @Test
+    public void noneEmptyCache_getOrFetch_expectNoFetch() {
+        cache.put( 1, 0 );
+
+        assertEquals( 0, cache.getOrFetch(1, new DoublingFetcher()) );
+    }
+
+    private static class DoublingFetcher implements LongLongFetcher {
+        public long fetch( long key ) {
+            return key*2;
+        }
+    }
+}
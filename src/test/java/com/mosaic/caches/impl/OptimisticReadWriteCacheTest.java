@@ -0,0 +1,112 @@
+package com.mosaic.caches.impl;
+
+import com.mosaic.caches.Cache;
+import com.mosaic.caches.CacheFactory;
+import com.mosaic.caches.Fetcher;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class OptimisticReadWriteCacheTest extends BasicCacheTestCases {
+
+    public OptimisticReadWriteCacheTest() {
+        super( CacheFactory.optimisticReadWriteInlineMapCache("junit", String.class, Integer.class) );
+    }
+
+    @Test
+    public void fetcherWritesToTheCacheFromWithinGetOrFetch_expectReadersToKeepWaitingUntilTheOuterWriteCompletes() throws InterruptedException {
+        final Cache<String,Integer>    nestedCache = CacheFactory.optimisticReadWriteInlineMapCache( "junit", String.class, Integer.class );
+        final AtomicReference<Integer> readValue   = new AtomicReference<Integer>();
+        final AtomicBoolean            wasBlocked  = new AtomicBoolean();
+
+        Integer fetched = nestedCache.getOrFetch( "a", new Fetcher<String,Integer>() {
+            public Integer fetch( String key ) {
+                nestedCache.put( "b", 2 );
+
+                Thread reader = new Thread() {
+                    public void run() {
+                        readValue.set( nestedCache.get("b") );
+                    }
+                };
+                reader.start();
+
+                try {
+                    reader.join( 200 );
+                } catch ( InterruptedException e ) {
+                    throw new RuntimeException( e );
+                }
+
+                wasBlocked.set( reader.isAlive() );   // the outer write still holds the lock, so the reader must wait for it
+
+                return 1;
+            }
+        } );
+
+        assertEquals( new Integer(1), fetched );
+        assertTrue( "a reader went around the outer write's lock", wasBlocked.get() );
+        assertEquals( new Integer(2), nestedCache.get("b") );
+    }
+
+    @Test
+    public void readersRunningWhileTheStoreResizes_expectEveryReadToSeeEitherNothingOrTheValueWritten() throws InterruptedException {
+        final Cache<Integer,Integer>     concurrentCache = CacheFactory.optimisticReadWriteInlineMapCache( "junit", Integer.class, Integer.class );
+        final int                        numReaders      = 4;
+        final int                        numKeys         = 50000;
+        final CountDownLatch             startLatch      = new CountDownLatch( 1 );
+        final AtomicBoolean              isWriting       = new AtomicBoolean( true );
+        final AtomicReference<Throwable> failure         = new AtomicReference<Throwable>();
+
+        Thread[] readers = new Thread[numReaders];
+        for ( int t=0; t<numReaders; t++ ) {
+            readers[t] = new Thread() {
+                public void run() {
+                    try {
+                        startLatch.await();
+
+                        int i = 0;
+                        while ( isWriting.get() ) {
+                            Integer key   = i++ % numKeys;
+                            Integer value = concurrentCache.get( key );
+
+                            if ( value != null ) {
+                                assertEquals( new Integer(key*2), value );
+                            }
+                        }
+                    } catch ( Throwable e ) {
+                        failure.set( e );
+                    }
+                }
+            };
+
+            readers[t].start();
+        }
+
+        startLatch.countDown();
+
+        for ( int key=0; key<numKeys; key++ ) {
+            concurrentCache.put( key, key*2 );
+
+            if ( key % 3 == 0 ) {
+                concurrentCache.remove( key );
+            }
+        }
+
+        isWriting.set( false );
+
+        for ( Thread t : readers ) {
+            t.join();
+        }
+
+        assertNull( failure.get() );
+        assertEquals( numKeys - (numKeys+2)/3, concurrentCache.size() );
+    }
+}
@@ -2,6 +2,10 @@ package com.mosaic.caches.stores;
 
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -111,4 +115,85 @@ public abstract class BaseStoreTestCases {
             }
         }
     }
+
+    @Test
+    public void store1000Values_removeAllButTen_expectRemainingValuesToBeRetrievable() {
+        for ( int i=0; i<1000; i++ ) {
+            store.put( Long.toString(i), i, Long.toString(i).hashCode() );
+        }
+
+        for ( int i=10; i<1000; i++ ) {
+            assertEquals( new Integer(i), store.remove(Long.toString(i), Long.toString(i).hashCode()) );
+        }
+
+        assertEquals( 10, store.size() );
+
+        for ( int i=0; i<1000; i++ ) {
+            assertEquals( i < 10 ? new Integer(i) : null, store.get(Long.toString(i), Long.toString(i).hashCode()) );
+        }
+    }
+
+    @Test
+    public void store1000Values_removeMostThenTrimToSize_expectRemainingValuesToBeRetrievableAndWritable() {
+        for ( int i=0; i<1000; i++ ) {
+            store.put( Long.toString(i), i, Long.toString(i).hashCode() );
+        }
+
+        for ( int i=0; i<1000; i+=2 ) {
+            store.remove( Long.toString(i), Long.toString(i).hashCode() );
+        }
+
+        store.trimToSize();
+
+        assertEquals( 500, store.size() );
+        for ( int i=0; i<1000; i++ ) {
+            assertEquals( i%2 == 0 ? null : new Integer(i), store.get(Long.toString(i), Long.toString(i).hashCode()) );
+        }
+
+        store.put( "foo", 20, "foo".hashCode() );
+        assertEquals( new Integer(20), store.get("foo", "foo".hashCode()) );
+        assertEquals( 501, store.size() );
+    }
+
+    @Test
+    public void emptyStore_trimToSize_expectStoreToRemainUsable() {
+        store.trimToSize();
+
+        store.put( "foo", 20, "foo".hashCode() );
+
+        assertEquals( new Integer(20), store.get("foo", "foo".hashCode()) );
+    }
+
+    @Test
+    public void givenEmptyStore_sampleKey_expectNull() {
+        assertEquals( null, store.sampleKey(new Random(1)) );
+    }
+
+    @Test
+    public void givenStoreWithValuesSomeRemoved_sampleKeyRepeatedly_expectEveryRemainingKeyAndNoOthersToBeSampled() {
+        for ( int i=0; i<20; i++ ) {
+            String key = "k" + i;
+
+            store.put( key, i, key.hashCode() );
+        }
+
+        Set<String> expected = new HashSet<String>();
+        for ( int i=0; i<20; i++ ) {
+            String key = "k" + i;
+
+            if ( i % 4 == 0 ) {
+                store.remove( key, key.hashCode() );
+            } else {
+                expected.add( key );
+            }
+        }
+
+        Random      rnd     = new Random( 42 );
+        Set<String> sampled = new HashSet<String>();
+        for ( int i=0; i<5000; i++ ) {
+            sampled.add( store.sampleKey(rnd) );
+        }
+
+        assertEquals( expected, sampled );
+    }
 }
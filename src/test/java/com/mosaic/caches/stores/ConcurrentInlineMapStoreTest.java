@@ -0,0 +1,96 @@
+package com.mosaic.caches.stores;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ */
+@SuppressWarnings({"unchecked", "UnnecessaryBoxing"})
+public class ConcurrentInlineMapStoreTest extends BaseStoreTestCases {
+    public ConcurrentInlineMapStoreTest() {
+        super( new ConcurrentInlineMapStore() );
+    }
+
+    @Test
+    public void randomlyPutAndRemoveKeys_expectSameContentsAsJavaUtilHashMap() {
+        Store<Integer,Integer> store    = new ConcurrentInlineMapStore<Integer,Integer>( 2 );
+        Map<Integer,Integer>   expected = new HashMap<Integer,Integer>();
+        Random                 rnd      = new Random( 42 );
+
+        for ( int i=0; i<50000; i++ ) {
+            Integer key = rnd.nextInt( i/10 + 10 );
+
+            if ( rnd.nextInt(4) == 0 ) {
+                assertEquals( expected.remove(key), store.remove(key, key.hashCode()) );
+            } else {
+                assertEquals( expected.put(key, i), store.put(key, i, key.hashCode()) );
+            }
+        }
+
+        assertEquals( expected.size(), store.size() );
+
+        for ( int key=0; key<5010; key++ ) {
+            assertEquals( expected.get(key), store.get(key, key) );
+        }
+    }
+
+    @Test
+    public void multipleThreadsWritingTheirOwnKeysWhileTheMapResizes_expectNoWritesToBeLost() throws InterruptedException {
+        final Store<Integer,Integer>     store      = new ConcurrentInlineMapStore<Integer,Integer>( 2 );
+        final int                        numThreads = 8;
+        final int                        numKeys    = 20000;
+        final CountDownLatch             startLatch = new CountDownLatch( 1 );
+        final AtomicReference<Throwable> failure    = new AtomicReference<Throwable>();
+
+        Thread[] threads = new Thread[numThreads];
+        for ( int t=0; t<numThreads; t++ ) {
+            final int threadNumber = t;
+
+            threads[t] = new Thread() {
+                public void run() {
+                    try {
+                        startLatch.await();
+
+                        for ( int i=0; i<numKeys; i++ ) {
+                            Integer key = i*numThreads + threadNumber;
+
+                            store.put( key, i, key.hashCode() );
+
+                            if ( i % 4 == 0 ) {
+                                store.remove( key, key.hashCode() );
+                            }
+                        }
+
+                        for ( int i=0; i<numKeys; i++ ) {
+                            Integer key = i*numThreads + threadNumber;
+
+                            assertEquals( i % 4 == 0 ? null : new Integer(i), store.get(key, key.hashCode()) );
+                        }
+                    } catch ( Throwable e ) {
+                        failure.set( e );
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        startLatch.countDown();
+
+        for ( Thread t : threads ) {
+            t.join();
+        }
+
+        assertNull( failure.get() );
+        assertEquals( numThreads*numKeys*3/4, store.size() );
+    }
+}
@@ -0,0 +1,82 @@
+package com.mosaic.caches.stores;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+@SuppressWarnings({"unchecked", "UnnecessaryBoxing"})
+public class IncrementalResizeInlineMapStoreTest extends BaseStoreTestCases {
+    public IncrementalResizeInlineMapStoreTest() {
+        super( new InlineMapStore( 10, 0.25, 1, false, true ) );
+    }
+
+    @Test
+    public void exceedLoadFactor_expectResizeToBeSpreadOverSubsequentWrites() {
+        InlineMapStore<Integer,Integer> store = new InlineMapStore<Integer,Integer>( 64, 0.5, 1, false, true );
+
+        for ( int i=0; i<=32; i++ ) {
+            store.put( i, i, i );
+        }
+
+        assertTrue( store.isResizeInProgress() );
+
+        for ( int i=0; i<=32; i++ ) {
+            assertEquals( new Integer(i), store.get(i, i) );
+        }
+
+        for ( int i=0; i<8; i++ ) {
+            store.put( i, -i, i );
+        }
+
+        assertFalse( store.isResizeInProgress() );
+
+        for ( int i=0; i<=32; i++ ) {
+            assertEquals( new Integer(i < 8 ? -i : i), store.get(i, i) );
+        }
+
+        assertEquals( 33, store.size() );
+    }
+
+    @Test
+    public void randomlyPutAndRemoveClusteredKeys_expectSameContentsAsJavaUtilHashMap() {
+        verifyAgainstJavaUtilHashMap( new InlineMapStore<Integer,Integer>(10, 0.25, 1, false, true) );
+    }
+
+    @Test
+    public void robinHoodMode_randomlyPutAndRemoveClusteredKeys_expectSameContentsAsJavaUtilHashMap() {
+        verifyAgainstJavaUtilHashMap( new InlineMapStore<Integer,Integer>(10, 0.9, 0, true, true) );
+    }
+
+    private void verifyAgainstJavaUtilHashMap( Store<Integer,Integer> store ) {
+        Map<Integer,Integer> expected = new HashMap<Integer,Integer>();
+        Random               rnd      = new Random( 42 );
+
+        for ( int i=0; i<50000; i++ ) {
+            Integer key = rnd.nextInt( i/10 + 10 );
+            int     h   = key >> 2;
+
+            if ( rnd.nextInt(4) == 0 ) {
+                assertEquals( expected.remove(key), store.remove(key, h) );
+            } else {
+                assertEquals( expected.put(key, i), store.put(key, i, h) );
+            }
+
+            assertEquals( expected.get(i%100), store.get(i%100, (i%100) >> 2) );
+        }
+
+        assertEquals( expected.size(), store.size() );
+
+        for ( int key=0; key<5010; key++ ) {
+            assertEquals( expected.get(key), store.get(key, key >> 2) );
+        }
+    }
+}
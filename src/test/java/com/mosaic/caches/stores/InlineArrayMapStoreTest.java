@@ -0,0 +1,88 @@
+package com.mosaic.caches.stores;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+@SuppressWarnings({"unchecked", "UnnecessaryBoxing"})
+public class InlineArrayMapStoreTest extends BaseStoreTestCases {
+    public InlineArrayMapStoreTest() {
+        super( new InlineArrayMapStore() );
+    }
+
+    @Test
+    public void storeValuesWithCollidingHashCodes_removeHeadOfChain_expectRestOfChainToStillBeRetrievable() {
+        Store<String,Integer> store = new InlineArrayMapStore<String,Integer>( 16, 0.75 );
+
+        store.put( "a", 1, 3 );
+        store.put( "b", 2, 4 );
+        store.put( "c", 3, 3 );
+        store.put( "d", 4, 19 );
+
+        assertEquals( new Integer(1), store.remove("a", 3) );
+
+        assertEquals( null,           store.get("a", 3) );
+        assertEquals( new Integer(2), store.get("b", 4) );
+        assertEquals( new Integer(3), store.get("c", 3) );
+        assertEquals( new Integer(4), store.get("d", 19) );
+        assertEquals( 3, store.size() );
+    }
+
+    @Test
+    public void storeValuesWithCollidingHashCodesThatWrapAroundTheEndOfTheArray_removeThem_expectRestToStillBeRetrievable() {
+        Store<String,Integer> store = new InlineArrayMapStore<String,Integer>( 16, 0.75 );
+
+        store.put( "a", 1, 15 );
+        store.put( "b", 2, 31 );
+        store.put( "c", 3, 0 );
+        store.put( "d", 4, 47 );
+
+        assertEquals( new Integer(2), store.remove("b", 31) );
+        assertEquals( new Integer(1), store.remove("a", 15) );
+
+        assertEquals( new Integer(3), store.get("c", 0) );
+        assertEquals( new Integer(4), store.get("d", 47) );
+        assertEquals( 2, store.size() );
+    }
+
+    @Test
+    public void storeManyValuesWithCollidingHashCodes_forceSeveralResizes_expectAllToBeRetrievable() {
+        Store<Integer,Integer> store = new InlineArrayMapStore<Integer,Integer>();
+
+        for ( int i=0; i<1000; i++ ) {
+            store.put( i, i, i & 0xF0 );
+        }
+
+        for ( int i=0; i<1000; i++ ) {
+            assertEquals( new Integer(i), store.get(i, i & 0xF0) );
+        }
+
+        assertEquals( 1000, store.size() );
+    }
+
+    @Test
+    public void touchEntries_thenShuffleThemByRemovalAndGrowth_expectAccessTimesToMoveWithTheirEntries() {
+        InlineArrayMapStore<String,Integer> store = new InlineArrayMapStore<String,Integer>( 16, 0.75 );
+
+        store.putAndTouch( "a", 1, 3, 10 );
+        store.putAndTouch( "c", 3, 3, 30 );
+        assertEquals( new Integer(3), store.getAndTouch("c", 3, 31) );
+        assertEquals( null,           store.getAndTouch("z", 3, 99) );
+
+        store.remove( "a", 3 );   // shuffles c back into a's bucket
+
+        for ( int i=0; i<100; i++ ) {
+            store.putAndTouch( "k"+i, i, i, 1000+i );
+        }
+
+        assertEquals( 31, store.accessTimeOf("c", 3) );
+        assertEquals( 1042, store.accessTimeOf("k42", 42) );
+        assertEquals( 0, store.accessTimeOf("a", 3) );
+
+        store.put( "c", 33, 3 );
+        assertEquals( 31, store.accessTimeOf("c", 3) );
+    }
+}
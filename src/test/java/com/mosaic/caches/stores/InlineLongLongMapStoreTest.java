@@ -0,0 +1,95 @@
+package com.mosaic.caches.stores;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+@SuppressWarnings("UnnecessaryBoxing")
+public class InlineLongLongMapStoreTest {
+
+    private LongLongStore store = new InlineLongLongMapStore( 16, 0.5, -1 );
+
+    @Test
+    public void givenEmptyStore_retrieveValue_expectNoEntryValue() {
+        assertEquals( -1, store.get(42) );
+        assertFalse( store.containsKey(42) );
+        assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void givenEmptyStore_storeValueAndRetrieveIt_expectValueBack() {
+        assertEquals( -1, store.put(42, 7) );
+
+        assertEquals( 7, store.get(42) );
+        assertTrue( store.containsKey(42) );
+        assertEquals( 1, store.size() );
+    }
+
+    @Test
+    public void overwriteValue_expectOldValueReturnedAndSizeToRemainAtOne() {
+        store.put( 42, 7 );
+
+        assertEquals( 7, store.put(42, 8) );
+        assertEquals( 8, store.get(42) );
+        assertEquals( 1, store.size() );
+    }
+
+    @Test
+    public void givenStoreWithValue_removeExistingValue_expectValueToNoLongerBeRetrievable() {
+        store.put( 42, 7 );
+
+        assertEquals( 7, store.remove(42) );
+        assertEquals( -1, store.get(42) );
+        assertFalse( store.containsKey(42) );
+        assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void storeValueAgainstKeyZero_expectItToBeHeldLikeAnyOtherKey() {
+        assertEquals( -1, store.put(0, 0) );
+        assertTrue( store.containsKey(0) );
+        assertEquals( 0, store.get(0) );
+        assertEquals( 1, store.size() );
+
+        assertEquals( 0, store.remove(0) );
+        assertFalse( store.containsKey(0) );
+        assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void randomlyPutAndRemoveSequentialIds_expectSameContentsAsJavaUtilHashMap() {
+        Map<Long,Long> expected = new HashMap<Long,Long>();
+        Random         rnd      = new Random( 42 );
+
+        for ( int i=0; i<50000; i++ ) {
+            long key = rnd.nextInt( 3000 ) - 100;
+
+            if ( rnd.nextInt(3) == 0 ) {
+                Long oldValue = expected.remove( key );
+
+                assertEquals( oldValue == null ? -1 : oldValue.longValue(), store.remove(key) );
+            } else {
+                Long oldValue = expected.put( key, (long) i );
+
+                assertEquals( oldValue == null ? -1 : oldValue.longValue(), store.put(key, i) );
+            }
+        }
+
+        assertEquals( expected.size(), store.size() );
+
+        for ( long key=-100; key<2900; key++ ) {
+            Long v = expected.get( key );
+
+            assertEquals( v == null ? -1 : v.longValue(), store.get(key) );
+        }
+    }
+}
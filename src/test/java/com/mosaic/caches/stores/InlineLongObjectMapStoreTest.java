@@ -0,0 +1,83 @@
+package com.mosaic.caches.stores;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+@SuppressWarnings("UnnecessaryBoxing")
+public class InlineLongObjectMapStoreTest {
+
+    private LongObjectStore<String> store = new InlineLongObjectMapStore<String>();
+
+    @Test
+    public void givenEmptyStore_retrieveValue_expectNull() {
+        assertEquals( null, store.get(42) );
+        assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void givenEmptyStore_storeValueAndRetrieveIt_expectValueBack() {
+        assertEquals( null, store.put(42, "foo") );
+
+        assertEquals( "foo", store.get(42) );
+        assertEquals( 1, store.size() );
+    }
+
+    @Test
+    public void overwriteValue_expectOldValueReturnedAndSizeToRemainAtOne() {
+        store.put( 42, "foo" );
+
+        assertEquals( "foo", store.put(42, "bar") );
+        assertEquals( "bar", store.get(42) );
+        assertEquals( 1, store.size() );
+    }
+
+    @Test
+    public void givenStoreWithValue_removeExistingValue_expectValueToNoLongerBeRetrievable() {
+        store.put( 42, "foo" );
+
+        assertEquals( "foo", store.remove(42) );
+        assertEquals( null, store.get(42) );
+        assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void storeValueAgainstKeyZero_expectItToBeHeldLikeAnyOtherKey() {
+        assertEquals( null, store.put(0, "zero") );
+        assertEquals( "zero", store.get(0) );
+        assertEquals( 1, store.size() );
+
+        assertEquals( "zero", store.remove(0) );
+        assertEquals( null, store.get(0) );
+        assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void randomlyPutAndRemoveSequentialIds_expectSameContentsAsJavaUtilHashMap() {
+        Map<Long,String> expected = new HashMap<Long,String>();
+        Random           rnd      = new Random( 42 );
+
+        for ( int i=0; i<50000; i++ ) {
+            long key = rnd.nextInt( 3000 ) - 100;
+
+            if ( rnd.nextInt(3) == 0 ) {
+                assertEquals( expected.remove(key), store.remove(key) );
+            } else {
+                assertEquals( expected.put(key, Integer.toString(i)), store.put(key, Integer.toString(i)) );
+            }
+        }
+
+        assertEquals( expected.size(), store.size() );
+
+        for ( long key=-100; key<2900; key++ ) {
+            assertEquals( expected.get(key), store.get(key) );
+        }
+    }
+}
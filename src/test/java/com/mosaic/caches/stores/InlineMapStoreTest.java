@@ -1,10 +1,43 @@
 package com.mosaic.caches.stores;
 
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
 /**
  *
  */
+@SuppressWarnings({"unchecked", "UnnecessaryBoxing"})
 public class InlineMapStoreTest extends BaseStoreTestCases {
     public InlineMapStoreTest() {
         super( new InlineMapStore() );
     }
+
+    @Test
+    public void randomlyPutAndRemoveClusteredKeys_expectSameContentsAsJavaUtilHashMap() {
+        Store<Integer,Integer> store    = new InlineMapStore<Integer,Integer>();
+        Map<Integer,Integer>   expected = new HashMap<Integer,Integer>();
+        Random                 rnd      = new Random( 42 );
+
+        for ( int i=0; i<20000; i++ ) {
+            Integer key = rnd.nextInt( 2000 );
+            int     h   = key >> 3;
+
+            if ( rnd.nextInt(3) == 0 ) {
+                assertEquals( expected.remove(key), store.remove(key, h) );
+            } else {
+                assertEquals( expected.put(key, i), store.put(key, i, h) );
+            }
+        }
+
+        assertEquals( expected.size(), store.size() );
+
+        for ( int key=0; key<2000; key++ ) {
+            assertEquals( expected.get(key), store.get(key, key >> 3) );
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package com.mosaic.caches.stores;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+@SuppressWarnings({"unchecked", "UnnecessaryBoxing"})
+public class RobinHoodInlineMapStoreTest extends BaseStoreTestCases {
+    public RobinHoodInlineMapStoreTest() {
+        super( new InlineMapStore( 10, 0.9, 0, true ) );
+    }
+
+    @Test
+    public void storeValuesWithCollidingHashCodes_removeHeadOfChain_expectRestOfChainToStillBeRetrievable() {
+        Store<String,Integer> store = new InlineMapStore<String,Integer>( 16, 0.9, 0, true );
+
+        store.put( "a", 1, 3 );
+        store.put( "b", 2, 4 );
+        store.put( "c", 3, 3 );
+        store.put( "d", 4, 19 );
+
+        assertEquals( new Integer(1), store.remove("a", 3) );
+
+        assertEquals( null,           store.get("a", 3) );
+        assertEquals( new Integer(2), store.get("b", 4) );
+        assertEquals( new Integer(3), store.get("c", 3) );
+        assertEquals( new Integer(4), store.get("d", 19) );
+        assertEquals( 3, store.size() );
+    }
+
+    @Test
+    public void randomlyPutAndRemoveClusteredKeysAtHighLoadFactor_expectSameContentsAsJavaUtilHashMap() {
+        Store<Integer,Integer> store    = new InlineMapStore<Integer,Integer>( 16, 0.9, 0, true );
+        Map<Integer,Integer>   expected = new HashMap<Integer,Integer>();
+        Random                 rnd      = new Random( 42 );
+
+        for ( int i=0; i<20000; i++ ) {
+            Integer key = rnd.nextInt( 2000 );
+            int     h   = key >> 3;
+
+            if ( rnd.nextInt(3) == 0 ) {
+                assertEquals( expected.remove(key), store.remove(key, h) );
+            } else {
+                assertEquals( expected.put(key, i), store.put(key, i, h) );
+            }
+        }
+
+        assertEquals( expected.size(), store.size() );
+
+        for ( int key=0; key<2000; key++ ) {
+            assertEquals( expected.get(key), store.get(key, key >> 3) );
+        }
+    }
+}
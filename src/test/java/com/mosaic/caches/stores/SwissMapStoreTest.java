@@ -0,0 +1,102 @@
+package com.mosaic.caches.stores;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+@SuppressWarnings({"unchecked", "UnnecessaryBoxing"})
+public class SwissMapStoreTest extends BaseStoreTestCases {
+    public SwissMapStoreTest() {
+        super( new SwissMapStore() );
+    }
+
+    @Test
+    public void matchByte_expectHighBitSetForEachMatchingByte() {
+        long word = 0x8005800580058005L;
+
+        assertEquals( 0x0080008000800080L, SwissMapStore.matchByte(word, 0x05) );
+        assertEquals( 0L,                  SwissMapStore.matchByte(word, 0x06) );
+    }
+
+    @Test
+    public void matchEmpty_expectDeletedAndFullBucketsToBeIgnored() {
+        long word = 0x80FE7F00800000FEL;
+
+        assertEquals( 0x8000000080000000L, SwissMapStore.matchEmpty(word) );
+        assertEquals( 0x8080000080000080L, SwissMapStore.matchEmptyOrDeleted(word) );
+    }
+
+    @Test
+    public void randomlyPutAndRemoveClusteredKeys_expectSameContentsAsJavaUtilHashMap() {
+        Store<Integer,Integer> store    = new SwissMapStore<Integer,Integer>();
+        Map<Integer,Integer>   expected = new HashMap<Integer,Integer>();
+        Random                 rnd      = new Random( 42 );
+
+        for ( int i=0; i<50000; i++ ) {
+            Integer key = rnd.nextInt( 2000 );
+            int     h   = key >> 3;
+
+            if ( rnd.nextInt(3) == 0 ) {
+                assertEquals( expected.remove(key), store.remove(key, h) );
+            } else {
+                assertEquals( expected.put(key, i), store.put(key, i, h) );
+            }
+        }
+
+        assertEquals( expected.size(), store.size() );
+
+        for ( int key=0; key<2000; key++ ) {
+            assertEquals( expected.get(key), store.get(key, key >> 3) );
+        }
+    }
+
+    @Test
+    public void repeatedlyInsertAndRemoveDistinctKeys_expectTombstonesToBeReclaimedWithoutGrowingForever() {
+        SwissMapStore<Integer,Integer> store = new SwissMapStore<Integer,Integer>();
+
+        for ( int i=0; i<100000; i++ ) {
+            store.put( i, i, i );
+            assertEquals( new Integer(i), store.remove(i, i) );
+        }
+
+        assertEquals( 0, store.size() );
+        assertEquals( null, store.get(5, 5) );
+        assertEquals( 16, store.capacity() );
+    }
+
+    @Test
+    public void hashCodesDifferingOnlyInHighBits_expectMixToSpreadThemAcrossGroups() {
+        Set<Integer> groupIndexes = new HashSet<Integer>();
+
+        for ( int i=0; i<1024; i++ ) {
+            groupIndexes.add( SwissMapStore.mix(i << 16) & 1023 );
+        }
+
+        assertTrue( "only " + groupIndexes.size() + " distinct group indexes", groupIndexes.size() > 512 );
+    }
+
+    @Test
+    public void insertKeysWhoseHashCodesDifferOnlyInHighBits_expectAllToBeFound() {
+        SwissMapStore<Integer,Integer> store = new SwissMapStore<Integer,Integer>();
+
+        for ( int i=0; i<32768; i++ ) {
+            store.put( i, i, i << 16 );
+        }
+
+        assertEquals( 32768, store.size() );
+
+        for ( int i=0; i<32768; i++ ) {
+            assertEquals( new Integer(i), store.get(i, i << 16) );
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.mosaic.caches.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class CachedClockTest {
+
+    @Test
+    public void createClock_expectTimeToStartAtTheSystemTime() {
+        long        beforeMillis = System.currentTimeMillis();
+        CachedClock clock        = new CachedClock( 1 );
+
+        try {
+            assertTrue( clock.currentTimeMillis() >= beforeMillis );
+            assertTrue( clock.currentTimeMillis() <= System.currentTimeMillis() );
+        } finally {
+            clock.stop();
+        }
+    }
+
+    @Test
+    public void waitForSystemTimeToMoveOn_expectTickerToMoveTheClockOn() throws InterruptedException {
+        CachedClock clock       = new CachedClock( 1 );
+        long        startMillis = clock.currentTimeMillis();
+
+        try {
+            long timeoutMillis = System.currentTimeMillis() + 5000;
+            while ( clock.currentTimeMillis() == startMillis && System.currentTimeMillis() < timeoutMillis ) {
+                Thread.sleep( 1 );
+            }
+
+            assertTrue( clock.currentTimeMillis() > startMillis );
+        } finally {
+            clock.stop();
+        }
+    }
+
+    @Test
+    public void stopClock_expectTimeToStopMoving() throws InterruptedException {
+        CachedClock clock = new CachedClock( 1 );
+        clock.stop();
+
+        Thread.sleep( 5 );
+        long stoppedMillis = clock.currentTimeMillis();
+        Thread.sleep( 20 );
+
+        assertEquals( stoppedMillis, clock.currentTimeMillis() );
+    }
+}
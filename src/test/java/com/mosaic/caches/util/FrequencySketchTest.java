@@ -0,0 +1,77 @@
+package com.mosaic.caches.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ */
+public class FrequencySketchTest {
+
+    private FrequencySketch sketch = new FrequencySketch( 512 );
+
+    @Test
+    public void unseenKey_expectFrequencyOfZero() {
+        assertEquals( 0, sketch.frequency("a".hashCode()) );
+    }
+
+    @Test
+    public void incrementKeyThreeTimes_expectFrequencyOfThree() {
+        sketch.increment( 42 );
+        sketch.increment( 42 );
+        sketch.increment( 42 );
+
+        assertEquals( 3, sketch.frequency(42) );
+    }
+
+    @Test
+    public void incrementKeyManyTimes_expectFrequencyToSaturateAt15() {
+        for ( int i=0; i<100; i++ ) {
+            sketch.increment( 42 );
+        }
+
+        assertEquals( 15, sketch.frequency(42) );
+    }
+
+    @Test
+    public void incrementManyDistinctKeys_expectEstimatesToNeverUnderCount() {
+        for ( int key=0; key<1000; key++ ) {
+            sketch.increment( key );
+            sketch.increment( key );
+        }
+
+        for ( int key=0; key<1000; key++ ) {
+            assertTrue( sketch.frequency(key) >= 1 );
+        }
+    }
+
+    @Test
+    public void reset_expectFrequenciesToBeHalved() {
+        for ( int i=0; i<8; i++ ) {
+            sketch.increment( 42 );
+        }
+
+        sketch.reset();
+
+        assertEquals( 4, sketch.frequency(42) );
+    }
+
+    @Test
+    public void incrementUpToTheSampleSize_expectCountersToAge() {
+        FrequencySketch smallSketch = new FrequencySketch( 64 );    // ages every 640 increments
+
+        for ( int i=0; i<10; i++ ) {
+            smallSketch.increment( 42 );
+        }
+
+        for ( int key=1000; key<1630; key++ ) {
+            smallSketch.increment( key );
+        }
+
+        int frequency = smallSketch.frequency( 42 );   // other keys may have collided with 42's counters before aging
+
+        assertTrue( frequency >= 5 && frequency < 10 );
+    }
+}
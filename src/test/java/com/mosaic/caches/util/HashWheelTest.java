@@ -5,6 +5,7 @@ import org.junit.Test;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -319,6 +320,123 @@ public class HashWheelTest {
         assertEquals( 1, hashWheel.toRotationCount( 512 ) );
     }
 
+    @Test
+    public void toRotationCountBeyondTheRangeOfAnInt_expectNoOverflow() {
+        assertEquals( 1L << 33, hashWheel.toRotationCount( 1L << 42 ) );
+        assertEquals( Long.MAX_VALUE >> 9, hashWheel.toRotationCount( Long.MAX_VALUE ) );
+    }
+
+    @Test
+    public void registerWheelTimerAtMaxValue_expectTimerNotToTimeOut() {
+        MyTimer timer = new MyTimer();
+
+        hashWheel.register( Long.MAX_VALUE, timer );
+        hashWheel.applyBookKeeping( 4096 );
+
+        assertEquals( 0, timer.timeoutCount );
+        assertTrue( timer.isScheduledToRun() );
+    }
+
+    @Test
+    public void registerWheelTimer_performBookKeepingAfterItIsDue_expectTimerToTimeOut() {
+        MyTimer timer = new MyTimer();
+
+        hashWheel.register( 120, timer );
+        hashWheel.applyBookKeeping( 127 );
+
+        assertEquals( 0, timer.timeoutCount );
+        assertTrue( timer.isScheduledToRun() );
+
+        hashWheel.applyBookKeeping( 128 );
+
+        assertEquals( 1, timer.timeoutCount );
+        assertTrue( timer.hasRun() );
+    }
+
+    @Test
+    public void registerWheelTimerThatReregistersItselfOnTimeout_expectTimerToTimeOutAgainLater() {
+        MyTimer timer = new MyTimer();
+        timer.reregisterAtMillis = 300;
+
+        hashWheel.register( 120, timer );
+        hashWheel.applyBookKeeping( 128 );
+
+        assertEquals( 1, timer.timeoutCount );
+        assertTrue( timer.isScheduledToRun() );
+
+        hashWheel.applyBookKeeping( 384 );
+
+        assertEquals( 2, timer.timeoutCount );
+        assertFalse( timer.isScheduledToRun() );
+    }
+
+    @Test
+    public void registerWheelTimerAfterCancellingIt_expectTimerToTimeOut() {
+        MyTimer timer = new MyTimer();
+
+        hashWheel.register( 120, timer );
+        timer.cancel();
+        hashWheel.register( 200, timer );
+
+        assertFalse( timer.wasCancelled() );
+
+        hashWheel.applyBookKeeping( 256 );
+
+        assertEquals( 1, timer.timeoutCount );
+    }
+
+    @Test
+    public void bookKeepingWithATimeoutLimit_expectBacklogToRunInSlicesOfAtMostTheLimit() {
+        List<MyTask> tasks = new ArrayList<MyTask>();
+        for ( int i=0; i<15; i++ ) {
+            MyTask task = new MyTask();
+
+            hashWheel.register( i < 10 ? 120 : 300, task );
+            tasks.add( task );
+        }
+
+        MyTask laterTask = new MyTask();
+        hashWheel.register( 700, laterTask );
+
+        assertFalse( hashWheel.applyBookKeeping(600, 4) );
+        assertEquals( 4, countRun(tasks) );
+
+        int numSlices = 1;
+        while ( !hashWheel.applyBookKeeping(600, 4) ) {
+            numSlices++;
+
+            assertEquals( Math.min(15, numSlices*4), countRun(tasks) );
+        }
+
+        assertEquals( 15, countRun(tasks) );
+        assertEquals( 0, laterTask.runCount );
+    }
+
+    private int countRun( List<MyTask> tasks ) {
+        int count = 0;
+        for ( MyTask task : tasks ) {
+            count += task.runCount;
+        }
+
+        return count;
+    }
+
+    private class MyTimer extends WheelTimer {
+        public int  timeoutCount;
+        public long reregisterAtMillis = -1;
+
+        @Override
+        protected void timeout() {
+            timeoutCount++;
+
+            if ( reregisterAtMillis >= 0 ) {
+                hashWheel.register( reregisterAtMillis, this );
+
+                reregisterAtMillis = -1;
+            }
+        }
+    }
+
     private static class MyTask implements Runnable {
         public int runCount = 0;
 
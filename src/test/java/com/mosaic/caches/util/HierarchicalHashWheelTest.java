@@ -0,0 +1,326 @@
+package com.mosaic.caches.util;
+
+import com.mosaic.jtunit.TestTools;
+import org.junit.Test;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+@SuppressWarnings({"unchecked", "UnusedAssignment"})
+public class HierarchicalHashWheelTest {
+
+    // three wheels of four buckets each; the finest spans 512ms, the next 2048ms and the coarsest 8192ms
+    private HierarchicalHashWheel wheel = new HierarchicalHashWheel( 10, 128, 4, 3 );
+
+
+    @Test
+    public void scheduleATaskWithinTheCurrentBucket_performBookingKeepingBeforeBucketEnd_expectTaskNotToRun() {
+        MyTask task = new MyTask();
+
+        wheel.register( 120, task );
+        wheel.applyBookKeeping( 127 );
+
+
+        assertEquals( 0, task.runCount );
+    }
+
+    @Test
+    public void scheduleATaskWithinTheCurrentBucket_performBookingKeepingAfterBucketExpires_expectTaskToRun() {
+        MyTask task = new MyTask();
+
+        wheel.register( 120, task );
+        wheel.applyBookKeeping( 128 );
+
+
+        assertEquals( 1, task.runCount );
+    }
+
+    @Test
+    public void scheduleTaskInThePast_expectItToRunImmediately() {
+        MyTask task = new MyTask();
+
+        wheel.applyBookKeeping( 128 );
+
+        TimerWheel.Ticket ticket = wheel.register( 120, task );
+
+
+        assertEquals( 1, task.runCount );
+        assertFalse( ticket.isScheduledToRun() );
+        assertTrue( ticket.hasRun() );
+        assertFalse( ticket.wasCancelled() );
+    }
+
+    @Test
+    public void scheduleTaskOnCoarserWheel_performBookKeepingJustBeforeItIsDue_expectTaskNotToRun() {
+        MyTask task = new MyTask();
+
+        TimerWheel.Ticket ticket = wheel.register( 5000, task );
+        wheel.applyBookKeeping( 4999 );
+
+
+        assertEquals( 0, task.runCount );
+        assertTrue( ticket.isScheduledToRun() );
+    }
+
+    @Test
+    public void scheduleTaskOnCoarserWheel_performBookKeepingAfterItIsDue_expectTaskToRun() {
+        MyTask task = new MyTask();
+
+        TimerWheel.Ticket ticket = wheel.register( 5000, task );
+        wheel.applyBookKeeping( 5120 );
+
+
+        assertEquals( 1, task.runCount );
+        assertTrue( ticket.hasRun() );
+    }
+
+    @Test
+    public void scheduleTaskBeyondTheSpanOfAllWheels_expectItToRunOnlyOnceDue() {
+        MyTask task = new MyTask();
+
+        wheel.register( 100000, task );
+
+        wheel.applyBookKeeping( 99999 );
+        assertEquals( 0, task.runCount );
+
+        wheel.applyBookKeeping( 100096 );
+        assertEquals( 1, task.runCount );
+    }
+
+    @Test
+    public void scheduleTaskOnCoarserWheel_cancelViaTicket_expectTaskNotToRun() {
+        MyTask task = new MyTask();
+
+        TimerWheel.Ticket ticket = wheel.register( 5000, task );
+        ticket.cancel();
+
+        wheel.applyBookKeeping( 10000 );
+
+
+        assertEquals( 0, task.runCount );
+        assertFalse( ticket.isScheduledToRun() );
+        assertFalse( ticket.hasRun() );
+        assertTrue( ticket.wasCancelled() );
+    }
+
+    @Test
+    public void scheduleTaskOnCoarserWheel_cascadeThenCancelViaTicket_expectTaskNotToRun() {
+        MyTask task = new MyTask();
+
+        TimerWheel.Ticket ticket = wheel.register( 5000, task );
+        wheel.applyBookKeeping( 4900 );
+        ticket.cancel();
+
+        wheel.applyBookKeeping( 10000 );
+
+
+        assertEquals( 0, task.runCount );
+        assertTrue( ticket.wasCancelled() );
+    }
+
+    @Test
+    public void scheduleTwoTasks_callClearTheBookkeeping_expectNeitherTaskToRun() {
+        MyTask task1 = new MyTask();
+        MyTask task2 = new MyTask();
+
+        TimerWheel.Ticket ticket1 = wheel.register( 120, task1 );
+        TimerWheel.Ticket ticket2 = wheel.register( 5000, task2 );
+        wheel.clear();
+
+        wheel.applyBookKeeping( 10000 );
+
+
+        assertEquals( 0, task1.runCount );
+        assertTrue( ticket1.wasCancelled() );
+
+        assertEquals( 0, task2.runCount );
+        assertTrue( ticket2.wasCancelled() );
+    }
+
+    @Test
+    public void rescheduleFromFinestWheelOntoCoarserWheel_expectTaskToRunAtTheNewTime() {
+        MyTask task = new MyTask();
+
+        TimerWheel.Ticket ticket = wheel.register( 200, task );
+        ticket.rescheduleTo( 5000 );
+
+        wheel.applyBookKeeping( 4999 );
+        assertEquals( 0, task.runCount );
+
+        wheel.applyBookKeeping( 5120 );
+        assertEquals( 1, task.runCount );
+    }
+
+    @Test
+    public void rescheduleFromCoarserWheelOntoFinestWheel_expectTaskToRunAtTheNewTime() {
+        MyTask task = new MyTask();
+
+        TimerWheel.Ticket ticket = wheel.register( 5000, task );
+        ticket.rescheduleTo( 300 );
+
+        wheel.applyBookKeeping( 384 );
+        assertEquals( 1, task.runCount );
+    }
+
+    @Test
+    public void scheduleTask_runTaskViaBookKeepingAndDropRefToTicket_expectTicketToBeGCd() {
+        MyTask task = new MyTask();
+
+        TimerWheel.Ticket ticket = wheel.register( 5000, task );
+        wheel.applyBookKeeping( 5120 );
+
+
+        final Reference ref = new WeakReference( ticket );
+        ticket = null;
+
+        TestTools.spinUntilReleased( ref );
+    }
+
+    @Test
+    public void scheduleManyTasksAcrossAllWheels_tickForward_expectEachTaskToRunInTheFirstTickAfterItIsDue() {
+        Random       rnd   = new Random( 42 );
+        List<MyTask> tasks = new ArrayList<MyTask>();
+
+        for ( int i=0; i<2000; i++ ) {
+            MyTask task = new MyTask();
+            task.dueMillis = 10 + rnd.nextInt( 20000 );
+
+            wheel.register( task.dueMillis, task );
+            tasks.add( task );
+        }
+
+        for ( long now=128; now<=20480; now+=128 ) {
+            MyTask.nowMillis = now;
+
+            wheel.applyBookKeeping( now );
+        }
+
+        for ( MyTask task : tasks ) {
+            assertEquals( 1, task.runCount );
+            assertEquals( (task.dueMillis/128 + 1) * 128, task.ranAtMillis );
+        }
+    }
+
+
+    @Test
+    public void registerWheelTimer_performBookKeepingAfterItIsDue_expectTimerToTimeOut() {
+        MyTimer timer = new MyTimer();
+
+        wheel.register( 120, timer );
+        wheel.applyBookKeeping( 127 );
+
+        assertEquals( 0, timer.timeoutCount );
+        assertTrue( timer.isScheduledToRun() );
+
+        wheel.applyBookKeeping( 128 );
+
+        assertEquals( 1, timer.timeoutCount );
+        assertTrue( timer.hasRun() );
+    }
+
+    @Test
+    public void registerWheelTimerThatReregistersItselfOnTimeout_expectTimerToTimeOutAgainLater() {
+        MyTimer timer = new MyTimer();
+        timer.reregisterAtMillis = 300;
+
+        wheel.register( 120, timer );
+        wheel.applyBookKeeping( 128 );
+
+        assertEquals( 1, timer.timeoutCount );
+        assertTrue( timer.isScheduledToRun() );
+
+        wheel.applyBookKeeping( 384 );
+
+        assertEquals( 2, timer.timeoutCount );
+        assertFalse( timer.isScheduledToRun() );
+    }
+
+    @Test
+    public void registerWheelTimerAfterCancellingIt_expectTimerToTimeOut() {
+        MyTimer timer = new MyTimer();
+
+        wheel.register( 120, timer );
+        timer.cancel();
+        wheel.register( 200, timer );
+
+        assertFalse( timer.wasCancelled() );
+
+        wheel.applyBookKeeping( 256 );
+
+        assertEquals( 1, timer.timeoutCount );
+    }
+
+    @Test
+    public void bookKeepingWithATimeoutLimit_expectBacklogToRunInSlicesOfAtMostTheLimit() {
+        List<MyTask> tasks = new ArrayList<MyTask>();
+        for ( int i=0; i<15; i++ ) {
+            MyTask task = new MyTask();
+
+            wheel.register( i < 10 ? 120 : 3000, task );   // the later ones start on a coarser wheel and cascade down
+            tasks.add( task );
+        }
+
+        MyTask laterTask = new MyTask();
+        wheel.register( 5000, laterTask );
+
+        assertFalse( wheel.applyBookKeeping(4000, 4) );
+        assertEquals( 4, countRun(tasks) );
+
+        int numSlices = 1;
+        while ( !wheel.applyBookKeeping(4000, 4) ) {
+            numSlices++;
+
+            assertEquals( Math.min(15, numSlices*4), countRun(tasks) );
+        }
+
+        assertEquals( 15, countRun(tasks) );
+        assertEquals( 0, laterTask.runCount );
+    }
+
+    private int countRun( List<MyTask> tasks ) {
+        int count = 0;
+        for ( MyTask task : tasks ) {
+            count += task.runCount;
+        }
+
+        return count;
+    }
+
+    private class MyTimer extends WheelTimer {
+        public int  timeoutCount;
+        public long reregisterAtMillis = -1;
+
+        @Override
+        protected void timeout() {
+            timeoutCount++;
+
+            if ( reregisterAtMillis >= 0 ) {
+                wheel.register( reregisterAtMillis, this );
+
+                reregisterAtMillis = -1;
+            }
+        }
+    }
+
+    private static class MyTask implements Runnable {
+        public static long nowMillis;
+
+        public int  runCount = 0;
+        public long dueMillis;
+        public long ranAtMillis;
+
+        @Override
+        public void run() {
+            runCount++;
+            ranAtMillis = nowMillis;
+        }
+    }
+}